@@ -0,0 +1,86 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.payment.PaymentService;
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Bytes allocated per registration and per payment, excluding BCrypt itself (a no-op encoder is used).
+ * Meant to be run with the GC profiler and compared on {@code gc.alloc.rate.norm}:
+ * <pre>
+ * mvn -Pbenchmarks -DskipTests verify -Djmh.args="AllocationBenchmark -prof gc"
+ * </pre>
+ * The registration figure includes building the request's {@link User}, as deserialization would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class AllocationBenchmark {
+
+    private static final int PAYORS = 1024;
+
+    private PasswordHasher passwordHasher;
+    private UserService userService;
+    private PaymentService paymentService;
+    private Payment[] payments;
+    private long nextUserId;
+    private int nextPayment;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        passwordHasher = new PasswordHasher(BenchmarkData.PLAIN_TEXT_ENCODER, 1, PasswordHasher.DEFAULT_QUEUE_CAPACITY,
+            PasswordHasher.DEFAULT_RETRY_AFTER_SECONDS, new SimpleMeterRegistry());
+
+        UserService payorService = new UserService(new InMemoryUserRepository(), passwordHasher);
+        payments = new Payment[PAYORS];
+        for (int id = 0; id < PAYORS; id++) {
+            payorService.registerUser(BenchmarkData.user(id * 2L));
+            payments[id] = BenchmarkData.payment(id * 2L);
+        }
+        paymentService = new PaymentService(payorService);
+    }
+
+    /** Starts every iteration with an empty store so registrations do not accumulate across the run. */
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        userService = new UserService(new InMemoryUserRepository(), passwordHasher);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Benchmark
+    public void registerUser() {
+        userService.registerUser(BenchmarkData.user(nextUserId++));
+    }
+
+    @Benchmark
+    public void processPayment() {
+        paymentService.processPayment(payments[nextPayment++ & (PAYORS - 1)]);
+    }
+}
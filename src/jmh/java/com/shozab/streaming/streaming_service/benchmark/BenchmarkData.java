@@ -0,0 +1,47 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.time.LocalDate;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.registration.User;
+
+/**
+ * Deterministic users and payments shared by the benchmarks. Every other user has a credit card.
+ */
+final class BenchmarkData {
+
+    static final LocalDate DATE_OF_BIRTH = LocalDate.of(2000, 1, 1);
+
+    /** Stores passwords as given, for benchmarks that measure everything but BCrypt. */
+    static final PasswordEncoder PLAIN_TEXT_ENCODER = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(rawPassword.toString());
+        }
+    };
+
+    private BenchmarkData() {}
+
+    static User user(long id) {
+        return User.of(id, "user_" + id, "Password1", email(id), DATE_OF_BIRTH, id % 2 == 0 ? creditCardNumber(id) : User.NO_CREDIT_CARD);
+    }
+
+    static Payment payment(long userId) {
+        return Payment.of(userId, creditCardNumber(userId), 100, email(userId));
+    }
+
+    static String email(long id) {
+        return "user" + id + "@example.org";
+    }
+
+    static long creditCardNumber(long id) {
+        return 1_000_000_000_000_000L + id;
+    }
+}
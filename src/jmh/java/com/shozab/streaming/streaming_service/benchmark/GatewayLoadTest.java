@@ -0,0 +1,136 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.shozab.streaming.streaming_service.gateway.CircuitBreaker;
+import com.shozab.streaming.streaming_service.gateway.HttpPaymentGateway;
+import com.shozab.streaming.streaming_service.gateway.PaymentGateway;
+import com.shozab.streaming.streaming_service.gateway.ResilientPaymentGateway;
+import com.shozab.streaming.streaming_service.gateway.SimulatedGatewayServer;
+import com.shozab.streaming.streaming_service.gateway.SimulatedPaymentGateway;
+import com.shozab.streaming.streaming_service.payment.Payment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Closed-loop load against the simulated card network over HTTP, showing how authorization latency behaves as
+ * the stand-in degrades. Each phase reconfigures the stand-in and sends the same load through a bare
+ * {@link HttpPaymentGateway} and through a {@link ResilientPaymentGateway} with the application's defaults,
+ * reporting latency percentiles, the outcome mix and the calls the stand-in received per payment.
+ *
+ * <pre>
+ * mvn -Pbenchmarks -DskipTests test-compile exec:exec@gateway-load-test -Dgateway.load.args="64 2000"
+ * </pre>
+ *
+ * Phases: {@code healthy} (20ms median), {@code slow-tail} (5% of calls take 1s), {@code failing} (30% fail),
+ * {@code stalled} (every call takes 5s, beyond the timeout) and {@code recovered}, which first probes until
+ * the resilient gateway's circuit has closed again.
+ */
+public final class GatewayLoadTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(2);
+
+    private GatewayLoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        SimulatedPaymentGateway stub = new SimulatedPaymentGateway(Duration.ofMillis(20));
+        try (SimulatedGatewayServer server = new SimulatedGatewayServer(stub, 0)) {
+            PaymentGateway bare = http(server);
+            ResilientPaymentGateway resilient = new ResilientPaymentGateway(http(server), 256, TIMEOUT, 2,
+                Duration.ofMillis(200), 0.1, new CircuitBreaker(100, 20, 0.5, Duration.ofSeconds(5), 5), new SimpleMeterRegistry());
+
+            // Warm up connections and code paths; not reported
+            run(null, stub, bare, concurrency, requests);
+            run(null, stub, resilient, concurrency, requests);
+
+            phase("healthy", stub, s -> {}, bare, resilient, concurrency, requests);
+            phase("slow-tail", stub, s -> s.setSlowCalls(0.05, Duration.ofSeconds(1)), bare, resilient, concurrency, requests);
+            phase("failing", stub, s -> s.setFailureRate(0.3), bare, resilient, concurrency, requests);
+            phase("stalled", stub, s -> s.setLatency(Duration.ofSeconds(5)), bare, resilient, concurrency, Math.min(requests, concurrency * 4));
+            phase("recovered", stub, s -> {}, bare, resilient, concurrency, requests);
+
+            bare.close();
+            resilient.close();
+        }
+    }
+
+    private static void phase(String name, SimulatedPaymentGateway stub, Consumer<SimulatedPaymentGateway> degrade,
+            PaymentGateway bare, ResilientPaymentGateway resilient, int concurrency, int requests) throws InterruptedException {
+        for (PaymentGateway gateway : new PaymentGateway[] {bare, resilient}) {
+            stub.setLatency(Duration.ofMillis(20));
+            stub.setSlowCalls(0, Duration.ZERO);
+            stub.setFailureRate(0);
+            degrade.accept(stub);
+            String label = gateway == bare ? "bare" : "resilient";
+            if (gateway == resilient && name.equals("recovered")) awaitCircuitClosed(resilient);
+            run(name + "/" + label, stub, gateway, concurrency, requests);
+            if (gateway == resilient) System.out.printf("  circuit after phase: %s%n", resilient.circuitState());
+        }
+    }
+
+    private static void run(String label, SimulatedPaymentGateway stub, PaymentGateway gateway, int concurrency, int requests)
+            throws InterruptedException {
+        long[] latencies = new long[requests];
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(concurrency);
+        long callsBefore = stub.calls();
+        String run = Long.toString(System.nanoTime(), 36);
+
+        long started = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            permits.acquire();
+            final int index = i;
+            final long sent = System.nanoTime();
+            Payment payment = Payment.of(i, BenchmarkData.creditCardNumber(0), 100, BenchmarkData.email(i));
+            gateway.authorize(run + "-" + i, payment).whenComplete((authorization, error) -> {
+                latencies[index] = System.nanoTime() - sent;
+                String outcome = error == null
+                    ? (authorization.approved() ? "approved" : "declined")
+                    : (error instanceof CompletionException && error.getCause() != null ? error.getCause() : error).getClass().getSimpleName();
+                outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+                permits.release();
+            });
+        }
+        permits.acquire(concurrency);
+        long elapsed = System.nanoTime() - started;
+
+        if (label == null) return;
+        Arrays.sort(latencies);
+        System.out.printf("%-20s %7.1f req/s  p50=%7.1f p99=%7.1f p99.9=%7.1f max=%7.1f ms  calls/payment=%.2f  %s%n",
+            label, requests / (elapsed / 1e9), percentile(latencies, 0.50), percentile(latencies, 0.99),
+            percentile(latencies, 0.999), latencies[requests - 1] / 1e6,
+            (stub.calls() - callsBefore) / (double) requests, new TreeMap<>(outcomes));
+    }
+
+    /** Sends single probe payments, as a trickle of real traffic would, until the circuit has closed again. */
+    private static void awaitCircuitClosed(ResilientPaymentGateway gateway) throws InterruptedException {
+        long start = System.nanoTime();
+        for (int probe = 0; gateway.circuitState() != CircuitBreaker.State.CLOSED; probe++) {
+            gateway.authorize("probe-" + start + "-" + probe, Payment.of(probe, BenchmarkData.creditCardNumber(0), 100, BenchmarkData.email(0)))
+                .handle((authorization, error) -> null)
+                .join();
+            Thread.sleep(50);
+        }
+        System.out.printf("  circuit closed again after %.1fs%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    private static HttpPaymentGateway http(SimulatedGatewayServer server) {
+        return new HttpPaymentGateway(server.baseUrl(), 64, 4096, Duration.ofSeconds(1), TIMEOUT);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,128 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shozab.streaming.streaming_service.payment.InMemoryPaymentLedger;
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.payment.PaymentService;
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserCache;
+import com.shozab.streaming.streaming_service.registration.UserService;
+import com.shozab.streaming.streaming_service.registration.ValidationResult;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+
+/**
+ * Cost of the service metrics: the hot paths with no-op meters ({@code none}, an empty composite registry),
+ * the in-memory registry ({@code simple}) and Prometheus with percentile histograms as configured in
+ * {@code application.properties} ({@code prometheus}). Password hashing is replaced by a no-op encoder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class InstrumentationBenchmark {
+
+    private static final int PAYORS = 1024;
+
+    @Param({"none", "simple", "prometheus"})
+    public String registry;
+
+    private PasswordHasher passwordHasher;
+    private UserService userService;
+    private PaymentService paymentService;
+    private User validUser;
+    private Payment[] payments;
+    private String[] emails;
+    private long nextUserId;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MeterRegistry meterRegistry = meterRegistry();
+        passwordHasher = new PasswordHasher(BenchmarkData.PLAIN_TEXT_ENCODER, 1, PasswordHasher.DEFAULT_QUEUE_CAPACITY,
+            PasswordHasher.DEFAULT_RETRY_AFTER_SECONDS, meterRegistry);
+        userService = new UserService(new InMemoryUserRepository(), passwordHasher, new UserCache(), meterRegistry);
+        paymentService = new PaymentService(userService, new InMemoryPaymentLedger(), meterRegistry);
+
+        payments = new Payment[PAYORS];
+        emails = new String[PAYORS];
+        for (int id = 0; id < PAYORS; id++) {
+            userService.registerUser(BenchmarkData.user(id * 2L));
+            payments[id] = BenchmarkData.payment(id * 2L);
+            emails[id] = BenchmarkData.email(id * 2L);
+        }
+        nextUserId = PAYORS * 2L;
+        validUser = BenchmarkData.user(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Benchmark
+    public ValidationResult validate() {
+        return userService.validate(validUser);
+    }
+
+    @Benchmark
+    public void registerUser() {
+        userService.registerUser(BenchmarkData.user(nextUserId++));
+    }
+
+    @Benchmark
+    public void processPayment() {
+        paymentService.processPayment(payments[next++ & (PAYORS - 1)]);
+    }
+
+    @Benchmark
+    public User findUserByEmail() {
+        return userService.findUserByEmail(emails[next++ & (PAYORS - 1)]);
+    }
+
+    private MeterRegistry meterRegistry() {
+        switch (registry) {
+            case "none":
+                return new CompositeMeterRegistry();
+            case "simple":
+                return new SimpleMeterRegistry();
+            case "prometheus":
+                PrometheusMeterRegistry prometheus = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+                prometheus.config().meterFilter(new MeterFilter() {
+                    @Override
+                    public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                        return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+                    }
+                });
+                return prometheus;
+            default:
+                throw new IllegalArgumentException("Unknown registry " + registry);
+        }
+    }
+}
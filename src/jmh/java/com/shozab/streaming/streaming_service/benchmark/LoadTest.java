@@ -0,0 +1,178 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Closed-loop HTTP load test against a running instance, used to compare the platform-thread and
+ * virtual-thread web tiers. Keeps {@code concurrency} requests open at once and reports latency
+ * percentiles, throughput, the status code mix and the peak number of requests in flight.
+ *
+ * <pre>
+ * mvn -Pbenchmarks -DskipTests test-compile exec:exec@load-test -Dload.args="http://localhost:8080 register 500 5000"
+ * </pre>
+ *
+ * Scenarios: {@code register} (one BCrypt hash per request), {@code payment} (to a single payor
+ * registered up front) and {@code users} (a page of {@value #PAGE_SIZE} users, registered up front).
+ * An optional fifth argument sends the payment bodies and asks for the user pages as {@code json} (default),
+ * {@code cbor} or {@code smile}; the report then includes the mean request and response body sizes.
+ */
+public final class LoadTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+    private static final int PAGE_SIZE = 100;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        String scenario = args.length > 1 ? args[1] : "register";
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 5000;
+        String format = args.length > 4 ? args[4] : "json";
+        WireFormat wire = WireFormat.of(format);
+        String run = Long.toString(System.currentTimeMillis(), 36);
+
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(TIMEOUT)
+            .executor(clientExecutor)
+            .build();
+
+        if (scenario.equals("payment")) {
+            send(client, post(baseUrl + "/users/register", userJson(run, 0)));
+        } else if (scenario.equals("users")) {
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                send(client, post(baseUrl + "/users/register", userJson(run, i)));
+            }
+        } else if (!scenario.equals("register")) {
+            throw new IllegalArgumentException("Unknown scenario: " + scenario);
+        }
+
+        long[] latencies = new long[requests];
+        Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+        LongAdder requestBytes = new LongAdder();
+        LongAdder responseBytes = new LongAdder();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            HttpRequest request = switch (scenario) {
+                case "payment" -> {
+                    byte[] body = wire.encode(paymentJson(run, i));
+                    requestBytes.add(body.length);
+                    yield post(baseUrl + "/payments", wire.mediaType(), body);
+                }
+                case "users" -> HttpRequest.newBuilder(URI.create(baseUrl + "/users?limit=" + PAGE_SIZE))
+                    .timeout(TIMEOUT)
+                    .header("Accept", wire.mediaType())
+                    .GET()
+                    .build();
+                default -> post(baseUrl + "/users/register", userJson(run, i + 1));
+            };
+            permits.acquire();
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            final int index = i;
+            final long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, error) -> {
+                latencies[index] = System.nanoTime() - sent;
+                if (response != null) responseBytes.add(response.body().length);
+                String outcome = error != null ? error.getClass().getSimpleName() : Integer.toString(response.statusCode());
+                outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+                inFlight.decrementAndGet();
+                permits.release();
+            });
+        }
+        permits.acquire(concurrency);
+        long elapsed = System.nanoTime() - started;
+        clientExecutor.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("scenario=%s format=%s concurrency=%d requests=%d%n", scenario, format, concurrency, requests);
+        System.out.printf("throughput: %.1f req/s%n", requests / (elapsed / 1e9));
+        System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+            percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+            percentile(latencies, 0.999), latencies[requests - 1] / 1e6);
+        System.out.printf("peak in flight: %d%n", peakInFlight.get());
+        System.out.printf("mean body bytes: request=%.1f response=%.1f%n",
+            requestBytes.sum() / (double) requests, responseBytes.sum() / (double) requests);
+        System.out.printf("outcomes: %s%n", new TreeMap<>(outcomes));
+    }
+
+    private static HttpRequest post(String url, String json) {
+        return post(url, "application/json", json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static HttpRequest post(String url, String contentType, byte[] body) {
+        return HttpRequest.newBuilder(URI.create(url))
+            .timeout(TIMEOUT)
+            .header("Content-Type", contentType)
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+            .build();
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws Exception {
+        client.send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    private static String userJson(String run, long id) {
+        return "{\"id\":" + id + ",\"username\":\"load_" + run + "_" + id + "\",\"password\":\"Password1\","
+            + "\"email\":\"" + email(run, id) + "\",\"dateOfBirth\":\"" + BenchmarkData.DATE_OF_BIRTH + "\","
+            + "\"creditCardNumber\":" + BenchmarkData.creditCardNumber(0) + "}";
+    }
+
+    private static String paymentJson(String run, long id) {
+        return "{\"id\":" + id + ",\"creditCardNumber\":" + BenchmarkData.creditCardNumber(0)
+            + ",\"amount\":100,\"payorEmail\":\"" + email(run, 0) + "\"}";
+    }
+
+    private static String email(String run, long id) {
+        return "load" + run + "." + id + "@example.org";
+    }
+
+    /**
+     * Transcodes the JSON bodies built below, so every format carries exactly the same fields.
+     */
+    private record WireFormat(String mediaType, ObjectMapper mapper) {
+
+        static WireFormat of(String format) {
+            return switch (format) {
+                case "json" -> new WireFormat("application/json", JSON);
+                case "cbor" -> new WireFormat("application/cbor", new ObjectMapper(new CBORFactory()));
+                case "smile" -> new WireFormat("application/x-jackson-smile", new ObjectMapper(new SmileFactory()));
+                default -> throw new IllegalArgumentException("Unknown format: " + format);
+            };
+        }
+
+        byte[] encode(String json) throws IOException {
+            return mapper.writeValueAsBytes(JSON.readTree(json));
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
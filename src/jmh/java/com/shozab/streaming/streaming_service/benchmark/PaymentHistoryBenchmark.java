@@ -0,0 +1,78 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shozab.streaming.streaming_service.payment.InMemoryPaymentLedger;
+import com.shozab.streaming.streaming_service.payment.PaymentLedger;
+import com.shozab.streaming.streaming_service.payment.PaymentPage;
+import com.shozab.streaming.streaming_service.payment.RecordedPayment;
+
+/**
+ * History queries against one payor with {@code paymentCount} payments: a page of {@code pageSize} payments from a
+ * time range, located by binary search, against reading the payor's whole history as {@code findByPayor} did before.
+ * Setup prints the heap used by the ledger.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class PaymentHistoryBenchmark {
+
+    private static final String PAYOR = BenchmarkData.email(0);
+
+    @Param({"10000", "1000000"})
+    public int paymentCount;
+
+    @Param({"100"})
+    public int pageSize;
+
+    private PaymentLedger ledger;
+    private long[] timestamps;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        ledger = new InMemoryPaymentLedger();
+        for (int i = 0; i < paymentCount; i++) {
+            ledger.append(PAYOR, BenchmarkData.payment(0));
+            if (i % (paymentCount / 100) == 0) Thread.sleep(1); // spread payments over distinct timestamps
+        }
+        System.gc();
+        System.out.printf("%nLedger heap: %d MB for %d payments%n",
+            (runtime.totalMemory() - runtime.freeMemory() - heapBefore) >> 20, paymentCount);
+
+        timestamps = ledger.findByPayor(PAYOR, 0, Long.MAX_VALUE, 0, paymentCount).getPayments().stream()
+            .mapToLong(RecordedPayment::timestampMillis).toArray();
+    }
+
+    @Benchmark
+    public PaymentPage rangePage() {
+        next = (next + 7919) % paymentCount;
+        long from = timestamps[next];
+        return ledger.findByPayor(PAYOR, from, Long.MAX_VALUE, 0, pageSize);
+    }
+
+    @Benchmark
+    public int fullScan() {
+        return ledger.findByPayor(PAYOR).size();
+    }
+}
@@ -0,0 +1,62 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.payment.PaymentService;
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
+import com.shozab.streaming.streaming_service.registration.UserService;
+
+/**
+ * PaymentService.processPayment for card-holding users picked at random from a pre-filled store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PaymentServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int userCount;
+
+    private PaymentService paymentService;
+    private Payment[] payments;
+
+    @Setup
+    public void setUp() {
+        InMemoryUserRepository userRepository = new InMemoryUserRepository();
+        for (long id = 0; id < userCount; id++) {
+            userRepository.insert(BenchmarkData.user(id));
+        }
+        paymentService = new PaymentService(new UserService(userRepository, new PasswordHasher()));
+
+        // Only even ids have a card on file
+        payments = new Payment[Math.min(userCount / 2, 65_536)];
+        for (int i = 0; i < payments.length; i++) {
+            payments[i] = BenchmarkData.payment(2L * i);
+        }
+    }
+
+    @Benchmark
+    public Payment processPayment() {
+        Payment payment = payments[ThreadLocalRandom.current().nextInt(payments.length)];
+        paymentService.processPayment(payment);
+        return payment;
+    }
+}
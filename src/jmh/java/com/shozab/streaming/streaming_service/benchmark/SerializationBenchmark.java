@@ -0,0 +1,106 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.registration.User;
+
+/**
+ * Jackson (de)serialization of the request and response bodies in each wire format, using the same module
+ * setup as the HTTP layer: a payment as {@code POST /payments} reads it, and a user and a page of users as
+ * {@code GET /users} writes them. Setup prints the encoded size of each body.
+ * <pre>
+ * mvn -Pbenchmarks -DskipTests verify -Djmh.args="SerializationBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private ObjectMapper objectMapper;
+    private JavaType userListType;
+    private User user;
+    private Payment payment;
+    private List<User> page;
+    private byte[] userBytes;
+    private byte[] paymentBytes;
+    private byte[] pageBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = switch (format) {
+            case "json" -> Jackson2ObjectMapperBuilder.json().build();
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+        userListType = objectMapper.getTypeFactory().constructCollectionType(List.class, User.class);
+        user = BenchmarkData.user(42);
+        payment = BenchmarkData.payment(42);
+        page = new ArrayList<>();
+        for (long id = 0; id < PAGE_SIZE; id++) {
+            page.add(BenchmarkData.user(id));
+        }
+        userBytes = objectMapper.writeValueAsBytes(user);
+        paymentBytes = objectMapper.writeValueAsBytes(payment);
+        pageBytes = objectMapper.writerFor(userListType).writeValueAsBytes(page);
+        System.out.printf("%n%s bytes: user=%d payment=%d page of %d users=%d%n",
+            format, userBytes.length, paymentBytes.length, PAGE_SIZE, pageBytes.length);
+    }
+
+    @Benchmark
+    public byte[] serializeUser() throws Exception {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public User deserializeUser() throws Exception {
+        return objectMapper.readValue(userBytes, User.class);
+    }
+
+    @Benchmark
+    public byte[] serializePayment() throws Exception {
+        return objectMapper.writeValueAsBytes(payment);
+    }
+
+    @Benchmark
+    public Payment deserializePayment() throws Exception {
+        return objectMapper.readValue(paymentBytes, Payment.class);
+    }
+
+    @Benchmark
+    public byte[] serializeUserPage() throws Exception {
+        return objectMapper.writerFor(userListType).writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<User> deserializeUserPage() throws Exception {
+        return objectMapper.readValue(pageBytes, userListType);
+    }
+}
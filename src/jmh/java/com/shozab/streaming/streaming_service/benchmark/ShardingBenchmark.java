@@ -0,0 +1,106 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.shozab.streaming.streaming_service.cluster.ConsistentHashRing;
+import com.shozab.streaming.streaming_service.cluster.LocalShard;
+import com.shozab.streaming.streaming_service.cluster.LocalShardTransport;
+import com.shozab.streaming.streaming_service.cluster.ShardedUserRepository;
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.OffHeapUserRepository;
+import com.shozab.streaming.streaming_service.registration.User;
+
+/**
+ * Throughput of a sharded registry as shards are added: {@code shards} nodes run in this JVM over the
+ * in-process transport, and each benchmark thread sends its requests to one of them, so most keys are
+ * forwarded to another node. Registration covers the username reservation and the insert at the email's owner.
+ * <pre>
+ * mvn -Pbenchmarks -DskipTests verify -Djmh.args="ShardingBenchmark -t 8"
+ * </pre>
+ * Scaling needs as many cores as threads; on fewer cores the figures show the routing overhead instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:MaxDirectMemorySize=2g"})
+public class ShardingBenchmark {
+
+    private static final int PRELOADED_USERS = 100_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    @Param({"in-memory", "off-heap"})
+    public String store;
+
+    private List<ShardedUserRepository> nodes;
+    private final AtomicLong nextId = new AtomicLong();
+
+    /** Fresh cluster per iteration so registrations do not pile up across the run. */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            names.add("node-" + i);
+        }
+        ConsistentHashRing ring = new ConsistentHashRing(names);
+        LocalShardTransport transport = new LocalShardTransport();
+        List<LocalShard> localShards = new ArrayList<>();
+        for (String name : names) {
+            LocalShard shard = new LocalShard("off-heap".equals(store) ? new OffHeapUserRepository() : new InMemoryUserRepository());
+            transport.register(name, shard);
+            localShards.add(shard);
+        }
+        nodes = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            nodes.add(new ShardedUserRepository(names.get(i), localShards.get(i), ring, transport));
+        }
+        for (long id = 0; id < PRELOADED_USERS; id++) {
+            nodes.get((int) (id % shards)).insert(BenchmarkData.user(id));
+        }
+        nextId.set(PRELOADED_USERS);
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        ShardedUserRepository node;
+        long lookup;
+
+        @Setup(Level.Iteration)
+        public void setUp(ShardingBenchmark cluster, ThreadParams threads) {
+            node = cluster.nodes.get(threads.getThreadIndex() % cluster.shards);
+            lookup = threads.getThreadIndex() * 7919L;
+        }
+    }
+
+    @Benchmark
+    public void register(Client client) {
+        client.node.insert(BenchmarkData.user(nextId.getAndIncrement()));
+    }
+
+    @Benchmark
+    public User lookup(Client client) {
+        return client.node.findByEmail(BenchmarkData.email(client.lookup++ % PRELOADED_USERS));
+    }
+}
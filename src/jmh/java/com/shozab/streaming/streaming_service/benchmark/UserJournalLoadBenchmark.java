@@ -0,0 +1,100 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.JournaledUserRepository;
+import com.shozab.streaming.streaming_service.registration.OffHeapUserRepository;
+import com.shozab.streaming.streaming_service.registration.UserRepository;
+import com.shozab.streaming.streaming_service.storage.FsyncPolicy;
+import com.shozab.streaming.streaming_service.storage.MappedJournal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Restart time: loading a snapshot of userCount users, plus a log of 10% more, into a fresh store.
+ * Each invocation is one cold start of the repository (the files stay in the page cache).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:MaxDirectMemorySize=2g"})
+public class UserJournalLoadBenchmark {
+
+    @Param({"in-memory", "off-heap"})
+    public String store;
+
+    @Param({"1000000"})
+    public int userCount;
+
+    @Param({"0"})
+    public int loadParallelism;
+
+    private Path directory;
+    private JournaledUserRepository loaded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-journal");
+        try (JournaledUserRepository userRepository = open()) {
+            for (long id = 0; id < userCount; id++) {
+                userRepository.insert(BenchmarkData.user(id));
+            }
+            userRepository.snapshot();
+            for (long id = userCount; id < userCount + userCount / 10; id++) {
+                userRepository.insert(BenchmarkData.user(id));
+            }
+        }
+    }
+
+    @Benchmark
+    public long load() throws IOException {
+        loaded = open();
+        return loaded.count();
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeLoaded() throws IOException {
+        if (loaded != null) {
+            loaded.close();
+            loaded = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private JournaledUserRepository open() throws IOException {
+        UserRepository delegate = "off-heap".equals(store) ? new OffHeapUserRepository(userCount * 2) : new InMemoryUserRepository();
+        return new JournaledUserRepository(delegate, directory, MappedJournal.DEFAULT_REGION_SIZE, FsyncPolicy.GROUPED, 4096,
+            Duration.ZERO, loadParallelism, Duration.ZERO, 0, new SimpleMeterRegistry());
+    }
+}
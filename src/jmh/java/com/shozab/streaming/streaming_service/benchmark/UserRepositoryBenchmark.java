@@ -0,0 +1,70 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserService;
+
+/**
+ * Registration cost of the uniqueness checks and insert, excluding password hashing,
+ * as the store grows. Latency should stay flat across userCount.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserRepositoryBenchmark {
+
+    private static final LocalDate DATE_OF_BIRTH = LocalDate.of(2000, 1, 1);
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int userCount;
+
+    private InMemoryUserRepository userRepository;
+    private UserService userService;
+    private long nextId;
+
+    @Setup
+    public void setUp() {
+        userRepository = new InMemoryUserRepository();
+        userService = new UserService(userRepository, new PasswordHasher());
+        for (nextId = 0; nextId < userCount; nextId++) {
+            userRepository.insert(user(nextId));
+        }
+    }
+
+    @Benchmark
+    public User registerNewUser() {
+        User user = user(nextId++);
+        userService.doesUsernameAlreadyExist(user.getUsername());
+        userService.doesEmailAlreadyExist(user.getEmail());
+        userRepository.insert(user);
+        return user;
+    }
+
+    @Benchmark
+    public boolean existingUsernameLookup() {
+        return userRepository.existsByUsername("user_" + (nextId++ % userCount));
+    }
+
+    private static User user(long id) {
+        return new User(id, "user_" + id, "Password1", "user" + id + "@example.org", DATE_OF_BIRTH, null);
+    }
+}
@@ -0,0 +1,90 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * UserService hot paths against a pre-filled store. Thread count is set with -t (jmh.threads).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int userCount;
+
+    /** BCrypt cost used by registerUser; 10 is the production default. */
+    @Param({"4", "10"})
+    public int hashCost;
+
+    private UserService userService;
+    private PasswordHasher passwordHasher;
+    private final AtomicLong nextId = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        InMemoryUserRepository userRepository = new InMemoryUserRepository();
+        for (long id = 0; id < userCount; id++) {
+            userRepository.insert(BenchmarkData.user(id));
+        }
+        nextId.set(userCount);
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(hashCost), Runtime.getRuntime().availableProcessors(),
+            PasswordHasher.DEFAULT_QUEUE_CAPACITY, PasswordHasher.DEFAULT_RETRY_AFTER_SECONDS, new SimpleMeterRegistry());
+        userService = new UserService(userRepository, passwordHasher);
+    }
+
+    @TearDown
+    public void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Benchmark
+    public void registerUser() {
+        userService.registerUser(BenchmarkData.user(nextId.getAndIncrement()));
+    }
+
+    @Benchmark
+    public User findUserByEmail() {
+        return userService.findUserByEmail(BenchmarkData.email(ThreadLocalRandom.current().nextInt(userCount)));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<User> getUsers() {
+        return userService.getUsers(Optional.empty());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<User> getUsersWithCreditCard() {
+        return userService.getUsers(Optional.of(true));
+    }
+}
@@ -0,0 +1,94 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.OffHeapUserRepository;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserRepository;
+
+/**
+ * Heap and off-heap stores compared at the same user count: lookup latency here, and
+ * heap / direct memory after loading (printed by setup). Run with the GC profiler to also
+ * compare GC time while the store is live:
+ * <pre>
+ * mvn -Pbenchmarks -DskipTests verify -Djmh.args="UserStoreBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-XX:MaxDirectMemorySize=2g"})
+public class UserStoreBenchmark {
+
+    @Param({"in-memory", "off-heap"})
+    public String store;
+
+    @Param({"1000000", "2000000"})
+    public int userCount;
+
+    private UserRepository userRepository;
+    private String[] emails;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+
+        userRepository = "off-heap".equals(store) ? new OffHeapUserRepository(userCount) : new InMemoryUserRepository();
+        for (long id = 0; id < userCount; id++) {
+            userRepository.insert(BenchmarkData.user(id));
+        }
+
+        System.out.printf("%n%s store, %d users: heap %d MB, direct %d MB%n", store, userCount,
+            (usedHeap() - heapBefore) >> 20, (usedDirect() - directBefore) >> 20);
+
+        emails = new String[4096];
+        for (int i = 0; i < emails.length; i++) {
+            emails[i] = BenchmarkData.email((long) i * 7919 % userCount);
+        }
+    }
+
+    @Benchmark
+    public User findByEmail() {
+        return userRepository.findByEmail(emails[next++ & (emails.length - 1)]);
+    }
+
+    @Benchmark
+    public boolean existsByUsername() {
+        return userRepository.existsByUsername("user_" + (next++ % userCount));
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+            .filter(pool -> "direct".equals(pool.getName()))
+            .mapToLong(BufferPoolMXBean::getMemoryUsed)
+            .sum();
+    }
+}
@@ -0,0 +1,80 @@
+package com.shozab.streaming.streaming_service.benchmark;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserValidator;
+import com.shozab.streaming.streaming_service.registration.ValidationResult;
+
+/**
+ * Compares the single-pass validators against the previous String.matches / throw-and-rethrow checks,
+ * on both an accepted and a rejected registration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserValidationBenchmark {
+
+    @Param({"valid", "invalid"})
+    public String input;
+
+    private User user;
+
+    @Setup
+    public void setUp() {
+        user = input.equals("valid")
+            ? new User(1L, "johndoe", "Password1", "john.doe@example.co.uk", LocalDate.of(2000, 1, 1), 1234567812345678L)
+            : new User(1L, "john doe", "password", "johndoe@example", LocalDate.of(2000, 1, 1), 1234567812345678L);
+    }
+
+    @Benchmark
+    public ValidationResult singlePass() {
+        return UserValidator.validate(user);
+    }
+
+    @Benchmark
+    public boolean regex() {
+        try {
+            legacyUsername(user.getUsername());
+            legacyPassword(user.getPassword());
+            legacyEmail(user.getEmail());
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void legacyUsername(String username) {
+        if (!(username != null && username.length() >= 3 && username.matches("^[a-zA-Z0-9_-]*$"))) {
+            throw new IllegalArgumentException("Invalid username");
+        }
+    }
+
+    private static void legacyPassword(String password) {
+        if (!(password != null && password.length() >= 8 && password.matches(".*[A-Z].*") && password.matches(".*[0-9].*"))) {
+            throw new IllegalArgumentException("Invalid password");
+        }
+    }
+
+    private static void legacyEmail(String email) {
+        if (!(email != null && email.matches("^[a-zA-Z0-9%+._-]+@[a-zA-Z0-9][a-zA-Z0-9.-]*\\.[a-zA-Z]{2,}$") && !email.contains(".."))) {
+            throw new IllegalArgumentException("Invalid email");
+        }
+    }
+}
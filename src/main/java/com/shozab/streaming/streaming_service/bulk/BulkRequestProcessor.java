@@ -0,0 +1,159 @@
+package com.shozab.streaming.streaming_service.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Streams bulk requests through a single-record handler.
+ *
+ * <p>The body may be a JSON array or newline-delimited JSON. Records are parsed one at a time with
+ * Jackson's streaming parser and handed to a worker pool, with at most {@code max-in-flight} records
+ * of one request outstanding. One {@link BulkResult} per record is written back as NDJSON in input
+ * order as soon as it is ready, so neither the request nor the response is held in memory.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BulkRequestProcessor {
+
+    private static final int FLUSH_EVERY = 64;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter resultWriter;
+    private final ExecutorService workers;
+    private final int maxInFlight;
+
+    public BulkRequestProcessor(ObjectMapper objectMapper,
+            @Value("${streaming.bulk.parallelism:0}") int parallelism,
+            @Value("${streaming.bulk.max-in-flight:64}") int maxInFlight) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.objectMapper = objectMapper;
+        this.resultWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.maxInFlight = Math.max(1, maxInFlight);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        this.workers = executor;
+    }
+
+    /**
+     * @param handler processes one record and returns the response the single-record endpoint would give
+     */
+    public <T> StreamingResponseBody process(InputStream body, Class<T> type, Function<T, ResponseEntity<String>> handler) {
+        ObjectReader reader = objectMapper.readerFor(type);
+        return out -> {
+            try (JsonParser parser = objectMapper.createParser(body);
+                 JsonGenerator generator = objectMapper.createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setRootValueSeparator(null);
+                process(parser, reader, handler, new ResultStream(generator));
+            }
+        };
+    }
+
+    private <T> void process(JsonParser parser, ObjectReader reader, Function<T, ResponseEntity<String>> handler,
+            ResultStream results) throws IOException {
+        ArrayDeque<CompletableFuture<BulkResult>> inFlight = new ArrayDeque<>(maxInFlight);
+        long index = 0;
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) token = parser.nextToken();
+
+            while (token != null && token != JsonToken.END_ARRAY) {
+                T record = reader.readValue(parser);
+                final long recordIndex = index++;
+                inFlight.add(CompletableFuture.supplyAsync(() -> handle(recordIndex, record, handler), workers));
+                if (inFlight.size() >= maxInFlight) {
+                    results.write(inFlight.poll().join());
+                }
+                token = parser.nextToken();
+            }
+        } catch (JsonProcessingException e) {
+            // The parser cannot resynchronise after a malformed record, so report it and stop.
+            drain(inFlight, results);
+            results.write(new BulkResult(index, HttpStatus.BAD_REQUEST.value(), "Malformed record: " + e.getOriginalMessage()));
+            results.flush();
+            return;
+        }
+        drain(inFlight, results);
+        results.flush();
+    }
+
+    private static <T> BulkResult handle(long index, T record, Function<T, ResponseEntity<String>> handler) {
+        try {
+            ResponseEntity<String> response = handler.apply(record);
+            return new BulkResult(index, response.getStatusCode().value(), response.getBody());
+        } catch (RuntimeException e) {
+            return new BulkResult(index, HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getMessage());
+        }
+    }
+
+    private static void drain(ArrayDeque<CompletableFuture<BulkResult>> inFlight, ResultStream results) throws IOException {
+        while (!inFlight.isEmpty()) {
+            results.write(inFlight.poll().join());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    private final class ResultStream {
+        private final JsonGenerator generator;
+        private long written;
+
+        ResultStream(JsonGenerator generator) {
+            this.generator = generator;
+        }
+
+        void write(BulkResult result) throws IOException {
+            resultWriter.writeValue(generator, result);
+            generator.writeRaw('\n');
+            if (++written % FLUSH_EVERY == 0) {
+                generator.flush();
+            }
+        }
+
+        void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bulk-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
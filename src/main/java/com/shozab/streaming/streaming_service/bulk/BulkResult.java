@@ -0,0 +1,21 @@
+package com.shozab.streaming.streaming_service.bulk;
+
+/**
+ * Outcome of one record of a bulk request: its position in the input, and the status code and message
+ * the single-record endpoint would have returned.
+ */
+public class BulkResult {
+    private final long index;
+    private final int status;
+    private final String message;
+
+    public BulkResult(long index, int status, String message) {
+        this.index = index;
+        this.status = status;
+        this.message = message;
+    }
+
+    public long getIndex() {return index;}
+    public int getStatus() {return status;}
+    public String getMessage() {return message;}
+}
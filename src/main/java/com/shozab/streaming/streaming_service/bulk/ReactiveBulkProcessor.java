@@ -0,0 +1,50 @@
+package com.shozab.streaming.streaming_service.bulk;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebInputException;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive counterpart of {@link BulkRequestProcessor}: records decoded from a JSON array or NDJSON body
+ * are processed with at most {@code max-in-flight} outstanding, and results are emitted in input order.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBulkProcessor {
+
+    private final int maxInFlight;
+
+    public ReactiveBulkProcessor(@Value("${streaming.bulk.max-in-flight:64}") int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * @param handler processes one record and emits the response the single-record endpoint would give
+     */
+    public <T> Flux<BulkResult> process(Flux<T> records, Function<T, Mono<ResponseEntity<String>>> handler) {
+        AtomicLong decoded = new AtomicLong();
+        return records
+            .doOnNext(record -> decoded.incrementAndGet())
+            .index()
+            .flatMapSequentialDelayError(record -> handle(record.getT1(), record.getT2(), handler), maxInFlight, 1)
+            // A malformed record ends decoding; report it once the records before it have completed
+            .onErrorResume(e -> e instanceof DecodingException || e instanceof ServerWebInputException,
+                e -> Mono.just(new BulkResult(decoded.get(), HttpStatus.BAD_REQUEST.value(), "Malformed record: " + e.getMessage())));
+    }
+
+    private static <T> Mono<BulkResult> handle(long index, T record, Function<T, Mono<ResponseEntity<String>>> handler) {
+        return handler.apply(record)
+            .map(response -> new BulkResult(index, response.getStatusCode().value(), response.getBody()))
+            .onErrorResume(e -> Mono.just(new BulkResult(index, HttpStatus.INTERNAL_SERVER_ERROR.value(), e.getMessage())));
+    }
+}
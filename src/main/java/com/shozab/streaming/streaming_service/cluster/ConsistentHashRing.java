@@ -0,0 +1,90 @@
+package com.shozab.streaming.streaming_service.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Maps keys to nodes by consistent hashing. Each node is placed on a 64-bit ring at
+ * {@code virtualNodes} points, and a key belongs to the first node point at or after its own hash,
+ * so adding or removing a node moves only about 1/N of the keys and the load stays even.
+ *
+ * <p>The ring is immutable: points are kept in one sorted array and looked up by binary search.
+ */
+public final class ConsistentHashRing {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(List<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A ring needs at least one node");
+        }
+        if (nodes.size() > 256) {
+            throw new IllegalArgumentException("At most 256 nodes are supported");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+
+        long[] unsorted = new long[nodes.size() * virtualNodes];
+        for (int node = 0; node < nodes.size(); node++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                // Low bits carry the node index so equal hashes still sort deterministically
+                unsorted[node * virtualNodes + v] = hash(nodes.get(node) + "#" + v) & ~0xFFL | node;
+            }
+        }
+        Arrays.sort(unsorted);
+        this.points = unsorted;
+        this.owners = new int[unsorted.length];
+        for (int i = 0; i < unsorted.length; i++) {
+            owners[i] = (int) (unsorted[i] & 0xFF);
+        }
+    }
+
+    /**
+     * @return the node that owns {@code key}
+     */
+    public String nodeFor(String key) {
+        return nodes.get(indexFor(key));
+    }
+
+    /**
+     * @return the position in {@link #nodes()} of the node that owns {@code key}
+     */
+    public int indexFor(String key) {
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 mixer to spread short, similar keys.
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,67 @@
+package com.shozab.streaming.streaming_service.cluster;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserPage;
+import com.shozab.streaming.streaming_service.registration.UserRepository;
+
+/**
+ * The shard a node serves from its own memory: a {@link UserRepository} for the emails it owns and a
+ * map of reserved usernames to the email each was reserved for.
+ */
+public class LocalShard implements Shard {
+
+    private final UserRepository userRepository;
+    private final ConcurrentHashMap<String, String> reservedUsernames = new ConcurrentHashMap<>();
+
+    public LocalShard(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        return userRepository.findByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return userRepository.existsByEmail(email);
+    }
+
+    @Override
+    public void insert(User user) throws IllegalStateException {
+        userRepository.insert(user);
+    }
+
+    @Override
+    public User updateCreditCardNumber(String email, Long creditCardNumber) throws IllegalStateException {
+        return userRepository.updateCreditCardNumber(email, creditCardNumber);
+    }
+
+    @Override
+    public UserPage findPage(long after, int limit, Optional<Boolean> hasCreditCard) {
+        return userRepository.findPage(after, limit, hasCreditCard);
+    }
+
+    @Override
+    public long count(Optional<Boolean> hasCreditCard) {
+        return userRepository.count(hasCreditCard);
+    }
+
+    @Override
+    public boolean reserveUsername(String username, String email) {
+        return reservedUsernames.putIfAbsent(username, email) == null;
+    }
+
+    @Override
+    public void releaseUsername(String username, String email) {
+        reservedUsernames.remove(username, email);
+    }
+
+    @Override
+    public boolean isUsernameReserved(String username) {
+        return reservedUsernames.containsKey(username);
+    }
+}
@@ -0,0 +1,27 @@
+package com.shozab.streaming.streaming_service.cluster;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process transport: nodes register their {@link Shard} and calls are plain method calls.
+ * Used to run several nodes in one JVM for tests, benchmarks and in-process sharding.
+ */
+public class LocalShardTransport implements ShardTransport {
+
+    private final ConcurrentHashMap<String, Shard> shards = new ConcurrentHashMap<>();
+
+    public void register(String node, Shard shard) {
+        if (shards.putIfAbsent(node, shard) != null) {
+            throw new IllegalStateException("Node " + node + " is already registered");
+        }
+    }
+
+    @Override
+    public Shard connect(String node) {
+        Shard shard = shards.get(node);
+        if (shard == null) {
+            throw new IllegalStateException("Unknown node " + node);
+        }
+        return shard;
+    }
+}
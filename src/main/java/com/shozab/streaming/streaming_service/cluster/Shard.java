@@ -0,0 +1,51 @@
+package com.shozab.streaming.streaming_service.cluster;
+
+import java.util.Optional;
+
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserPage;
+
+/**
+ * The operations one node serves for the rest of the cluster: storage of the users whose email it owns,
+ * and the reservations of the usernames it owns. Reached through a {@link ShardTransport}, so every
+ * argument and result must be serializable by a remote transport.
+ */
+public interface Shard {
+
+    User findByEmail(String email);
+
+    boolean existsByEmail(String email);
+
+    /**
+     * Stores a user whose email this shard owns. The username must already be reserved.
+     * @throws com.shozab.streaming.streaming_service.registration.DuplicateUserException if the email is already registered
+     */
+    void insert(User user) throws IllegalStateException;
+
+    /**
+     * @throws IllegalStateException if no user is registered with the email
+     */
+    User updateCreditCardNumber(String email, Long creditCardNumber) throws IllegalStateException;
+
+    /**
+     * Up to {@code limit} of this shard's users after local cursor {@code after}, as in
+     * {@link com.shozab.streaming.streaming_service.registration.UserRepository#findPage}.
+     */
+    UserPage findPage(long after, int limit, Optional<Boolean> hasCreditCard);
+
+    long count(Optional<Boolean> hasCreditCard);
+
+    /**
+     * Claims a username this shard owns for the registration of {@code email}.
+     * @return false if the username is already reserved
+     */
+    boolean reserveUsername(String username, String email);
+
+    /**
+     * Releases a reservation made for {@code email}, after its registration failed. Reservations held
+     * for another email are left alone.
+     */
+    void releaseUsername(String username, String email);
+
+    boolean isUsernameReserved(String username);
+}
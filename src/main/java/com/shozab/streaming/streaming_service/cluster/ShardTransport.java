@@ -0,0 +1,11 @@
+package com.shozab.streaming.streaming_service.cluster;
+
+/**
+ * Reaches the {@link Shard} served by another node. Implementations decide how requests travel,
+ * e.g. in process for tests and benchmarks or over HTTP between JVMs, and report an unreachable
+ * node by throwing {@link IllegalStateException}.
+ */
+public interface ShardTransport {
+
+    Shard connect(String node);
+}
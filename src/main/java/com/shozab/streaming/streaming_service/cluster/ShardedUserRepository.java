@@ -0,0 +1,187 @@
+package com.shozab.streaming.streaming_service.cluster;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import com.shozab.streaming.streaming_service.registration.DuplicateUserException;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserPage;
+import com.shozab.streaming.streaming_service.registration.UserRepository;
+
+/**
+ * A node's view of a sharded user registry. Users are partitioned by consistent hash of their email;
+ * requests for emails this node owns go to its local {@link Shard}, the rest are forwarded through the
+ * {@link ShardTransport}.
+ *
+ * <p>Usernames are unique across the cluster through a separate partition: the node owning the hash of a
+ * username holds its reservation. A registration first reserves the username at that node, then inserts
+ * the user at the email's owner, and releases the reservation if the insert fails.
+ *
+ * <p>Listings walk the shards in ring node order, so users come grouped by shard rather than in global
+ * registration order. A page cursor carries the shard index in its top 8 bits and that shard's own cursor
+ * in the rest.
+ */
+public class ShardedUserRepository implements UserRepository {
+
+    private static final int SHARD_SHIFT = 56;
+    private static final long LOCAL_CURSOR_MASK = (1L << SHARD_SHIFT) - 1;
+    private static final int SCAN_PAGE_SIZE = 1024;
+
+    private final String localNode;
+    private final Shard localShard;
+    private final ConsistentHashRing ring;
+    private final ShardTransport transport;
+
+    public ShardedUserRepository(String localNode, Shard localShard, ConsistentHashRing ring, ShardTransport transport) {
+        if (!ring.nodes().contains(localNode)) {
+            throw new IllegalArgumentException("Node " + localNode + " is not on the ring");
+        }
+        this.localNode = localNode;
+        this.localShard = localShard;
+        this.ring = ring;
+        this.transport = transport;
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        return email == null ? null : owner(email).findByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return email != null && owner(email).existsByEmail(email);
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return username != null && owner(username).isUsernameReserved(username);
+    }
+
+    @Override
+    public void insert(User user) throws IllegalStateException {
+        Shard reservations = owner(user.getUsername());
+        if (!reservations.reserveUsername(user.getUsername(), user.getEmail())) {
+            throw new DuplicateUserException(DuplicateUserException.Key.USERNAME);
+        }
+        try {
+            owner(user.getEmail()).insert(user);
+        } catch (RuntimeException e) {
+            reservations.releaseUsername(user.getUsername(), user.getEmail());
+            throw e;
+        }
+    }
+
+    @Override
+    public User updateCreditCardNumber(String email, Long creditCardNumber) throws IllegalStateException {
+        if (email == null) {
+            throw new IllegalStateException("User not found");
+        }
+        return owner(email).updateCreditCardNumber(email, creditCardNumber);
+    }
+
+    @Override
+    public Collection<User> findAll(Optional<Boolean> hasCreditCard) {
+        return new AbstractCollection<User>() {
+            @Override
+            public Iterator<User> iterator() {
+                return new PagingIterator(hasCreditCard);
+            }
+
+            @Override
+            public int size() {
+                return (int) Math.min(Integer.MAX_VALUE, count(hasCreditCard));
+            }
+        };
+    }
+
+    @Override
+    public UserPage findPage(long after, int limit, Optional<Boolean> hasCreditCard) {
+        List<String> nodes = ring.nodes();
+        int shard = (int) (after >>> SHARD_SHIFT);
+        long localAfter = after & LOCAL_CURSOR_MASK;
+        List<User> users = new ArrayList<>(Math.min(limit, 256));
+
+        while (shard < nodes.size() && users.size() < limit) {
+            UserPage page = shard(nodes.get(shard)).findPage(localAfter, limit - users.size(), hasCreditCard);
+            users.addAll(page.getUsers());
+            if (page.getNextCursor() != null) {
+                return new UserPage(users, ((long) shard << SHARD_SHIFT) | page.getNextCursor());
+            }
+            shard++;
+            localAfter = 0;
+        }
+        // The page is full and ended exactly at a shard boundary; continue only if a later shard has matches
+        for (int next = shard; next < nodes.size(); next++) {
+            if (shard(nodes.get(next)).count(hasCreditCard) > 0) {
+                return new UserPage(users, (long) next << SHARD_SHIFT);
+            }
+        }
+        return new UserPage(users, null);
+    }
+
+    @Override
+    public long count(Optional<Boolean> hasCreditCard) {
+        long count = 0;
+        for (String node : ring.nodes()) {
+            count += shard(node).count(hasCreditCard);
+        }
+        return count;
+    }
+
+    /**
+     * Re-reserves the username of every user stored on this node at the username's owner. Reservations are
+     * held in memory, so after a restart each node runs this once its users are loaded.
+     */
+    public void restoreReservations() {
+        long after = 0;
+        while (true) {
+            UserPage page = localShard.findPage(after, SCAN_PAGE_SIZE, Optional.empty());
+            for (User user : page.getUsers()) {
+                owner(user.getUsername()).reserveUsername(user.getUsername(), user.getEmail());
+            }
+            if (page.getNextCursor() == null) return;
+            after = page.getNextCursor();
+        }
+    }
+
+    private Shard owner(String key) {
+        return shard(ring.nodeFor(key));
+    }
+
+    private Shard shard(String node) {
+        return node.equals(localNode) ? localShard : transport.connect(node);
+    }
+
+    /** Fetches users a page at a time from each shard in turn. */
+    private final class PagingIterator implements Iterator<User> {
+        private final Optional<Boolean> hasCreditCard;
+        private Iterator<User> current = Collections.emptyIterator();
+        private Long cursor = 0L;
+
+        PagingIterator(Optional<Boolean> hasCreditCard) {
+            this.hasCreditCard = hasCreditCard;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && cursor != null) {
+                UserPage page = findPage(cursor, SCAN_PAGE_SIZE, hasCreditCard);
+                current = page.getUsers().iterator();
+                cursor = page.getNextCursor();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public User next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+    }
+}
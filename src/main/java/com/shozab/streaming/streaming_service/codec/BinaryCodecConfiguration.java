@@ -0,0 +1,107 @@
+package com.shozab.streaming.streaming_service.codec;
+
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reads and writes {@link BinaryMediaTypes CBOR and Smile} bodies on both stacks with mappers built from
+ * Spring Boot's {@link Jackson2ObjectMapperBuilder}, so the binary bodies get the same modules and
+ * {@code spring.jackson.*} settings as JSON and differ from it only in encoding.
+ */
+@Configuration
+public class BinaryCodecConfiguration {
+
+    static ObjectMapper cborMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).factory(new CBORFactory()).build();
+    }
+
+    static ObjectMapper smileMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).factory(new SmileFactory()).build();
+    }
+
+    /**
+     * Converter beans replace Spring MVC's defaults of the same type in place, after the JSON converter,
+     * so JSON stays the answer to a missing or wildcard {@code Accept} header.
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class Servlet {
+
+        @Bean
+        MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+            return new MappingJackson2CborHttpMessageConverter(cborMapper(builder));
+        }
+
+        @Bean
+        MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+            return new MappingJackson2SmileHttpMessageConverter(smileMapper(builder));
+        }
+    }
+
+    /**
+     * WebFlux registers Smile by default but not Jackson's CBOR codecs. Neither binary encoder can write a stream
+     * of values as one array, so handlers collect multi-value CBOR and Smile bodies before writing them.
+     */
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class Reactive {
+
+        @Bean
+        CodecCustomizer binaryCodecCustomizer(Jackson2ObjectMapperBuilder builder) {
+            ObjectMapper cbor = cborMapper(builder);
+            ObjectMapper smile = smileMapper(builder);
+            return configurer -> {
+                configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, BinaryMediaTypes.APPLICATION_SMILE));
+                configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, BinaryMediaTypes.APPLICATION_SMILE));
+                configurer.customCodecs().register(new Jackson2CborDecoder(cbor, BinaryMediaTypes.APPLICATION_CBOR));
+                configurer.customCodecs().register(new SingleValueCborEncoder(cbor));
+            };
+        }
+    }
+
+    /**
+     * Spring's CBOR encoder refuses every publisher, including the single value a message writer passes it;
+     * this one encodes single values and still refuses streams.
+     */
+    static class SingleValueCborEncoder extends Jackson2CborEncoder {
+
+        SingleValueCborEncoder(ObjectMapper mapper) {
+            super(mapper, BinaryMediaTypes.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            if (inputStream instanceof Mono) {
+                return Mono.from(inputStream)
+                    .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+                    .flux();
+            }
+            return super.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+        }
+    }
+}
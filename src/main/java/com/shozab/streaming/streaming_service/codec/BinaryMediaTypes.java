@@ -0,0 +1,47 @@
+package com.shozab.streaming.streaming_service.codec;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+
+/**
+ * The compact binary encodings offered alongside JSON: CBOR and Jackson's Smile. Both carry the same fields
+ * as the JSON bodies, so clients can switch with the {@code Content-Type} and {@code Accept} headers alone.
+ */
+public final class BinaryMediaTypes {
+
+    public static final String APPLICATION_CBOR_VALUE = MediaType.APPLICATION_CBOR_VALUE;
+    public static final MediaType APPLICATION_CBOR = MediaType.APPLICATION_CBOR;
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+
+    /** What a document endpoint can answer with, in order of preference. */
+    private static final List<MediaType> DOCUMENT_TYPES = List.of(MediaType.APPLICATION_JSON, APPLICATION_CBOR, APPLICATION_SMILE);
+
+    private BinaryMediaTypes() {
+    }
+
+    /**
+     * Picks the response type for a document endpoint from the {@code Accept} header the way Spring MVC does for
+     * {@code produces = {JSON, CBOR, Smile}}: the most preferred acceptable type wins, and JSON answers a missing,
+     * wildcard or unsupported header.
+     */
+    public static MediaType negotiate(List<MediaType> accept) {
+        List<MediaType> byQuality = new ArrayList<>(accept);
+        byQuality.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType acceptable : byQuality) {
+            for (MediaType candidate : DOCUMENT_TYPES) {
+                if (acceptable.includes(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    public static boolean isBinary(MediaType mediaType) {
+        return APPLICATION_CBOR.equalsTypeAndSubtype(mediaType) || APPLICATION_SMILE.equalsTypeAndSubtype(mediaType);
+    }
+}
@@ -0,0 +1,16 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+/**
+ * A card network's answer to an authorization request: approved with the network's {@code reference}, or
+ * declined with a {@code reason}.
+ */
+public record Authorization(boolean approved, String reference, String reason) {
+
+    public static Authorization approved(String reference) {
+        return new Authorization(true, reference, null);
+    }
+
+    public static Authorization declined(String reason) {
+        return new Authorization(false, null, reason);
+    }
+}
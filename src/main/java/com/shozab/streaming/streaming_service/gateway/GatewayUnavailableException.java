@@ -0,0 +1,17 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+/**
+ * Thrown without calling the card network when its circuit is open or too many calls are already in flight;
+ * answered with 503 and {@link #getRetryAfterSeconds()}.
+ */
+public class GatewayUnavailableException extends PaymentGatewayException {
+
+    private final long retryAfterSeconds;
+
+    public GatewayUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {return retryAfterSeconds;}
+}
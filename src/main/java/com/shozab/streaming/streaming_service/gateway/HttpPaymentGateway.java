@@ -0,0 +1,72 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.shozab.streaming.streaming_service.payment.IdempotencyStore;
+import com.shozab.streaming.streaming_service.payment.Payment;
+
+import io.netty.channel.ChannelOption;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Calls a card network over HTTP with a non-blocking {@link WebClient}: {@code POST {baseUrl}/authorize} with
+ * the payment as JSON and the request key as {@code Idempotency-Key}, expecting an {@link Authorization}.
+ *
+ * <p>Connections are kept alive in a pool of at most {@code maxConnections}; a call that finds them all busy
+ * waits among at most {@code maxPendingAcquires} others for up to {@code connectTimeout}, and is refused
+ * beyond that. Each call must connect within {@code connectTimeout} and be answered within
+ * {@code responseTimeout}. Error statuses, timeouts and connection failures all end in a
+ * {@link PaymentGatewayException}. The pool is published as the {@code reactor.netty.connection.provider.*}
+ * meters tagged {@code name=payment-gateway}.
+ */
+public class HttpPaymentGateway implements PaymentGateway {
+
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+
+    public HttpPaymentGateway(String baseUrl, int maxConnections, int maxPendingAcquires, Duration connectTimeout,
+            Duration responseTimeout) {
+        this.connectionProvider = ConnectionProvider.builder("payment-gateway")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(maxPendingAcquires)
+            .pendingAcquireTimeout(connectTimeout)
+            .maxIdleTime(Duration.ofSeconds(30))
+            .metrics(true)
+            .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+            .responseTimeout(responseTimeout);
+        this.webClient = WebClient.builder()
+            .baseUrl(baseUrl)
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+
+    @Override
+    public CompletableFuture<Authorization> authorize(String requestKey, Payment payment) {
+        return webClient.post()
+            .uri(SimulatedGatewayServer.AUTHORIZE_PATH)
+            .header(IdempotencyStore.HEADER, requestKey)
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(payment)
+            .retrieve()
+            .onStatus(HttpStatusCode::isError,
+                response -> Mono.just(new PaymentGatewayException("Payment gateway answered " + response.statusCode().value())))
+            .bodyToMono(Authorization.class)
+            .onErrorMap(e -> !(e instanceof PaymentGatewayException), e -> new PaymentGatewayException("Payment gateway call failed", e))
+            .toFuture();
+    }
+
+    @Override
+    public void close() {
+        connectionProvider.dispose();
+    }
+}
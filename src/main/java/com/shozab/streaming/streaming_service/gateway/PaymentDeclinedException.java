@@ -0,0 +1,11 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+/**
+ * Thrown when the card network declines a payment; answered with 402.
+ */
+public class PaymentDeclinedException extends IllegalStateException {
+
+    public PaymentDeclinedException(String reason) {
+        super(reason == null ? "Payment declined" : "Payment declined: " + reason);
+    }
+}
@@ -0,0 +1,24 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.shozab.streaming.streaming_service.payment.Payment;
+
+/**
+ * Card network that authorizes payments before they are recorded. Calls are asynchronous: the future
+ * completes with the network's {@link Authorization}, approved or declined, or exceptionally with a
+ * {@link PaymentGatewayException} when no answer was obtained.
+ *
+ * <p>{@code requestKey} identifies one payment attempt; every call made for it, retries and hedges included,
+ * carries the same key so the network charges it at most once.
+ */
+public interface PaymentGateway extends AutoCloseable {
+
+    /** Approves every payment without calling out, leaving only the card-on-file check. */
+    PaymentGateway NONE = new NoPaymentGateway();
+
+    CompletableFuture<Authorization> authorize(String requestKey, Payment payment);
+
+    @Override
+    default void close() {}
+}
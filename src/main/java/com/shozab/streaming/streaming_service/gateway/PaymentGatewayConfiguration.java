@@ -0,0 +1,104 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Chooses the card network with {@code streaming.payments.gateway.type}: {@code none} (default) approves every
+ * payment that matches the card on file, {@code http} calls the network at {@code streaming.payments.gateway.url},
+ * and {@code simulated} starts a {@link SimulatedGatewayServer} on the loopback interface and calls it the same way.
+ * Network calls go through {@link HttpPaymentGateway} wrapped in a {@link ResilientPaymentGateway}.
+ */
+@Configuration
+public class PaymentGatewayConfiguration {
+
+    private static final String TYPE = "streaming.payments.gateway.type";
+
+    private final int maxConnections;
+    private final int maxPendingAcquires;
+    private final Duration connectTimeout;
+    private final Duration timeout;
+    private final int maxConcurrentCalls;
+    private final int maxAttempts;
+    private final Duration hedgeDelay;
+    private final double retryBudgetRatio;
+    private final int circuitWindowSize;
+    private final int circuitMinimumCalls;
+    private final double circuitFailureRateThreshold;
+    private final Duration circuitOpenDuration;
+    private final int circuitHalfOpenCalls;
+
+    public PaymentGatewayConfiguration(
+            @Value("${streaming.payments.gateway.max-connections:64}") int maxConnections,
+            @Value("${streaming.payments.gateway.max-pending-acquires:1024}") int maxPendingAcquires,
+            @Value("${streaming.payments.gateway.connect-timeout:1s}") Duration connectTimeout,
+            @Value("${streaming.payments.gateway.timeout:2s}") Duration timeout,
+            @Value("${streaming.payments.gateway.max-concurrent-calls:256}") int maxConcurrentCalls,
+            @Value("${streaming.payments.gateway.max-attempts:2}") int maxAttempts,
+            @Value("${streaming.payments.gateway.hedge-delay:200ms}") Duration hedgeDelay,
+            @Value("${streaming.payments.gateway.retry-budget-ratio:0.1}") double retryBudgetRatio,
+            @Value("${streaming.payments.gateway.circuit.window-size:100}") int circuitWindowSize,
+            @Value("${streaming.payments.gateway.circuit.minimum-calls:20}") int circuitMinimumCalls,
+            @Value("${streaming.payments.gateway.circuit.failure-rate-threshold:0.5}") double circuitFailureRateThreshold,
+            @Value("${streaming.payments.gateway.circuit.open-duration:5s}") Duration circuitOpenDuration,
+            @Value("${streaming.payments.gateway.circuit.half-open-calls:5}") int circuitHalfOpenCalls) {
+        this.maxConnections = maxConnections;
+        this.maxPendingAcquires = maxPendingAcquires;
+        this.connectTimeout = connectTimeout;
+        this.timeout = timeout;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxAttempts = maxAttempts;
+        this.hedgeDelay = hedgeDelay;
+        this.retryBudgetRatio = retryBudgetRatio;
+        this.circuitWindowSize = circuitWindowSize;
+        this.circuitMinimumCalls = circuitMinimumCalls;
+        this.circuitFailureRateThreshold = circuitFailureRateThreshold;
+        this.circuitOpenDuration = circuitOpenDuration;
+        this.circuitHalfOpenCalls = circuitHalfOpenCalls;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = TYPE, havingValue = "none", matchIfMissing = true)
+    public PaymentGateway noPaymentGateway() {
+        return PaymentGateway.NONE;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = TYPE, havingValue = "http")
+    public PaymentGateway httpPaymentGateway(@Value("${streaming.payments.gateway.url}") String url, MeterRegistry meterRegistry) {
+        return resilient(url, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = TYPE, havingValue = "simulated")
+    public SimulatedGatewayServer simulatedGatewayServer(
+            @Value("${streaming.payments.gateway.simulated.port:0}") int port,
+            @Value("${streaming.payments.gateway.simulated.latency:20ms}") Duration latency,
+            @Value("${streaming.payments.gateway.simulated.slow-call-rate:0}") double slowCallRate,
+            @Value("${streaming.payments.gateway.simulated.slow-latency:1s}") Duration slowLatency,
+            @Value("${streaming.payments.gateway.simulated.failure-rate:0}") double failureRate,
+            @Value("${streaming.payments.gateway.simulated.decline-rate:0}") double declineRate) {
+        return new SimulatedGatewayServer(
+            new SimulatedPaymentGateway(latency, slowCallRate, slowLatency, failureRate, declineRate), port);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = TYPE, havingValue = "simulated")
+    public PaymentGateway simulatedPaymentGateway(SimulatedGatewayServer server, MeterRegistry meterRegistry) {
+        return resilient(server.baseUrl(), meterRegistry);
+    }
+
+    private PaymentGateway resilient(String url, MeterRegistry meterRegistry) {
+        HttpPaymentGateway http = new HttpPaymentGateway(url, maxConnections, maxPendingAcquires, connectTimeout, timeout);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(circuitWindowSize, circuitMinimumCalls, circuitFailureRateThreshold,
+            circuitOpenDuration, circuitHalfOpenCalls);
+        return new ResilientPaymentGateway(http, maxConcurrentCalls, timeout, maxAttempts, hedgeDelay, retryBudgetRatio,
+            circuitBreaker, meterRegistry);
+    }
+}
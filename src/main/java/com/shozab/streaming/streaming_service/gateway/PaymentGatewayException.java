@@ -0,0 +1,17 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+/**
+ * Thrown when the card network could not be reached, failed or did not answer in time; answered with 502.
+ * The request may have reached the network, so the payment's outcome is in doubt: it is safe to retry only
+ * with the same request key, which the network charges at most once.
+ */
+public class PaymentGatewayException extends RuntimeException {
+
+    public PaymentGatewayException(String message) {
+        super(message);
+    }
+
+    public PaymentGatewayException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
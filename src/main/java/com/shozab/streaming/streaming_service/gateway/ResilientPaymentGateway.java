@@ -0,0 +1,297 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.shozab.streaming.streaming_service.payment.Payment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Guards calls to another {@link PaymentGateway} so a slow or failing card network degrades payments
+ * gracefully instead of tying up every request:
+ * <ul>
+ * <li>Bulkhead: at most {@code maxConcurrentCalls} payments wait on the network at once; more are refused
+ * straight away with a {@link GatewayUnavailableException}.</li>
+ * <li>Timeout: a payment is answered or failed within {@code timeout}, attempts included; an attempt still
+ * running at that point is abandoned and counts as failed.</li>
+ * <li>Circuit breaker: every attempt's outcome feeds a {@link CircuitBreaker}; while it is open, payments are
+ * refused without calling the network.</li>
+ * <li>Hedged retries: if an attempt has not answered after {@code hedgeDelay}, a second one is sent alongside
+ * it, and a failed attempt is retried at once; the first answer wins and the other attempts are cancelled.
+ * A payment makes at most {@code maxAttempts} attempts, all with the same request key. Extra attempts are
+ * paid for from a retry budget that earns {@code retryBudgetRatio} of an attempt per payment, so a degraded
+ * network sees at most that much extra load.</li>
+ * </ul>
+ * A declined payment is an answer, not a failure, and is neither retried nor counted against the circuit.
+ *
+ * <p>Publishes {@code payments.gateway.authorize{outcome}} ({@code approved}, {@code declined},
+ * {@code failed}, {@code unavailable}), {@code payments.gateway.attempts{kind}} ({@code first}, {@code hedge},
+ * {@code retry}), {@code payments.gateway.rejected{reason}} ({@code bulkhead}, {@code circuit_open}),
+ * {@code payments.gateway.in.flight} and {@code payments.gateway.circuit.state} (0 closed, 1 open, 2 half open).
+ */
+public class ResilientPaymentGateway implements PaymentGateway {
+
+    /** Extra attempts the retry budget can save up, so a burst of failures after a quiet spell can still retry. */
+    static final int RETRY_BUDGET_CAPACITY = 10;
+    private static final int TOKEN = 1000;
+
+    private final PaymentGateway delegate;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final long timeoutNanos;
+    private final int maxAttempts;
+    private final long hedgeDelayNanos;
+    private final int budgetEarnedPerCall;
+    private final AtomicInteger retryBudget = new AtomicInteger(RETRY_BUDGET_CAPACITY * TOKEN);
+    private final CircuitBreaker circuitBreaker;
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final Timer approvedTimer;
+    private final Timer declinedTimer;
+    private final Timer failedTimer;
+    private final Timer unavailableTimer;
+    private final Counter firstAttempts;
+    private final Counter hedgeAttempts;
+    private final Counter retryAttempts;
+    private final Counter bulkheadRejections;
+    private final Counter circuitRejections;
+
+    public ResilientPaymentGateway(PaymentGateway delegate, int maxConcurrentCalls, Duration timeout,
+            int maxAttempts, Duration hedgeDelay, double retryBudgetRatio, CircuitBreaker circuitBreaker,
+            MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.timeoutNanos = timeout.toNanos();
+        this.maxAttempts = maxAttempts;
+        this.hedgeDelayNanos = hedgeDelay.toNanos();
+        this.budgetEarnedPerCall = (int) Math.round(retryBudgetRatio * TOKEN);
+        this.circuitBreaker = circuitBreaker;
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "payment-gateway-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+
+        this.approvedTimer = authorizeTimer("approved", meterRegistry);
+        this.declinedTimer = authorizeTimer("declined", meterRegistry);
+        this.failedTimer = authorizeTimer("failed", meterRegistry);
+        this.unavailableTimer = authorizeTimer("unavailable", meterRegistry);
+        this.firstAttempts = attemptCounter("first", meterRegistry);
+        this.hedgeAttempts = attemptCounter("hedge", meterRegistry);
+        this.retryAttempts = attemptCounter("retry", meterRegistry);
+        this.bulkheadRejections = rejectionCounter("bulkhead", meterRegistry);
+        this.circuitRejections = rejectionCounter("circuit_open", meterRegistry);
+        Gauge.builder("payments.gateway.in.flight", bulkhead, b -> maxConcurrentCalls - b.availablePermits())
+            .description("Payments waiting on the card network")
+            .register(meterRegistry);
+        Gauge.builder("payments.gateway.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+            .description("Card network circuit: 0 closed, 1 open, 2 half open")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<Authorization> authorize(String requestKey, Payment payment) {
+        long start = System.nanoTime();
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejections.increment();
+            return unavailable(start, new GatewayUnavailableException("Payment gateway is busy", 1));
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            circuitRejections.increment();
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(circuitBreaker.remainingOpenNanos() + 999_999_999));
+            return unavailable(start, new GatewayUnavailableException("Payment gateway is unavailable", retryAfter));
+        }
+        earnRetryBudget();
+
+        Call call = new Call(requestKey, payment, start + timeoutNanos);
+        // The caller sees the answer only once the permit is back, so an immediate next call is not refused as busy
+        CompletableFuture<Authorization> answer = call.result.whenComplete((authorization, error) -> {
+            bulkhead.release();
+            Timer timer = error != null ? failedTimer : authorization.approved() ? approvedTimer : declinedTimer;
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+        call.launch(firstAttempts);
+        return answer;
+    }
+
+    public CircuitBreaker.State circuitState() {return circuitBreaker.state();}
+    public int inFlight() {return maxConcurrentCalls - bulkhead.availablePermits();}
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        delegate.close();
+    }
+
+    private CompletableFuture<Authorization> unavailable(long start, GatewayUnavailableException e) {
+        unavailableTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return CompletableFuture.failedFuture(e);
+    }
+
+    private void earnRetryBudget() {
+        retryBudget.getAndUpdate(tokens -> Math.min(RETRY_BUDGET_CAPACITY * TOKEN, tokens + budgetEarnedPerCall));
+    }
+
+    private boolean spendRetryBudget() {
+        int tokens;
+        do {
+            tokens = retryBudget.get();
+            if (tokens < TOKEN) return false;
+        } while (!retryBudget.compareAndSet(tokens, tokens - TOKEN));
+        return true;
+    }
+
+    /**
+     * Attempts made for one payment. Counters are guarded by the call's monitor; attempts complete on the
+     * delegate's threads, and hedges and timeouts fire on the scheduler. An attempt slot is reserved before its budget
+     * and circuit permit are sought, and given back if either is refused.
+     */
+    private final class Call {
+        final CompletableFuture<Authorization> result = new CompletableFuture<>();
+        private final String requestKey;
+        private final Payment payment;
+        private final long deadline;
+        private final List<CompletableFuture<Authorization>> attempts = new ArrayList<>(maxAttempts);
+        private int launched = 1;
+        private int failed;
+        private Throwable lastFailure;
+        private ScheduledFuture<?> hedge;
+
+        Call(String requestKey, Payment payment, long deadline) {
+            this.requestKey = requestKey;
+            this.payment = payment;
+            this.deadline = deadline;
+        }
+
+        /** Sends one attempt into a reserved slot; the caller holds a circuit breaker permit for it. */
+        void launch(Counter kind) {
+            kind.increment();
+            CompletableFuture<Authorization> attempt;
+            try {
+                attempt = delegate.authorize(requestKey, payment);
+            } catch (RuntimeException e) {
+                attempt = CompletableFuture.failedFuture(e);
+            }
+            // A timed out attempt is cancelled so the delegate can abandon the call, but reported as a timeout
+            CompletableFuture<Authorization> outcome = new CompletableFuture<>();
+            CompletableFuture<Authorization> call = attempt;
+            ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+                if (outcome.completeExceptionally(new TimeoutException())) call.cancel(true);
+            }, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            attempt.whenComplete((authorization, error) -> {
+                timeout.cancel(false);
+                if (error == null) outcome.complete(authorization);
+                else outcome.completeExceptionally(error);
+            });
+            synchronized (this) {
+                attempts.add(attempt);
+                if (hedgeDelayNanos > 0 && launched < maxAttempts && !result.isDone()) {
+                    if (hedge != null) hedge.cancel(false);
+                    hedge = scheduler.schedule(() -> tryExtraAttempt(hedgeAttempts), hedgeDelayNanos, TimeUnit.NANOSECONDS);
+                }
+            }
+            outcome.whenComplete(this::onAttempt);
+        }
+
+        private void onAttempt(Authorization authorization, Throwable error) {
+            if (error == null) {
+                circuitBreaker.onSuccess();
+                if (result.complete(authorization)) cancelOthers();
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof CancellationException) {
+                circuitBreaker.onCancelled();
+                return;
+            }
+            circuitBreaker.onFailure();
+            synchronized (this) {
+                failed++;
+                lastFailure = cause;
+            }
+            if (!tryExtraAttempt(retryAttempts)) failIfExhausted();
+        }
+
+        private boolean tryExtraAttempt(Counter kind) {
+            synchronized (this) {
+                if (result.isDone() || launched >= maxAttempts || deadline - System.nanoTime() <= 0) return false;
+                launched++;
+            }
+            if (!spendRetryBudget() || !circuitBreaker.tryAcquire()) {
+                synchronized (this) {
+                    launched--;
+                }
+                failIfExhausted();
+                return false;
+            }
+            launch(kind);
+            return true;
+        }
+
+        /** Fails the payment once every attempt sent has failed and no more will be. */
+        private void failIfExhausted() {
+            Throwable cause;
+            synchronized (this) {
+                if (failed < launched || lastFailure == null) return;
+                cause = lastFailure;
+            }
+            if (result.completeExceptionally(toGatewayException(cause))) cancelOthers();
+        }
+
+        private void cancelOthers() {
+            List<CompletableFuture<Authorization>> outstanding;
+            synchronized (this) {
+                if (hedge != null) hedge.cancel(false);
+                outstanding = new ArrayList<>(attempts);
+            }
+            for (CompletableFuture<Authorization> attempt : outstanding) {
+                attempt.cancel(true);
+            }
+        }
+    }
+
+    private static PaymentGatewayException toGatewayException(Throwable cause) {
+        if (cause instanceof PaymentGatewayException gatewayException) return gatewayException;
+        if (cause instanceof TimeoutException) return new PaymentGatewayException("Payment gateway timed out", cause);
+        return new PaymentGatewayException("Payment gateway call failed", cause);
+    }
+
+    private static Timer authorizeTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("payments.gateway.authorize")
+            .description("Time to obtain an authorization from the card network, attempts included")
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private static Counter attemptCounter(String kind, MeterRegistry meterRegistry) {
+        return Counter.builder("payments.gateway.attempts")
+            .description("Calls sent to the card network, by kind")
+            .tag("kind", kind)
+            .register(meterRegistry);
+    }
+
+    private static Counter rejectionCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("payments.gateway.rejected")
+            .description("Payments refused without calling the card network, by reason")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
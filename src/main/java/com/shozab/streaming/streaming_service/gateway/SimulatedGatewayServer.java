@@ -0,0 +1,63 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shozab.streaming.streaming_service.payment.IdempotencyStore;
+import com.shozab.streaming.streaming_service.payment.Payment;
+
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Serves a {@link SimulatedPaymentGateway} over HTTP on the loopback interface, so {@link HttpPaymentGateway}
+ * can be exercised against it end to end. {@code POST /authorize} takes a payment and its
+ * {@code Idempotency-Key} and answers 200 with an {@link Authorization}, or 503 when the stand-in injects a failure.
+ * The server owns the stand-in and closes it with itself.
+ */
+public class SimulatedGatewayServer implements AutoCloseable {
+
+    public static final String AUTHORIZE_PATH = "/authorize";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimulatedPaymentGateway gateway;
+    private final DisposableServer server;
+
+    /**
+     * Starts serving at once; {@code port} 0 picks a free port.
+     */
+    public SimulatedGatewayServer(SimulatedPaymentGateway gateway, int port) {
+        this.gateway = gateway;
+        this.server = HttpServer.create()
+            .host("127.0.0.1")
+            .port(port)
+            .route(routes -> routes.post(AUTHORIZE_PATH, (request, response) -> request.receive().aggregate().asByteArray()
+                .flatMap(body -> Mono.fromFuture(() -> gateway.authorize(
+                    request.requestHeaders().get(IdempotencyStore.HEADER), read(body))))
+                .flatMap(authorization -> response.status(200)
+                    .header("Content-Type", "application/json")
+                    .sendByteArray(Mono.fromCallable(() -> objectMapper.writeValueAsBytes(authorization)))
+                    .then())
+                .onErrorResume(e -> response.status(e instanceof PaymentGatewayException ? 503 : 400).send().then())))
+            .bindNow();
+    }
+
+    private Payment read(byte[] body) {
+        try {
+            return objectMapper.readValue(body, Payment.class);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid payment", e);
+        }
+    }
+
+    public SimulatedPaymentGateway gateway() {return gateway;}
+    public int port() {return server.port();}
+    public String baseUrl() {return "http://127.0.0.1:" + server.port();}
+
+    @Override
+    public void close() {
+        server.disposeNow();
+        gateway.close();
+    }
+}
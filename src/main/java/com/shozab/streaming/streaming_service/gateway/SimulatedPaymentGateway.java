@@ -0,0 +1,110 @@
+package com.shozab.streaming.streaming_service.gateway;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shozab.streaming.streaming_service.payment.Payment;
+
+/**
+ * Local stand-in for a card network with injectable latency and failures, for development and load tests.
+ *
+ * <p>Each call answers after a delay drawn uniformly from half to one and a half times {@code latency}, or
+ * after {@code slowLatency} for a {@code slowCallRate} share of calls. A {@code failureRate} share of calls
+ * fail with a {@link PaymentGatewayException}, and a {@code declineRate} share of request keys are declined.
+ * The decision depends only on the key, so retries and hedges of one payment agree, and each approved key is
+ * charged once however many calls carry it. Settings can be changed while calls are running, to degrade
+ * and restore the stand-in.
+ */
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Cache<String, Boolean> charged;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder charges = new LongAdder();
+
+    private volatile long latencyNanos;
+    private volatile double slowCallRate;
+    private volatile long slowLatencyNanos;
+    private volatile double failureRate;
+    private volatile double declineRate;
+
+    public SimulatedPaymentGateway(Duration latency) {
+        this(latency, 0, Duration.ZERO, 0, 0);
+    }
+
+    public SimulatedPaymentGateway(Duration latency, double slowCallRate, Duration slowLatency, double failureRate, double declineRate) {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "simulated-payment-gateway");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.charged = Caffeine.newBuilder()
+            .maximumSize(1_000_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+        setLatency(latency);
+        setSlowCalls(slowCallRate, slowLatency);
+        setFailureRate(failureRate);
+        setDeclineRate(declineRate);
+    }
+
+    @Override
+    public CompletableFuture<Authorization> authorize(String requestKey, Payment payment) {
+        calls.increment();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = random.nextDouble() < slowCallRate
+            ? slowLatencyNanos
+            : (long) (latencyNanos * (0.5 + random.nextDouble()));
+        boolean fail = random.nextDouble() < failureRate;
+
+        CompletableFuture<Authorization> result = new CompletableFuture<>();
+        Runnable answer = () -> {
+            if (fail) {
+                result.completeExceptionally(new PaymentGatewayException("Simulated gateway failure"));
+            } else {
+                result.complete(decide(requestKey));
+            }
+        };
+        if (delay <= 0) {
+            answer.run();
+        } else {
+            scheduler.schedule(answer, delay, TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+
+    private Authorization decide(String requestKey) {
+        double draw = (requestKey.hashCode() & Integer.MAX_VALUE) / (double) Integer.MAX_VALUE;
+        if (draw < declineRate) {
+            return Authorization.declined("Card declined");
+        }
+        if (charged.asMap().putIfAbsent(requestKey, Boolean.TRUE) == null) {
+            charges.increment();
+        }
+        return Authorization.approved("sim-" + requestKey);
+    }
+
+    public void setLatency(Duration latency) {this.latencyNanos = latency.toNanos();}
+    public void setSlowCalls(double rate, Duration latency) {
+        this.slowLatencyNanos = latency.toNanos();
+        this.slowCallRate = rate;
+    }
+    public void setFailureRate(double failureRate) {this.failureRate = failureRate;}
+    public void setDeclineRate(double declineRate) {this.declineRate = declineRate;}
+
+    /** Calls received, retries and hedges included. */
+    public long calls() {return calls.sum();}
+    /** Distinct request keys approved. */
+    public long charges() {return charges.sum();}
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,282 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.shozab.streaming.streaming_service.throttle.RequestThrottledException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Processes payments submitted with {@code Prefer: respond-async} after the request has been answered with 202.
+ *
+ * <p>Payments wait in a bounded queue for a fixed pool of workers, each of which runs them through a
+ * {@link PaymentProcessor} ({@link PaymentService} by default). When the queue is full, submission is refused
+ * with a 503 {@link RequestThrottledException} rather than growing the backlog. The status of each payment is
+ * kept in a Caffeine map for {@code GET /payments/{id}}: a pending status never expires, and a final one expires
+ * {@code retention} after the payment completed, so a client always has that long to poll for the outcome.
+ * Statuses are never evicted to save memory; instead, while {@code status.maximum-size} are held, submission is
+ * refused with 503 as for a full queue. Queued payments are not journaled: on shutdown the workers finish the queue,
+ * but payments queued when the process dies are lost, and their statuses with them.
+ *
+ * <p>Publishes {@code payments.async.queue.depth}, {@code payments.async.active},
+ * {@code payments.async.wait} (time queued), {@code payments.async.process{outcome}} and
+ * {@code payments.async.rejected} (refused because the queue or the status map was full).
+ */
+@Component
+public class AsyncPaymentProcessor {
+
+    public static final String PREFER_HEADER = "Prefer";
+    public static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+    public static final String RESPOND_ASYNC = "respond-async";
+
+    public static final int DEFAULT_WORKERS = 8;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    private final PaymentProcessor processor;
+    private final ThreadPoolExecutor executor;
+    private final Cache<String, PaymentStatus> statuses;
+    private final long maximumStatuses;
+    /** Statuses held, counted separately because the cache's own size is only an estimate. */
+    private final AtomicLong heldStatuses = new AtomicLong();
+    private final int retryAfterSeconds;
+    private final Duration shutdownTimeout;
+    private final Clock clock;
+
+    private final Timer waitTimer;
+    private final Timer acceptedTimer;
+    private final Timer rejectedTimer;
+    private final Timer failedTimer;
+    private final Counter queueFullCounter;
+
+    public AsyncPaymentProcessor(PaymentProcessor processor) {
+        this(processor, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY, DEFAULT_RETRY_AFTER_SECONDS, 100_000,
+            Duration.ofHours(1), Duration.ofSeconds(30), Clock.systemUTC(), new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public AsyncPaymentProcessor(PaymentService paymentService,
+            @Value("${streaming.payments.async.workers:8}") int workers,
+            @Value("${streaming.payments.async.queue-capacity:1024}") int queueCapacity,
+            @Value("${streaming.payments.async.retry-after-seconds:1}") int retryAfterSeconds,
+            @Value("${streaming.payments.async.status.maximum-size:100000}") long maximumStatuses,
+            @Value("${streaming.payments.async.status.retention:1h}") Duration retention,
+            @Value("${streaming.payments.async.shutdown-timeout:30s}") Duration shutdownTimeout,
+            MeterRegistry meterRegistry) {
+        this(paymentService::processPayment, workers, queueCapacity, retryAfterSeconds, maximumStatuses, retention,
+            shutdownTimeout, Clock.systemUTC(), meterRegistry);
+    }
+
+    public AsyncPaymentProcessor(PaymentProcessor processor, int workers, int queueCapacity, int retryAfterSeconds,
+            long maximumStatuses, Duration retention, Duration shutdownTimeout, Clock clock, MeterRegistry meterRegistry) {
+        this.processor = processor;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.shutdownTimeout = shutdownTimeout;
+        this.clock = clock;
+        this.executor = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new WorkerThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.maximumStatuses = maximumStatuses;
+        this.statuses = Caffeine.newBuilder()
+            .expireAfter(new RetainCompleted(retention))
+            .<String, PaymentStatus>evictionListener((id, status, cause) -> heldStatuses.decrementAndGet())
+            .build();
+
+        this.waitTimer = Timer.builder("payments.async.wait")
+            .description("Time an asynchronous payment waited in the queue for a worker")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.acceptedTimer = processTimer("accepted", meterRegistry);
+        this.rejectedTimer = processTimer("rejected", meterRegistry);
+        this.failedTimer = processTimer("failed", meterRegistry);
+        this.queueFullCounter = Counter.builder("payments.async.rejected")
+            .description("Asynchronous payments refused because the queue or the status map was full")
+            .register(meterRegistry);
+        Gauge.builder("payments.async.queue.depth", executor, e -> e.getQueue().size())
+            .description("Asynchronous payments waiting for a worker")
+            .register(meterRegistry);
+        Gauge.builder("payments.async.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Asynchronous payments being processed")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Whether a {@code Prefer} header value asks for {@value #RESPOND_ASYNC}.
+     */
+    public static boolean isRequested(String prefer) {
+        if (prefer == null) return false;
+        for (String preference : prefer.split(",")) {
+            String token = preference.split(";", 2)[0].trim();
+            if (token.equalsIgnoreCase(RESPOND_ASYNC)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Queues the payment and returns its initial status without waiting for it to be processed.
+     * @throws RequestThrottledException with 503 if the queue or the status map is full
+     */
+    public PaymentStatus submit(Payment payment) throws RequestThrottledException {
+        return submit(payment, null);
+    }
+
+    /**
+     * Queues the payment, to be processed with the client's {@code Idempotency-Key}, and returns its initial status.
+     * @throws RequestThrottledException with 503 if the queue or the status map is full
+     */
+    public PaymentStatus submit(Payment payment, String requestKey) throws RequestThrottledException {
+        if (!reserveStatus()) {
+            queueFullCounter.increment();
+            throw new RequestThrottledException(HttpStatus.SERVICE_UNAVAILABLE, "Too many payments pending", retryAfterSeconds);
+        }
+        PaymentStatus queued = PaymentStatus.queued(UUID.randomUUID().toString(), clock.instant());
+        statuses.put(queued.getId(), queued);
+        long submittedAt = System.nanoTime();
+        try {
+            executor.execute(() -> process(queued, payment, requestKey, submittedAt));
+        } catch (RejectedExecutionException e) {
+            if (statuses.asMap().remove(queued.getId()) != null) {
+                heldStatuses.decrementAndGet();
+            }
+            queueFullCounter.increment();
+            throw new RequestThrottledException(HttpStatus.SERVICE_UNAVAILABLE, "Payment queue is full", retryAfterSeconds);
+        }
+        return queued;
+    }
+
+    /**
+     * Counts a new status against {@code status.maximum-size}, first expiring any whose retention has passed if the map looks full.
+     */
+    private boolean reserveStatus() {
+        if (heldStatuses.incrementAndGet() <= maximumStatuses) return true;
+        heldStatuses.decrementAndGet();
+        statuses.cleanUp();
+        if (heldStatuses.incrementAndGet() <= maximumStatuses) return true;
+        heldStatuses.decrementAndGet();
+        return false;
+    }
+
+    /**
+     * The latest status of the payment, or {@code null} if the id is unknown or its status has expired.
+     */
+    public PaymentStatus getStatus(String id) {
+        return statuses.getIfPresent(id);
+    }
+
+    private void process(PaymentStatus queued, Payment payment, String requestKey, long submittedAt) {
+        long start = System.nanoTime();
+        waitTimer.record(start - submittedAt, TimeUnit.NANOSECONDS);
+        statuses.put(queued.getId(), queued.processing());
+
+        PaymentStatus.State state;
+        ResponseEntity<String> outcome;
+        Timer timer;
+        try {
+            processor.process(payment, requestKey);
+            state = PaymentStatus.State.ACCEPTED;
+            outcome = PaymentController.processed();
+            timer = acceptedTimer;
+        } catch (RuntimeException e) {
+            try {
+                outcome = PaymentController.paymentRejected(e);
+                state = PaymentStatus.State.REJECTED;
+                timer = rejectedTimer;
+            } catch (RuntimeException unexpected) {
+                outcome = ResponseEntity.internalServerError().body("Payment processing failed");
+                state = PaymentStatus.State.FAILED;
+                timer = failedTimer;
+            }
+        }
+        statuses.put(queued.getId(),
+            queued.completed(state, outcome.getStatusCode().value(), outcome.getBody(), clock.instant()));
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public int getQueueDepth() {return executor.getQueue().size();}
+
+    public long getStatusCount() {
+        statuses.cleanUp();
+        return heldStatuses.get();
+    }
+
+    /**
+     * Stops taking payments and waits up to {@code shutdown-timeout} for the queued ones to be processed.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(shutdownTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Timer processTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("payments.async.process")
+            .description("Time a worker spent processing an asynchronous payment")
+            .tag("outcome", outcome)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    /**
+     * Keeps a status while its payment is pending, and for {@code retention} once it has completed.
+     */
+    private static final class RetainCompleted implements Expiry<String, PaymentStatus> {
+        private final long retentionNanos;
+
+        RetainCompleted(Duration retention) {
+            this.retentionNanos = retention.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String id, PaymentStatus status, long currentTime) {
+            return status.isDone() ? retentionNanos : Long.MAX_VALUE;
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, PaymentStatus status, long currentTime, long currentDuration) {
+            return status.isDone() ? retentionNanos : Long.MAX_VALUE;
+        }
+
+        @Override
+        public long expireAfterRead(String id, PaymentStatus status, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "payment-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Batches concurrent appends in front of another ledger.
+ *
+ * <p>Callers of {@link #append} queue their payment and block. A single committer thread takes the first
+ * waiting payment, keeps collecting until {@code maxBatchSize} payments are queued or {@code window} has
+ * passed, and commits them with one {@link PaymentLedger#appendAll} call, so one fsync covers the whole
+ * batch. Each caller returns, or throws, once its batch is committed. Payments the delegate could never append
+ * are refused before they are queued, so they cannot fail a batch; if the delegate still fails part way through
+ * one, the callers whose payments were appended return and only the rest throw. Reads go straight to the delegate.
+ */
+public class GroupCommitPaymentLedger implements PaymentLedger, Closeable {
+
+    private final PaymentLedger delegate;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final LinkedBlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    private final Timer waitTimer;
+    private final Timer commitTimer;
+    private final DistributionSummary batchSize;
+
+    public GroupCommitPaymentLedger(PaymentLedger delegate, int maxBatchSize, Duration window, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.windowNanos = window.toNanos();
+
+        this.waitTimer = Timer.builder("payments.batch.wait")
+            .description("Time from queueing a payment to its batch being committed")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.commitTimer = Timer.builder("payments.batch.commit")
+            .description("Time to commit one batch of payments")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("payments.batch.size")
+            .description("Payments committed per batch")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+
+        this.committer = new Thread(this::commitLoop, "payment-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    @Override
+    public void append(String payorEmail, Payment payment) {
+        if (!running) {
+            throw closed();
+        }
+        delegate.checkAppendable(payorEmail, payment);
+        PendingAppend pending = new PendingAppend(Map.entry(payorEmail, payment));
+        queue.add(pending);
+        // close() may have run since the check, after the committer's final drain; take the payment back if so
+        if (!running && queue.remove(pending)) {
+            throw closed();
+        }
+        try {
+            pending.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while committing payment", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException("Payment commit failed", e.getCause());
+        } finally {
+            waitTimer.record(System.nanoTime() - pending.queuedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void checkAppendable(String payorEmail, Payment payment) {
+        delegate.checkAppendable(payorEmail, payment);
+    }
+
+    @Override
+    public List<Payment> findByPayor(String payorEmail) {
+        return delegate.findByPayor(payorEmail);
+    }
+
+    @Override
+    public PaymentPage findByPayor(String payorEmail, long fromMillis, long toMillis, long after, int limit) {
+        return delegate.findByPayor(payorEmail, fromMillis, toMillis, after, limit);
+    }
+
+    @Override
+    public Payment findLatestByPayor(String payorEmail) {
+        return delegate.findLatestByPayor(payorEmail);
+    }
+
+    @Override
+    public Set<String> payors() {
+        return delegate.payors();
+    }
+
+    @Override
+    public long count() {
+        return delegate.count();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        committer.interrupt();
+        try {
+            committer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PendingAppend> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        for (PendingAppend pending : leftovers) {
+            pending.result.completeExceptionally(closed());
+        }
+        if (delegate instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+
+    private void commitLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingAppend next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // close() was called; commit whatever has been collected and drain the queue
+                queue.drainTo(batch);
+            }
+            if (!batch.isEmpty()) {
+                commit(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingAppend> batch) {
+        List<Map.Entry<String, Payment>> payments = new ArrayList<>(batch.size());
+        for (PendingAppend pending : batch) {
+            payments.add(pending.payment);
+        }
+        long start = System.nanoTime();
+        try {
+            delegate.appendAll(payments);
+            complete(batch, batch.size(), null);
+        } catch (PartialAppendException e) {
+            complete(batch, e.getAppended(), e.getCause());
+        } catch (RuntimeException e) {
+            complete(batch, 0, e);
+        } finally {
+            commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSize.record(batch.size());
+        }
+    }
+
+    private static void complete(List<PendingAppend> batch, int appended, Throwable failure) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (i < appended) batch.get(i).result.complete(null);
+            else batch.get(i).result.completeExceptionally(failure);
+        }
+    }
+
+    private static IllegalStateException closed() {
+        return new IllegalStateException("Payment ledger is closed");
+    }
+
+    private static final class PendingAppend {
+        private final Map.Entry<String, Payment> payment;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final long queuedAt = System.nanoTime();
+
+        private PendingAppend(Map.Entry<String, Payment> payment) {
+            this.payment = payment;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy.FixedExpiration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Remembers the response to each {@code Idempotency-Key} so a retried payment gets the original answer
+ * instead of being validated and recorded again.
+ *
+ * <p>Keys map to the payment they were first used with and a future of its response, in a Caffeine map
+ * whose entries expire a fixed window after the key was first seen. Entries are never evicted early, since a
+ * forgotten key would let a retry charge again; instead, once the map holds {@code maximum-size} keys, requests
+ * with new keys are refused with 503 and a {@code Retry-After} of when the oldest key expires, while retries of
+ * keys already held are still answered. The first request for a key claims it with an
+ * atomic {@code putIfAbsent} and runs the payment; concurrent retries of the same key wait on that future
+ * rather than running it a second time. A key reused for a different payment is refused with 422.
+ * Only final answers are remembered: if processing fails with an exception, is refused with 429 or 503
+ * because the server is busy, or fails with 502 because the card network did not answer, the key is released
+ * so the client can retry. The key is also the request key sent to the card network, so a retry of a payment
+ * the network may already have approved gets that authorization back instead of a second charge, and is then
+ * recorded.
+ *
+ * <p>Replays, conflicts and keys refused because the store is full are counted as
+ * {@code payments.idempotency.replayed}, {@code payments.idempotency.conflicts} and
+ * {@code payments.idempotency.refused}; the store itself is published as the {@code cache.*} meters
+ * tagged {@code cache=payments.idempotency}.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final Cache<String, Entry> entries;
+    private final long maximumSize;
+    private final Duration window;
+    /** Keys held, counted separately because the cache's own size is only an estimate. */
+    private final AtomicLong held = new AtomicLong();
+    private final Counter replayed;
+    private final Counter conflicts;
+    private final Counter refused;
+
+    public IdempotencyStore() {
+        this(100_000, Duration.ofHours(24), new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public IdempotencyStore(
+            @Value("${streaming.payments.idempotency.maximum-size:100000}") long maximumSize,
+            @Value("${streaming.payments.idempotency.window:24h}") Duration window,
+            MeterRegistry meterRegistry) {
+        this.maximumSize = maximumSize;
+        this.window = window;
+        this.entries = Caffeine.newBuilder()
+            .expireAfterWrite(window)
+            .<String, Entry>evictionListener((key, entry, cause) -> held.decrementAndGet())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "payments.idempotency");
+        this.replayed = Counter.builder("payments.idempotency.replayed")
+            .description("Payments answered from the idempotency store instead of being processed again")
+            .register(meterRegistry);
+        this.conflicts = Counter.builder("payments.idempotency.conflicts")
+            .description("Idempotency keys reused for a different payment")
+            .register(meterRegistry);
+        this.refused = Counter.builder("payments.idempotency.refused")
+            .description("Payments with a new idempotency key refused because the store was full")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code process} for the first request with {@code key}, and answers later requests with the same key
+     * from its outcome, marked with the {@value #REPLAYED_HEADER} header.
+     */
+    public CompletableFuture<ResponseEntity<String>> executeAsync(String key, Payment payment,
+            Supplier<CompletableFuture<ResponseEntity<String>>> process) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body("Invalid " + HEADER));
+        }
+
+        CompletableFuture<ResponseEntity<String>> response = new CompletableFuture<>();
+        Entry entry = new Entry(payment, response);
+        Entry existing = entries.getIfPresent(key);
+        if (existing == null) {
+            if (!reserve()) {
+                refused.increment();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(secondsUntilOldestExpires()))
+                    .body("Too many outstanding " + HEADER + "s"));
+            }
+            existing = entries.asMap().putIfAbsent(key, entry);
+            if (existing != null) held.decrementAndGet();
+        }
+        if (existing != null) {
+            if (!existing.payment.equals(payment)) {
+                conflicts.increment();
+                return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(HEADER + " was already used for a different payment"));
+            }
+            replayed.increment();
+            return existing.response.thenApply(IdempotencyStore::replayed);
+        }
+
+        CompletableFuture<ResponseEntity<String>> outcome;
+        try {
+            outcome = process.get();
+        } catch (RuntimeException e) {
+            outcome = CompletableFuture.failedFuture(e);
+        }
+        outcome.whenComplete((result, error) -> {
+            if ((error != null || isTransient(result)) && entries.asMap().remove(key, entry)) {
+                held.decrementAndGet();
+            }
+            if (error != null) {
+                response.completeExceptionally(error);
+            } else {
+                response.complete(result);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Blocking form of {@link #executeAsync} for callers that process the payment on the calling thread.
+     */
+    public ResponseEntity<String> execute(String key, Payment payment, Supplier<ResponseEntity<String>> process) {
+        try {
+            return executeAsync(key, payment, () -> CompletableFuture.completedFuture(process.get())).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    public long size() {
+        entries.cleanUp();
+        return held.get();
+    }
+
+    /**
+     * Counts a new key against {@code maximumSize}, first expiring any keys whose window has passed if the store looks full.
+     */
+    private boolean reserve() {
+        if (held.incrementAndGet() <= maximumSize) return true;
+        held.decrementAndGet();
+        entries.cleanUp();
+        if (held.incrementAndGet() <= maximumSize) return true;
+        held.decrementAndGet();
+        return false;
+    }
+
+    private long secondsUntilOldestExpires() {
+        FixedExpiration<String, Entry> expiration = entries.policy().expireAfterWrite().orElseThrow();
+        for (String oldest : expiration.oldest(1).keySet()) {
+            long age = expiration.ageOf(oldest, TimeUnit.SECONDS).orElse(0);
+            return Math.max(1, window.toSeconds() - age);
+        }
+        return 1;
+    }
+
+    /**
+     * Answers that are safe to retry: refusals issued before the payment reached the card network, and 502, after
+     * which the retry reaches the network with the same key.
+     */
+    private static boolean isTransient(ResponseEntity<String> response) {
+        int status = response.getStatusCode().value();
+        return status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value()
+            || status == HttpStatus.BAD_GATEWAY.value();
+    }
+
+    private static ResponseEntity<String> replayed(ResponseEntity<String> original) {
+        return ResponseEntity.status(original.getStatusCode())
+            .headers(original.getHeaders())
+            .header(REPLAYED_HEADER, "true")
+            .body(original.getBody());
+    }
+
+    private record Entry(Payment payment, CompletableFuture<ResponseEntity<String>> response) {}
+}
@@ -0,0 +1,112 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non-durable ledger, used when the payment journal is disabled.
+ * Each payor's payments are kept as parallel primitive arrays (28 bytes per payment) rather than as objects.
+ */
+public class InMemoryPaymentLedger implements PaymentLedger {
+
+    private final ConcurrentHashMap<String, PayorPayments> paymentsByPayor = new ConcurrentHashMap<>();
+    private final LongAdder count = new LongAdder();
+
+    @Override
+    public void append(String payorEmail, Payment payment) {
+        PayorPayments payments = paymentsByPayor.computeIfAbsent(payorEmail, email -> new PayorPayments());
+        payments.lock.lock();
+        try {
+            payments.add(System.currentTimeMillis(), payment);
+        } finally {
+            payments.lock.unlock();
+        }
+        count.increment();
+    }
+
+    @Override
+    public List<Payment> findByPayor(String payorEmail) {
+        PayorPayments payments = paymentsByPayor.get(payorEmail);
+        if (payments == null) return Collections.emptyList();
+        payments.lock.lock();
+        try {
+            List<Payment> list = new ArrayList<>(payments.size);
+            for (int i = 0; i < payments.size; i++) {
+                list.add(payments.payment(i, payorEmail));
+            }
+            return list;
+        } finally {
+            payments.lock.unlock();
+        }
+    }
+
+    @Override
+    public PaymentPage findByPayor(String payorEmail, long fromMillis, long toMillis, long after, int limit) {
+        PayorPayments payments = paymentsByPayor.get(payorEmail);
+        if (payments == null) return new PaymentPage(Collections.emptyList(), null);
+        payments.lock.lock();
+        try {
+            return PaymentHistory.page(payments.timestamps, payments.size, fromMillis, toMillis, after, limit,
+                i -> new RecordedPayment(payments.payment(i, payorEmail), payments.timestamps[i]));
+        } finally {
+            payments.lock.unlock();
+        }
+    }
+
+    @Override
+    public Payment findLatestByPayor(String payorEmail) {
+        PayorPayments payments = paymentsByPayor.get(payorEmail);
+        if (payments == null) return null;
+        payments.lock.lock();
+        try {
+            // The payor's entry is published before its first payment is added
+            return payments.size == 0 ? null : payments.payment(payments.size - 1, payorEmail);
+        } finally {
+            payments.lock.unlock();
+        }
+    }
+
+    @Override
+    public Set<String> payors() {
+        return Collections.unmodifiableSet(paymentsByPayor.keySet());
+    }
+
+    @Override
+    public long count() {
+        return count.sum();
+    }
+
+    private static final class PayorPayments {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] timestamps = new long[2];
+        private long[] ids = new long[2];
+        private long[] creditCardNumbers = new long[2];
+        private int[] amounts = new int[2];
+        private int size;
+
+        void add(long timestamp, Payment payment) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                creditCardNumbers = Arrays.copyOf(creditCardNumbers, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+            }
+            timestamps[size] = size == 0 ? timestamp : Math.max(timestamp, timestamps[size - 1]);
+            ids[size] = payment.id();
+            creditCardNumbers[size] = payment.creditCardNumber();
+            amounts[size] = payment.getAmount();
+            size++;
+        }
+
+        Payment payment(int i, String payorEmail) {
+            return Payment.of(ids[i], creditCardNumbers[i], amounts[i], payorEmail);
+        }
+    }
+}
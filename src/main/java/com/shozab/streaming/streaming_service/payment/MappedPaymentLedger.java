@@ -0,0 +1,212 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.shozab.streaming.streaming_service.storage.MappedJournal;
+
+/**
+ * Durable ledger backed by a {@link MappedJournal}.
+ * Each payor keeps compact arrays of journal offsets and timestamps, rebuilt by replaying the journal on startup;
+ * lookups decode records straight from the mapped file.
+ *
+ * <p>Record layout: {@code [long timestamp][long id][long creditCardNumber][int amount][short emailLength][email UTF-8]}.
+ * The id and card number are stored as they are held in {@link Payment}, with its sentinels for absent values.
+ */
+public class MappedPaymentLedger implements PaymentLedger, Closeable {
+
+    private static final int FIXED_BYTES = 8 + 8 + 8 + 4 + 2;
+    private static final long NO_OFFSET = -1;
+
+    private final MappedJournal journal;
+    private final ConcurrentHashMap<String, OffsetIndex> offsetsByPayor = new ConcurrentHashMap<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final LongAdder count = new LongAdder();
+
+    public MappedPaymentLedger(MappedJournal journal) {
+        this.journal = journal;
+        journal.forEach((offset, payload) -> index(decodePayorEmail(payload), offset, payload.getLong(0)));
+    }
+
+    @Override
+    public void append(String payorEmail, Payment payment) {
+        byte[] email = encodePayorEmail(payorEmail);
+        long timestamp = System.currentTimeMillis();
+
+        // Held across append and index so each payor's offsets stay in journal order
+        appendLock.lock();
+        try {
+            appendLocked(payorEmail, email, timestamp, payment);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void checkAppendable(String payorEmail, Payment payment) {
+        encodePayorEmail(payorEmail);
+    }
+
+    /**
+     * Appends record by record under one journal batch; if one fails, the records before it are already
+     * indexed, and are made durable before the {@link PartialAppendException} is thrown.
+     */
+    @Override
+    public void appendAll(List<Map.Entry<String, Payment>> payments) throws PartialAppendException {
+        long timestamp = System.currentTimeMillis();
+
+        appendLock.lock();
+        try {
+            journal.batch(() -> {
+                for (int i = 0; i < payments.size(); i++) {
+                    Map.Entry<String, Payment> payment = payments.get(i);
+                    try {
+                        appendLocked(payment.getKey(), encodePayorEmail(payment.getKey()), timestamp, payment.getValue());
+                    } catch (RuntimeException e) {
+                        throw new PartialAppendException(i, e);
+                    }
+                }
+            });
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void appendLocked(String payorEmail, byte[] email, long timestamp, Payment payment) {
+        long offset = journal.append(FIXED_BYTES + email.length, target -> target
+            .putLong(timestamp)
+            .putLong(payment.id())
+            .putLong(payment.creditCardNumber())
+            .putInt(payment.getAmount())
+            .putShort((short) email.length)
+            .put(email));
+        index(payorEmail, offset, timestamp);
+    }
+
+    private static byte[] encodePayorEmail(String payorEmail) {
+        byte[] email = payorEmail.getBytes(StandardCharsets.UTF_8);
+        if (email.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Payor email too long");
+        }
+        return email;
+    }
+
+    @Override
+    public List<Payment> findByPayor(String payorEmail) {
+        OffsetIndex index = offsetsByPayor.get(payorEmail);
+        if (index == null) return Collections.emptyList();
+        long[] offsets = index.snapshot();
+        List<Payment> payments = new ArrayList<>(offsets.length);
+        for (long offset : offsets) {
+            payments.add(decode(journal.read(offset), payorEmail));
+        }
+        return payments;
+    }
+
+    @Override
+    public PaymentPage findByPayor(String payorEmail, long fromMillis, long toMillis, long after, int limit) {
+        OffsetIndex index = offsetsByPayor.get(payorEmail);
+        if (index == null) return new PaymentPage(Collections.emptyList(), null);
+        index.lock.lock();
+        try {
+            return PaymentHistory.page(index.timestamps, index.size, fromMillis, toMillis, after, limit,
+                i -> new RecordedPayment(decode(journal.read(index.offsets[i]), payorEmail), index.timestamps[i]));
+        } finally {
+            index.lock.unlock();
+        }
+    }
+
+    @Override
+    public Payment findLatestByPayor(String payorEmail) {
+        OffsetIndex index = offsetsByPayor.get(payorEmail);
+        long offset = index == null ? NO_OFFSET : index.last();
+        return offset == NO_OFFSET ? null : decode(journal.read(offset), payorEmail);
+    }
+
+    @Override
+    public Set<String> payors() {
+        return Collections.unmodifiableSet(offsetsByPayor.keySet());
+    }
+
+    @Override
+    public long count() {
+        return count.sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        journal.close();
+    }
+
+    private void index(String payorEmail, long offset, long timestamp) {
+        offsetsByPayor.computeIfAbsent(payorEmail, email -> new OffsetIndex()).add(offset, timestamp);
+        count.increment();
+    }
+
+    private static Payment decode(ByteBuffer record, String payorEmail) {
+        record.getLong(); // timestamp
+        long id = record.getLong();
+        long creditCardNumber = record.getLong();
+        int amount = record.getInt();
+        return Payment.of(id, creditCardNumber, amount, payorEmail);
+    }
+
+    private static String decodePayorEmail(ByteBuffer record) {
+        int length = record.getShort(FIXED_BYTES - 2);
+        byte[] email = new byte[length];
+        record.get(FIXED_BYTES, email);
+        return new String(email, StandardCharsets.UTF_8);
+    }
+
+    private static final class OffsetIndex {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] offsets = new long[4];
+        private long[] timestamps = new long[4];
+        private int size;
+
+        /** Clamps the timestamp to the payor's previous one, on append and on replay alike, so they stay sorted. */
+        void add(long offset, long timestamp) {
+            lock.lock();
+            try {
+                if (size == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, size * 2);
+                    timestamps = Arrays.copyOf(timestamps, size * 2);
+                }
+                timestamps[size] = size == 0 ? timestamp : Math.max(timestamp, timestamps[size - 1]);
+                offsets[size++] = offset;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long[] snapshot() {
+            lock.lock();
+            try {
+                return Arrays.copyOf(offsets, size);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /** {@link #NO_OFFSET} while the payor's first payment is still being appended. */
+        long last() {
+            lock.lock();
+            try {
+                return size == 0 ? NO_OFFSET : offsets[size - 1];
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
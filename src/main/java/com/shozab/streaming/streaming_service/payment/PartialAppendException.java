@@ -0,0 +1,18 @@
+package com.shozab.streaming.streaming_service.payment;
+
+/**
+ * Thrown by {@link PaymentLedger#appendAll} when an append fails part way through a batch: the payments before
+ * it stay appended and visible, the failing one and those after it were not appended.
+ */
+public class PartialAppendException extends RuntimeException {
+
+    private final int appended;
+
+    public PartialAppendException(int appended, RuntimeException cause) {
+        super(cause.getMessage(), cause);
+        this.appended = appended;
+    }
+
+    /** Number of leading payments of the batch that were appended. */
+    public int getAppended() {return appended;}
+}
@@ -1,20 +1,74 @@
 package com.shozab.streaming.streaming_service.payment;
 
-public class Payment {
-    private Long id;
-    private Long creditCardNumber;
-    private int amount;
-    private String payorEmail;
+import java.util.Objects;
 
-    public Payment(Long id, Long creditCardNumber, int amount, String payorEmail) {
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable payment with primitive id and card number; {@link #NO_ID} and {@link #NO_CREDIT_CARD}
+ * stand for "absent" and are mapped back to {@code null} by the boxed getters.
+ */
+public final class Payment {
+
+    public static final long NO_ID = Long.MIN_VALUE;
+    public static final long NO_CREDIT_CARD = Long.MIN_VALUE;
+
+    private final long id;
+    private final long creditCardNumber;
+    private final int amount;
+    private final String payorEmail;
+
+    @JsonCreator
+    public Payment(@JsonProperty("id") Long id, @JsonProperty("creditCardNumber") Long creditCardNumber,
+            @JsonProperty("amount") int amount, @JsonProperty("payorEmail") String payorEmail) {
+        this(id == null ? NO_ID : id, toCreditCardNumber(creditCardNumber), amount, payorEmail);
+    }
+
+    /**
+     * Maps an absent card to {@link #NO_CREDIT_CARD}, and a client-sent sentinel to another out-of-range number
+     * so it is rejected as invalid instead of being read as "no card".
+     */
+    private static long toCreditCardNumber(Long creditCardNumber) {
+        if (creditCardNumber == null) return NO_CREDIT_CARD;
+        return creditCardNumber == NO_CREDIT_CARD ? NO_CREDIT_CARD + 1 : creditCardNumber;
+    }
+
+    private Payment(long id, long creditCardNumber, int amount, String payorEmail) {
         this.id = id;
         this.creditCardNumber = creditCardNumber;
         this.amount = amount;
         this.payorEmail = payorEmail;
     }
-    
-    public Long getId() {return id;}
-    public Long getCreditCardNumber() {return creditCardNumber;}
+
+    /**
+     * Builds a payment from primitive fields without boxing; pass {@link #NO_ID} / {@link #NO_CREDIT_CARD} for absent values.
+     */
+    public static Payment of(long id, long creditCardNumber, int amount, String payorEmail) {
+        return new Payment(id, creditCardNumber, amount, payorEmail);
+    }
+
+    public Long getId() {return id == NO_ID ? null : id;}
+    public Long getCreditCardNumber() {return hasCreditCard() ? creditCardNumber : null;}
     public int getAmount() {return amount;}
     public String getPayorEmail() {return payorEmail;}
+
+    public long id() {return id;}
+    public boolean hasCreditCard() {return creditCardNumber != NO_CREDIT_CARD;}
+    /** The card number, or {@link #NO_CREDIT_CARD}. */
+    public long creditCardNumber() {return creditCardNumber;}
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Payment)) return false;
+        Payment other = (Payment) o;
+        return id == other.id && creditCardNumber == other.creditCardNumber && amount == other.amount
+            && Objects.equals(payorEmail, other.payorEmail);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, creditCardNumber, amount, payorEmail);
+    }
 }
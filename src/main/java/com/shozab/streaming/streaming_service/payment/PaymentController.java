@@ -1,30 +1,219 @@
 package com.shozab.streaming.streaming_service.payment;
 
+import java.io.InputStream;
+import java.net.URI;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.shozab.streaming.streaming_service.bulk.BulkRequestProcessor;
+import com.shozab.streaming.streaming_service.gateway.GatewayUnavailableException;
+import com.shozab.streaming.streaming_service.gateway.PaymentDeclinedException;
+import com.shozab.streaming.streaming_service.gateway.PaymentGatewayException;
+import com.shozab.streaming.streaming_service.registration.UserController;
+import com.shozab.streaming.streaming_service.throttle.RequestThrottle;
+import com.shozab.streaming.streaming_service.throttle.RequestThrottledException;
 
+import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/payments")
 public class PaymentController {
     private PaymentService paymentService;
+    private BulkRequestProcessor bulkRequestProcessor;
+    private IdempotencyStore idempotencyStore;
+    private RequestThrottle requestThrottle;
+    private AsyncPaymentProcessor asyncPaymentProcessor;
     
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, BulkRequestProcessor bulkRequestProcessor,
+            IdempotencyStore idempotencyStore, RequestThrottle requestThrottle, AsyncPaymentProcessor asyncPaymentProcessor) {
         this.paymentService = paymentService;
+        this.bulkRequestProcessor = bulkRequestProcessor;
+        this.idempotencyStore = idempotencyStore;
+        this.requestThrottle = requestThrottle;
+        this.asyncPaymentProcessor = asyncPaymentProcessor;
     }
     
+    /**
+     * With an {@code Idempotency-Key} header, a retry of the same payment is answered with the original
+     * response instead of being processed again. With {@code Prefer: respond-async}, the payment is queued
+     * and answered with 202 and the {@code Location} of its status, {@code /payments/{id}}.
+     */
     @PostMapping
-    public ResponseEntity<String> processPayment(@RequestBody Payment payment) {
+    public ResponseEntity<String> processPayment(@RequestBody Payment payment,
+            @RequestHeader(name = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(name = AsyncPaymentProcessor.PREFER_HEADER, required = false) String prefer) {
+        Supplier<ResponseEntity<String>> process = AsyncPaymentProcessor.isRequested(prefer)
+            ? () -> submit(payment, idempotencyKey)
+            : () -> process(payment, idempotencyKey);
+        if (idempotencyKey == null) {
+            return process.get();
+        }
+        return idempotencyStore.execute(idempotencyKey, payment, process);
+    }
+
+    /**
+     * Status of a payment submitted with {@code Prefer: respond-async}; 404 once it has expired.
+     */
+    @GetMapping(path = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PaymentStatus> getPaymentStatus(@PathVariable String id) {
+        PaymentStatus status = asyncPaymentProcessor.getStatus(id);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    private ResponseEntity<String> submit(Payment payment, String idempotencyKey) {
         try {
-            paymentService.processPayment(payment);
-            return ResponseEntity.status(201).body("Payment processed successfully");
-        } catch (IllegalArgumentException e) {
+            requestThrottle.checkPayor(payment.getPayorEmail());
+            return submitted(asyncPaymentProcessor.submit(payment, idempotencyKey));
+        } catch (RuntimeException e) {
+            return paymentRejected(e);
+        }
+    }
+
+    private ResponseEntity<String> process(Payment payment, String idempotencyKey) {
+        try {
+            requestThrottle.checkPayor(payment.getPayorEmail());
+            paymentService.processPayment(payment, idempotencyKey);
+            return processed();
+        } catch (RuntimeException e) {
+            return paymentRejected(e);
+        }
+    }
+
+    static ResponseEntity<String> processed() {
+        return ResponseEntity.status(201).body("Payment processed successfully");
+    }
+
+    static ResponseEntity<String> submitted(PaymentStatus status) {
+        return ResponseEntity.accepted()
+            .location(URI.create("/payments/" + status.getId()))
+            .header(AsyncPaymentProcessor.PREFERENCE_APPLIED_HEADER, AsyncPaymentProcessor.RESPOND_ASYNC)
+            .body(status.getMessage());
+    }
+
+    static ResponseEntity<String> paymentRejected(RuntimeException e) {
+        if (e instanceof RequestThrottledException throttled) {
+            return ResponseEntity.status(throttled.getStatus()) // 429 Too Many Requests
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(throttled.getRetryAfterSeconds()))
+                .body(e.getMessage());
+        } else if (e instanceof GatewayUnavailableException unavailable) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(unavailable.getRetryAfterSeconds()))
+                .body(e.getMessage());
+        } else if (e instanceof PaymentGatewayException) {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(e.getMessage());
+        } else if (e instanceof PaymentDeclinedException) {
+            return ResponseEntity.status(HttpStatus.PAYMENT_REQUIRED).body(e.getMessage());
+        } else if (e instanceof IllegalArgumentException) {
             return ResponseEntity.status(400).body(e.getMessage()); // Bad Request
-        } catch (IllegalStateException e) {
+        } else if (e instanceof IllegalStateException) {
             return ResponseEntity.status(404).body(e.getMessage()); // Not Found
         }
+        throw e;
+    }
+
+    /**
+     * Lists the payments of the payor {@code email} accepted from {@code from} (inclusive) to {@code to}
+     * (exclusive), both ISO-8601 instants and open-ended when omitted, oldest first. Pages work as for
+     * {@code GET /users}: at most {@code limit} payments are returned, and the cursor for the next page, if any,
+     * is sent in the {@code X-Next-Cursor} header.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RecordedPayment>> getPayments(@RequestParam Optional<String> email,
+            @RequestParam Optional<String> from, @RequestParam Optional<String> to,
+            @RequestParam Optional<Integer> limit, @RequestParam Optional<Long> after) {
+        HistoryQuery query;
+        try {
+            query = HistoryQuery.parse(email, from, to, limit, after);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Collections.emptyList());
+        }
+
+        PaymentPage page = paymentService.getPaymentHistory(query.email(), query.from(), query.to(), query.after(), query.limit());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(UserController.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(page.getPayments());
+    }
+
+    /**
+     * Parameters of a payment history request; shared with the reactive handler so both stacks validate alike.
+     */
+    record HistoryQuery(String email, Instant from, Instant to, long after, int limit) {
+
+        /** Latest instant a ledger timestamp can hold. */
+        private static final Instant END_OF_TIME = Instant.ofEpochMilli(Long.MAX_VALUE);
+
+        static HistoryQuery parse(Optional<String> email, Optional<String> from, Optional<String> to,
+                Optional<Integer> limit, Optional<Long> after) throws IllegalArgumentException {
+            if (email.isEmpty() || email.get().isBlank()) {
+                throw new IllegalArgumentException("Missing email parameter");
+            }
+            if (!UserController.isPageValid(limit, after)) {
+                throw new IllegalArgumentException("Invalid page");
+            }
+            Instant fromInstant = parseInstant(from, Instant.EPOCH);
+            Instant toInstant = parseInstant(to, END_OF_TIME);
+            if (fromInstant.isAfter(toInstant)) {
+                throw new IllegalArgumentException("from is after to");
+            }
+            return new HistoryQuery(email.get(), fromInstant, toInstant, after.orElse(0L), limit.orElse(UserController.MAX_PAGE_SIZE));
+        }
+
+        private static Instant parseInstant(Optional<String> value, Instant absent) {
+            if (value.isEmpty()) return absent;
+            try {
+                Instant instant = Instant.parse(value.get());
+                if (instant.isBefore(Instant.EPOCH) || instant.isAfter(END_OF_TIME)) {
+                    throw new IllegalArgumentException("Instant out of range");
+                }
+                return instant;
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Invalid instant " + value.get(), e);
+            }
+        }
+    }
+
+    /**
+     * Processes every payment in a JSON array or NDJSON body, streaming one result per payment back as
+     * NDJSON in input order. Each payment is charged to the client's rate limit like a single one.
+     */
+    @PostMapping(path = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> processPayments(InputStream body, HttpServletRequest request) {
+        String clientAddress = request.getRemoteAddr();
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(bulkRequestProcessor.process(body, Payment.class, payment -> {
+                try {
+                    requestThrottle.checkClient(RequestThrottle.Route.PAYMENTS, clientAddress);
+                } catch (RequestThrottledException e) {
+                    return paymentRejected(e);
+                }
+                return process(payment, null);
+            }));
     }
 }
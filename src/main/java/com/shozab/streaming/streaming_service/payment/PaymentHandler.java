@@ -0,0 +1,122 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+
+import com.shozab.streaming.streaming_service.bulk.BulkResult;
+import com.shozab.streaming.streaming_service.bulk.ReactiveBulkProcessor;
+import com.shozab.streaming.streaming_service.registration.UserController;
+import com.shozab.streaming.streaming_service.throttle.RequestThrottle;
+import com.shozab.streaming.streaming_service.throttle.ThrottleWebFilter;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux handlers for {@code /payments}, answering with the same statuses and bodies as {@link PaymentController}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class PaymentHandler {
+
+    private final ReactivePaymentService paymentService;
+    private final ReactiveBulkProcessor bulkProcessor;
+    private final IdempotencyStore idempotencyStore;
+    private final RequestThrottle requestThrottle;
+    private final AsyncPaymentProcessor asyncPaymentProcessor;
+
+    public PaymentHandler(ReactivePaymentService paymentService, ReactiveBulkProcessor bulkProcessor,
+            IdempotencyStore idempotencyStore, RequestThrottle requestThrottle, AsyncPaymentProcessor asyncPaymentProcessor) {
+        this.paymentService = paymentService;
+        this.bulkProcessor = bulkProcessor;
+        this.idempotencyStore = idempotencyStore;
+        this.requestThrottle = requestThrottle;
+        this.asyncPaymentProcessor = asyncPaymentProcessor;
+    }
+
+    public Mono<ServerResponse> processPayment(ServerRequest request) {
+        String idempotencyKey = request.headers().firstHeader(IdempotencyStore.HEADER);
+        boolean respondAsync = AsyncPaymentProcessor.isRequested(request.headers().firstHeader(AsyncPaymentProcessor.PREFER_HEADER));
+        return request.bodyToMono(Payment.class)
+            .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+            .flatMap(payment -> {
+                Supplier<Mono<ResponseEntity<String>>> process = respondAsync
+                    ? () -> submit(payment, idempotencyKey)
+                    : () -> process(payment, idempotencyKey);
+                return idempotencyKey == null
+                    ? process.get()
+                    : Mono.fromFuture(() -> idempotencyStore.executeAsync(idempotencyKey, payment, () -> process.get().toFuture()));
+            })
+            .flatMap(response -> ServerResponse.status(response.getStatusCode())
+                .headers(headers -> headers.addAll(response.getHeaders()))
+                .bodyValue(response.getBody()));
+    }
+
+    public Mono<ServerResponse> getPaymentStatus(ServerRequest request) {
+        PaymentStatus status = asyncPaymentProcessor.getStatus(request.pathVariable("id"));
+        if (status == null) {
+            return ServerResponse.notFound().build();
+        }
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(status);
+    }
+
+    public Mono<ServerResponse> getPayments(ServerRequest request) {
+        PaymentController.HistoryQuery query;
+        try {
+            query = PaymentController.HistoryQuery.parse(request.queryParam("email"), request.queryParam("from"),
+                request.queryParam("to"), request.queryParam("limit").map(Integer::valueOf),
+                request.queryParam("after").map(Long::valueOf));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().contentType(MediaType.APPLICATION_JSON).bodyValue(Collections.emptyList());
+        }
+        return paymentService.getPaymentHistory(query.email(), query.from(), query.to(), query.after(), query.limit())
+            .flatMap(page -> {
+                ServerResponse.BodyBuilder response = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON);
+                if (page.getNextCursor() != null) {
+                    response.header(UserController.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+                }
+                return response.bodyValue(page.getPayments());
+            });
+    }
+
+    public Mono<ServerResponse> processPayments(ServerRequest request) {
+        String clientAddress = ThrottleWebFilter.clientAddress(request.exchange().getRequest());
+        return ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(bulkProcessor.process(request.bodyToFlux(Payment.class), payment -> Mono.fromRunnable(
+                    () -> requestThrottle.checkClient(RequestThrottle.Route.PAYMENTS, clientAddress))
+                .then(Mono.defer(() -> process(payment, null)))
+                .onErrorResume(RuntimeException.class, e -> Mono.fromSupplier(() -> PaymentController.paymentRejected(e)))),
+                BulkResult.class);
+    }
+
+    /** Queuing does not block, so it runs on the calling thread. */
+    private Mono<ResponseEntity<String>> submit(Payment payment, String idempotencyKey) {
+        return Mono.fromSupplier(() -> {
+            try {
+                requestThrottle.checkPayor(payment.getPayorEmail());
+                return PaymentController.submitted(asyncPaymentProcessor.submit(payment, idempotencyKey));
+            } catch (RuntimeException e) {
+                return PaymentController.paymentRejected(e);
+            }
+        });
+    }
+
+    private Mono<ResponseEntity<String>> process(Payment payment, String idempotencyKey) {
+        return Mono.fromRunnable(() -> requestThrottle.checkPayor(payment.getPayorEmail()))
+            .then(paymentService.processPayment(payment, idempotencyKey))
+            .then(Mono.fromSupplier(PaymentController::processed))
+            .onErrorResume(RejectedExecutionException.class,
+                e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Payment queue is full")))
+            .onErrorResume(RuntimeException.class, e -> Mono.fromSupplier(() -> PaymentController.paymentRejected(e)));
+    }
+}
@@ -0,0 +1,56 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Range queries over one payor's payments, held by the ledgers as parallel primitive arrays in
+ * acceptance order with ascending timestamps. A page is found by binary search on the timestamps,
+ * so it costs O(log n + k) for k payments returned.
+ *
+ * <p>A cursor is the position of the next payment in the payor's history, which never changes because
+ * payments are only appended.
+ */
+final class PaymentHistory {
+
+    /** Reads the payment at a position, once its range is known. */
+    @FunctionalInterface
+    interface Reader {
+        RecordedPayment read(int position);
+    }
+
+    private PaymentHistory() {}
+
+    /**
+     * Payments with {@code from <= timestamp < to}, starting at position {@code after}, at most {@code limit}.
+     * The caller holds whatever lock guards {@code timestamps}.
+     */
+    static PaymentPage page(long[] timestamps, int size, long from, long to, long after, int limit, Reader reader) {
+        int start = (int) Math.max(firstAtOrAfter(timestamps, size, from), Math.min(after, size));
+        int end = firstAtOrAfter(timestamps, size, to);
+        int stop = (int) Math.min(end, (long) start + limit);
+
+        List<RecordedPayment> payments = new ArrayList<>(Math.max(0, stop - start));
+        for (int position = start; position < stop; position++) {
+            payments.add(reader.read(position));
+        }
+        return new PaymentPage(payments, stop < end ? (long) stop : null);
+    }
+
+    /**
+     * @return the position of the first of {@code size} ascending timestamps that is at or after {@code timestamp}
+     */
+    static int firstAtOrAfter(long[] timestamps, int size, long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
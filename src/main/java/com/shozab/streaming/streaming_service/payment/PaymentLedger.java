@@ -0,0 +1,55 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only record of accepted payments, indexed by payor email.
+ * Each payment is recorded with the time it was accepted; a payor's timestamps never decrease,
+ * even if the clock steps back.
+ * Implementations must be safe for concurrent use by request threads.
+ */
+public interface PaymentLedger {
+
+    void append(String payorEmail, Payment payment);
+
+    /**
+     * Throws if the payment could never be appended, such as a payor email the record format cannot hold,
+     * so a batching ledger can refuse it before it joins a batch.
+     */
+    default void checkAppendable(String payorEmail, Payment payment) {
+    }
+
+    /**
+     * Appends several payments, keyed by payor email, in order.
+     * Durable ledgers make the whole batch durable together.
+     * @throws PartialAppendException if an append fails; the payments before it stay appended
+     */
+    default void appendAll(List<Map.Entry<String, Payment>> payments) throws PartialAppendException {
+        for (int i = 0; i < payments.size(); i++) {
+            try {
+                append(payments.get(i).getKey(), payments.get(i).getValue());
+            } catch (RuntimeException e) {
+                throw new PartialAppendException(i, e);
+            }
+        }
+    }
+
+    /**
+     * @return every payment made by the payor, oldest first
+     */
+    List<Payment> findByPayor(String payorEmail);
+
+    /**
+     * One page of the payor's payments accepted at or after {@code fromMillis} and before {@code toMillis},
+     * oldest first, starting at cursor {@code after} (0 for the first page).
+     */
+    PaymentPage findByPayor(String payorEmail, long fromMillis, long toMillis, long after, int limit);
+
+    Payment findLatestByPayor(String payorEmail);
+
+    Set<String> payors();
+
+    long count();
+}
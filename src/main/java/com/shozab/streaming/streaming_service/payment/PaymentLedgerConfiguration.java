@@ -0,0 +1,46 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.shozab.streaming.streaming_service.storage.FsyncPolicy;
+import com.shozab.streaming.streaming_service.storage.MappedJournal;
+
+/**
+ * Uses the durable payment journal when {@code streaming.payments.journal.enabled} is true,
+ * otherwise an in-memory ledger. Journal appends are group committed unless
+ * {@code streaming.payments.batch.enabled} is false.
+ */
+@Configuration
+public class PaymentLedgerConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "streaming.payments.journal.enabled", havingValue = "true")
+    public PaymentLedger mappedPaymentLedger(
+            @Value("${streaming.payments.journal.path:data/payments.journal}") Path path,
+            @Value("${streaming.payments.journal.fsync:always}") FsyncPolicy fsyncPolicy,
+            @Value("${streaming.payments.journal.fsync-group-size:64}") int fsyncGroupSize,
+            @Value("${streaming.payments.journal.fsync-interval:100ms}") Duration fsyncInterval,
+            @Value("${streaming.payments.journal.region-size:" + MappedJournal.DEFAULT_REGION_SIZE + "}") int regionSize,
+            @Value("${streaming.payments.batch.enabled:true}") boolean batchEnabled,
+            @Value("${streaming.payments.batch.max-size:128}") int batchMaxSize,
+            @Value("${streaming.payments.batch.window:2ms}") Duration batchWindow,
+            MeterRegistry meterRegistry) throws IOException {
+        PaymentLedger ledger = new MappedPaymentLedger(new MappedJournal(path, regionSize, fsyncPolicy, fsyncGroupSize, fsyncInterval));
+        return batchEnabled ? new GroupCommitPaymentLedger(ledger, batchMaxSize, batchWindow, meterRegistry) : ledger;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "streaming.payments.journal.enabled", havingValue = "false", matchIfMissing = true)
+    public PaymentLedger inMemoryPaymentLedger() {
+        return new InMemoryPaymentLedger();
+    }
+}
@@ -0,0 +1,20 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.util.List;
+
+/**
+ * One page of a payor's payments, oldest first. {@code nextCursor} is passed back as {@code after}
+ * to fetch the following page and is null on the last page.
+ */
+public class PaymentPage {
+    private final List<RecordedPayment> payments;
+    private final Long nextCursor;
+
+    public PaymentPage(List<RecordedPayment> payments, Long nextCursor) {
+        this.payments = payments;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<RecordedPayment> getPayments() {return payments;}
+    public Long getNextCursor() {return nextCursor;}
+}
@@ -0,0 +1,14 @@
+package com.shozab.streaming.streaming_service.payment;
+
+/**
+ * Authorizes and records one payment, throwing as {@link PaymentService#processPayment} does when it is refused.
+ * {@link AsyncPaymentProcessor} drives one on its workers; tests can substitute a stub.
+ */
+@FunctionalInterface
+public interface PaymentProcessor {
+
+    /**
+     * @param requestKey the client's {@code Idempotency-Key}, or {@code null}
+     */
+    void process(Payment payment, String requestKey) throws IllegalArgumentException, IllegalStateException;
+}
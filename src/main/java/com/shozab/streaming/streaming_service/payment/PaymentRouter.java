@@ -0,0 +1,26 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Routes for the reactive stack; the servlet stack is served by {@link PaymentController}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class PaymentRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> paymentRoutes(PaymentHandler handler) {
+        return RouterFunctions.route()
+            .GET("/payments", handler::getPayments)
+            .POST("/payments", handler::processPayment)
+            .POST("/payments/bulk", handler::processPayments)
+            .GET("/payments/{id}", handler::getPaymentStatus)
+            .build();
+    }
+}
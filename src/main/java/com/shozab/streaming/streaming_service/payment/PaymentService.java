@@ -1,45 +1,154 @@
 package com.shozab.streaming.streaming_service.payment;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.shozab.streaming.streaming_service.gateway.Authorization;
+import com.shozab.streaming.streaming_service.gateway.PaymentDeclinedException;
+import com.shozab.streaming.streaming_service.gateway.PaymentGateway;
+import com.shozab.streaming.streaming_service.gateway.PaymentGatewayException;
 import com.shozab.streaming.streaming_service.registration.UserService;
 import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserValidator;
 
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Authorizes payments against the payor's card on file and then the {@link PaymentGateway}, and records them in the ledger.
+ * Publishes {@code payments.process{outcome}} timers, {@code payments.rejected{reason}} counters
+ * and the {@code payments.ledger.size} / {@code payments.ledger.payors} gauges; history queries are timed as
+ * {@code payments.history}.
+ */
 @Service
 public class PaymentService {
     private final UserService userService;
-    private final HashMap<String, Payment> paymentList = new HashMap<>();
+    private final PaymentLedger paymentLedger;
+    private final PaymentGateway paymentGateway;
+    private final Timer acceptedTimer;
+    private final Timer rejectedTimer;
+    private final Counter invalidCardRejections;
+    private final Counter invalidAmountRejections;
+    private final Counter payorRejections;
+    private final Counter declinedRejections;
+    private final Counter gatewayRejections;
+    private final Timer historyTimer;
 
     public PaymentService(UserService userService) {
+        this(userService, new InMemoryPaymentLedger());
+    }
+
+    public PaymentService(UserService userService, PaymentLedger paymentLedger) {
+        this(userService, paymentLedger, new SimpleMeterRegistry());
+    }
+
+    public PaymentService(UserService userService, PaymentLedger paymentLedger, MeterRegistry meterRegistry) {
+        this(userService, paymentLedger, PaymentGateway.NONE, meterRegistry);
+    }
+
+    @Autowired
+    public PaymentService(UserService userService, PaymentLedger paymentLedger, PaymentGateway paymentGateway, MeterRegistry meterRegistry) {
         this.userService = userService;
+        this.paymentLedger = paymentLedger;
+        this.paymentGateway = paymentGateway;
+        this.acceptedTimer = processTimer("accepted", meterRegistry);
+        this.rejectedTimer = processTimer("rejected", meterRegistry);
+        this.invalidCardRejections = rejectionCounter("invalid_card", meterRegistry);
+        this.invalidAmountRejections = rejectionCounter("invalid_amount", meterRegistry);
+        this.payorRejections = rejectionCounter("payor_not_found", meterRegistry);
+        this.declinedRejections = rejectionCounter("declined", meterRegistry);
+        this.gatewayRejections = rejectionCounter("gateway_unavailable", meterRegistry);
+        this.historyTimer = Timer.builder("payments.history")
+            .description("Time to read one page of a payor's payment history")
+            .register(meterRegistry);
+        Gauge.builder("payments.ledger.size", paymentLedger, PaymentLedger::count)
+            .description("Payments recorded")
+            .register(meterRegistry);
+        Gauge.builder("payments.ledger.payors", paymentLedger, ledger -> ledger.payors().size())
+            .description("Payors with at least one payment")
+            .register(meterRegistry);
     }
     
-    public void processPayment(Payment payment) throws IllegalArgumentException, IllegalStateException {
+    public void processPayment(Payment payment) throws IllegalArgumentException, IllegalStateException, PaymentGatewayException {
+        processPayment(payment, null);
+    }
+
+    /**
+     * @param requestKey the client's {@code Idempotency-Key}, sent to the card network so a retried payment is charged
+     *        at most once; without one each call is sent with a fresh key
+     * @throws PaymentDeclinedException if the card network declines the payment
+     * @throws PaymentGatewayException if the card network did not answer; the payment may or may not have been charged,
+     *         unless it is a {@link com.shozab.streaming.streaming_service.gateway.GatewayUnavailableException}, which is
+     *         thrown without calling it
+     */
+    public void processPayment(Payment payment, String requestKey) throws IllegalArgumentException, IllegalStateException, PaymentGatewayException {
+        long start = System.nanoTime();
+        Counter rejection = invalidCardRejections;
         try {
-            isCreditCardNumberValid(payment.getCreditCardNumber());
+            isCreditCardNumberValid(payment.creditCardNumber());
+            rejection = invalidAmountRejections;
             isAmountValid(payment.getAmount());
             
+            rejection = payorRejections;
             User user = userService.findUserByEmail(payment.getPayorEmail());
             
-            if (user != null && user.getCreditCardNumber().equals(payment.getCreditCardNumber())) {
-                paymentList.put(user.getEmail(), payment);
+            if (user != null && user.hasCreditCard() && user.creditCardNumber() == payment.creditCardNumber()) {
+                rejection = declinedRejections;
+                authorize(requestKey != null ? requestKey : UUID.randomUUID().toString(), payment);
+
+                // A ledger failure is an error rather than a rejection
+                rejection = null;
+                paymentLedger.append(user.getEmail(), payment);
+                acceptedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 return;
             }
             
             throw new IllegalStateException("Payor not found or invalid credit card number");
-        } catch (IllegalArgumentException | IllegalStateException e) {
+        } catch (IllegalArgumentException | IllegalStateException | PaymentGatewayException e) {
+            if (e instanceof PaymentGatewayException) rejection = gatewayRejections;
+            if (rejection != null) {
+                rejection.increment();
+                rejectedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
             throw e;
         }
     }
 
+    private void authorize(String requestKey, Payment payment) throws PaymentDeclinedException, PaymentGatewayException {
+        Authorization authorization;
+        try {
+            authorization = paymentGateway.authorize(requestKey, payment).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PaymentGatewayException cause) throw cause;
+            throw new PaymentGatewayException("Payment gateway call failed", e.getCause());
+        }
+        if (!authorization.approved()) {
+            throw new PaymentDeclinedException(authorization.reason());
+        }
+    }
+
     public boolean isCreditCardNumberValid(Long creditCardNumber) throws IllegalArgumentException {
-        if(creditCardNumber == null || creditCardNumber.toString().length() != 16) {
+        return isCreditCardNumberValid(creditCardNumber == null ? Payment.NO_CREDIT_CARD : creditCardNumber.longValue());
+    }
+
+    /**
+     * A card number must be a positive 16 digit number, checked as a range rather than by formatting it.
+     */
+    public boolean isCreditCardNumberValid(long creditCardNumber) throws IllegalArgumentException {
+        if (!UserValidator.isSixteenDigits(creditCardNumber)) {
             throw new IllegalArgumentException("Invalid credit card number");
-        } else {
-            return true;
         }
+        return true;
     }
 
     public boolean isAmountValid(int amount) throws IllegalArgumentException {
@@ -47,7 +156,40 @@ public class PaymentService {
         else throw new IllegalArgumentException("Invalid payment amount");
     }
 
-    public HashMap<String, Payment> getPaymentList() {
-        return paymentList;
+    private static Timer processTimer(String outcome, MeterRegistry meterRegistry) {
+        return Timer.builder("payments.process")
+            .description("Time to authorize and record a payment")
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    private static Counter rejectionCounter(String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("payments.rejected")
+            .description("Payments refused, by reason")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+
+    /**
+     * The payor's payments accepted in {@code [from, to)}, oldest first, one page at a time.
+     */
+    public PaymentPage getPaymentHistory(String payorEmail, Instant from, Instant to, long after, int limit) {
+        long start = System.nanoTime();
+        try {
+            return paymentLedger.findByPayor(payorEmail, from.toEpochMilli(), to.toEpochMilli(), after, limit);
+        } finally {
+            historyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Snapshot of the most recent payment of each payor.
+     */
+    public Map<String, Payment> getPaymentList() {
+        Map<String, Payment> latestPayments = new HashMap<>();
+        for (String payorEmail : paymentLedger.payors()) {
+            latestPayments.put(payorEmail, paymentLedger.findLatestByPayor(payorEmail));
+        }
+        return latestPayments;
     }
 }
@@ -0,0 +1,50 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.time.Instant;
+
+/**
+ * Progress of a payment submitted with {@code Prefer: respond-async}. Once it is done, {@code status} and
+ * {@code message} are what {@code POST /payments} would have answered had it processed the payment itself;
+ * until then {@code status} is 202.
+ */
+public final class PaymentStatus {
+
+    public enum State {QUEUED, PROCESSING, ACCEPTED, REJECTED, FAILED}
+
+    private final String id;
+    private final State state;
+    private final int status;
+    private final String message;
+    private final Instant submittedAt;
+    private final Instant completedAt;
+
+    private PaymentStatus(String id, State state, int status, String message, Instant submittedAt, Instant completedAt) {
+        this.id = id;
+        this.state = state;
+        this.status = status;
+        this.message = message;
+        this.submittedAt = submittedAt;
+        this.completedAt = completedAt;
+    }
+
+    static PaymentStatus queued(String id, Instant submittedAt) {
+        return new PaymentStatus(id, State.QUEUED, 202, "Payment queued for processing", submittedAt, null);
+    }
+
+    PaymentStatus processing() {
+        return new PaymentStatus(id, State.PROCESSING, 202, "Payment is being processed", submittedAt, null);
+    }
+
+    PaymentStatus completed(State state, int status, String message, Instant completedAt) {
+        return new PaymentStatus(id, state, status, message, submittedAt, completedAt);
+    }
+
+    public String getId() {return id;}
+    public State getState() {return state;}
+    public int getStatus() {return status;}
+    public String getMessage() {return message;}
+    public Instant getSubmittedAt() {return submittedAt;}
+    public Instant getCompletedAt() {return completedAt;}
+
+    public boolean isDone() {return completedAt != null;}
+}
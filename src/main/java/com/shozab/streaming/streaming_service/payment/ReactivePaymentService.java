@@ -0,0 +1,51 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.time.Instant;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking facade over {@link PaymentService} for the reactive stack.
+ * Processing a payment waits for the journal to be forced to disk, so it runs on a bounded scheduler.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePaymentService {
+
+    private final PaymentService paymentService;
+    private final Scheduler blockingScheduler;
+
+    public ReactivePaymentService(PaymentService paymentService,
+            @Value("${streaming.reactive.blocking-threads:0}") int blockingThreads,
+            @Value("${streaming.reactive.blocking-queue-capacity:1024}") int blockingQueueCapacity) {
+        this.paymentService = paymentService;
+        this.blockingScheduler = Schedulers.newBoundedElastic(
+            blockingThreads > 0 ? blockingThreads : Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+            blockingQueueCapacity, "reactive-payments");
+    }
+
+    public Mono<Void> processPayment(Payment payment, String requestKey) {
+        return Mono.<Void>fromRunnable(() -> paymentService.processPayment(payment, requestKey)).subscribeOn(blockingScheduler);
+    }
+
+    public Mono<PaymentPage> getPaymentHistory(String payorEmail, Instant from, Instant to, long after, int limit) {
+        return Mono.fromSupplier(() -> paymentService.getPaymentHistory(payorEmail, from, to, after, limit));
+    }
+
+    public Mono<Map<String, Payment>> getPaymentList() {
+        return Mono.fromSupplier(paymentService::getPaymentList);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        blockingScheduler.dispose();
+    }
+}
@@ -0,0 +1,26 @@
+package com.shozab.streaming.streaming_service.payment;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+/**
+ * A payment as recorded in the ledger, with the time it was accepted. Serialized as the payment's fields
+ * plus {@code timestamp}.
+ */
+public final class RecordedPayment {
+
+    private final Payment payment;
+    private final long timestampMillis;
+
+    public RecordedPayment(Payment payment, long timestampMillis) {
+        this.payment = payment;
+        this.timestampMillis = timestampMillis;
+    }
+
+    @JsonUnwrapped
+    public Payment getPayment() {return payment;}
+    public Instant getTimestamp() {return Instant.ofEpochMilli(timestampMillis);}
+
+    public long timestampMillis() {return timestampMillis;}
+}
@@ -0,0 +1,34 @@
+package com.shozab.streaming.streaming_service.registration;
+
+/**
+ * Thrown when a registration clashes with an existing user's username or email. It is an
+ * {@link IllegalStateException}, so it maps to 409 like other registration conflicts; {@link #getKey()} tells
+ * which key clashed. Conflicts are frequent and expected, so no stack trace is captured.
+ */
+public class DuplicateUserException extends IllegalStateException {
+
+    public enum Key {
+        USERNAME("Username already exists"),
+        EMAIL("Email already exists");
+
+        private final String message;
+
+        Key(String message) {
+            this.message = message;
+        }
+    }
+
+    private final Key key;
+
+    public DuplicateUserException(Key key) {
+        super(key.message);
+        this.key = key;
+    }
+
+    public Key getKey() {return key;}
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
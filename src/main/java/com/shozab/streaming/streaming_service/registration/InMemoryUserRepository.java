@@ -0,0 +1,162 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Default in-memory user store.
+ * Users are keyed by email, with a secondary username index so both uniqueness checks are O(1).
+ * Inserts check and claim both keys under one insert lock, so neither key can be registered twice and a
+ * registration that fails on its email never holds its username where a concurrent one would see it;
+ * lookups and card updates do not take that lock.
+ * Users are also ordered by a registration sequence number, which serves as the page cursor,
+ * and split into card holder / non card holder partitions so filtered listings and counts
+ * only cost the size of the result.
+ * The insert lock and per-registration locks are {@link ReentrantLock}s rather than monitors so that a virtual thread
+ * holding one never pins its carrier thread.
+ */
+public class InMemoryUserRepository implements UserRepository {
+
+    private final ConcurrentHashMap<String, Registration> registrationsByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> emailsByUsername = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, User> usersBySequence = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, User> withCreditCard = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, User> withoutCreditCard = new ConcurrentSkipListMap<>();
+    private final LongAdder creditCardHolders = new LongAdder();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock insertLock = new ReentrantLock();
+
+    @Override
+    public User findByEmail(String email) {
+        if (email == null) return null;
+        Registration registration = registrationsByEmail.get(email);
+        return registration == null ? null : registration.user;
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return email != null && registrationsByEmail.containsKey(email);
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return username != null && emailsByUsername.containsKey(username);
+    }
+
+    @Override
+    public void insert(User user) throws IllegalStateException {
+        insertLock.lock();
+        try {
+            if (emailsByUsername.containsKey(user.getUsername())) {
+                throw new DuplicateUserException(DuplicateUserException.Key.USERNAME);
+            }
+            if (registrationsByEmail.containsKey(user.getEmail())) {
+                throw new DuplicateUserException(DuplicateUserException.Key.EMAIL);
+            }
+            Registration registration = new Registration(sequence.incrementAndGet(), user);
+            // Hold the registration until it is indexed so a concurrent card update cannot see it half-indexed
+            registration.lock.lock();
+            try {
+                registrationsByEmail.put(user.getEmail(), registration);
+                emailsByUsername.put(user.getUsername(), user.getEmail());
+                usersBySequence.put(registration.sequence, user);
+                addToPartition(registration.sequence, user);
+            } finally {
+                registration.lock.unlock();
+            }
+        } finally {
+            insertLock.unlock();
+        }
+    }
+
+    @Override
+    public User updateCreditCardNumber(String email, Long creditCardNumber) throws IllegalStateException {
+        Registration registration = email == null ? null : registrationsByEmail.get(email);
+        if (registration == null) {
+            throw new IllegalStateException("User not found");
+        }
+        registration.lock.lock();
+        try {
+            User previous = registration.user;
+            User updated = previous.withCreditCardNumber(creditCardNumber == null ? User.NO_CREDIT_CARD : creditCardNumber);
+            registration.user = updated;
+            usersBySequence.put(registration.sequence, updated);
+            removeFromPartition(registration.sequence, previous);
+            addToPartition(registration.sequence, updated);
+            return updated;
+        } finally {
+            registration.lock.unlock();
+        }
+    }
+
+    @Override
+    public Collection<User> findAll(Optional<Boolean> hasCreditCard) {
+        return Collections.unmodifiableCollection(usersFor(hasCreditCard).values());
+    }
+
+    @Override
+    public UserPage findPage(long after, int limit, Optional<Boolean> hasCreditCard) {
+        List<User> users = new ArrayList<>(Math.min(limit, 256));
+        long last = after;
+        for (Map.Entry<Long, User> entry : usersFor(hasCreditCard).tailMap(after, false).entrySet()) {
+            if (users.size() == limit) {
+                return new UserPage(users, last);
+            }
+            users.add(entry.getValue());
+            last = entry.getKey();
+        }
+        return new UserPage(users, null);
+    }
+
+    @Override
+    public long count(Optional<Boolean> hasCreditCard) {
+        long total = registrationsByEmail.mappingCount();
+        if (!hasCreditCard.isPresent()) return total;
+        long holders = creditCardHolders.sum();
+        return hasCreditCard.get() ? holders : Math.max(0, total - holders);
+    }
+
+    private ConcurrentNavigableMap<Long, User> usersFor(Optional<Boolean> hasCreditCard) {
+        if (!hasCreditCard.isPresent()) return usersBySequence;
+        return hasCreditCard.get() ? withCreditCard : withoutCreditCard;
+    }
+
+    private void addToPartition(long sequence, User user) {
+        if (user.hasCreditCard()) {
+            withCreditCard.put(sequence, user);
+            creditCardHolders.increment();
+        } else {
+            withoutCreditCard.put(sequence, user);
+        }
+    }
+
+    private void removeFromPartition(long sequence, User user) {
+        if (user.hasCreditCard()) {
+            withCreditCard.remove(sequence);
+            creditCardHolders.decrement();
+        } else {
+            withoutCreditCard.remove(sequence);
+        }
+    }
+
+    private static final class Registration {
+        private final long sequence;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile User user;
+
+        private Registration(long sequence, User user) {
+            this.sequence = sequence;
+            this.user = user;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+
+import com.shozab.streaming.streaming_service.storage.FsyncPolicy;
+import com.shozab.streaming.streaming_service.storage.MappedJournal;
+
+/**
+ * Makes another {@link UserRepository} durable by journaling every write, so registered users survive a restart
+ * without replaying registrations (and their password hashing).
+ *
+ * <p>The directory holds numbered generations: {@code log-N} journals record each insert and card update
+ * as it happens, and {@code snapshot-N} holds every user as of the start of {@code log-N}. A snapshot is taken
+ * by switching writes to a new log, writing all users of the store to {@code snapshot-N.tmp}, forcing it and
+ * renaming it into place, after which older generations are deleted. Users written while the snapshot is
+ * taken may end up both in it and in the new log, so replay skips inserts of already registered users.
+ *
+ * <p>On startup the newest snapshot and the logs after it are read through their memory mappings.
+ * Records are decoded in parallel, a batch at a time, while the previous batch is applied to the store in
+ * journal order, so registration order and page cursors are preserved. The time taken is published as
+ * {@code users.journal.load}.
+ *
+ * <p>Record layout, in both logs and snapshots:
+ * <ul>
+ * <li>insert: {@code [byte 1][long id][long creditCardNumber][long dateOfBirthEpochDay][username][password][email]}</li>
+ * <li>card update: {@code [byte 2][long creditCardNumber][email]}</li>
+ * </ul>
+ * Strings are {@code [short length][UTF-8]}, with length -1 for null. Absent ids, cards and dates use the
+ * {@link User} sentinels and {@link Long#MIN_VALUE}.
+ */
+public class JournaledUserRepository implements UserRepository, Closeable {
+
+    private static final byte INSERT = 1;
+    private static final byte CARD_UPDATE = 2;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int LOAD_BATCH_SIZE = 16 * 1024;
+    private static final String LOG = "log-";
+    private static final String SNAPSHOT = "snapshot-";
+    private static final String TMP = ".tmp";
+
+    private final UserRepository delegate;
+    private final Path directory;
+    private final int regionSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final int fsyncGroupSize;
+    private final Duration fsyncInterval;
+    private final long snapshotMinRecords;
+    private final ScheduledExecutorService snapshotter;
+    private final Timer snapshotTimer;
+    private final Counter snapshotFailures;
+
+    // Held across each store write and its journal append, so the log is in the store's order
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final AtomicLong recordsSinceSnapshot = new AtomicLong();
+    private MappedJournal log;
+    private long generation;
+    private final long loadMillis;
+    private final long loadedRecords;
+
+    public JournaledUserRepository(UserRepository delegate, Path directory, int regionSize, FsyncPolicy fsyncPolicy,
+            int fsyncGroupSize, Duration fsyncInterval, int loadParallelism, Duration snapshotInterval,
+            long snapshotMinRecords, MeterRegistry meterRegistry) throws IOException {
+        this.delegate = delegate;
+        this.directory = directory;
+        this.regionSize = regionSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncGroupSize = fsyncGroupSize;
+        this.fsyncInterval = fsyncInterval;
+        this.snapshotMinRecords = snapshotMinRecords;
+        Files.createDirectories(directory);
+
+        long startedAt = System.nanoTime();
+        this.loadedRecords = load(loadParallelism > 0 ? loadParallelism : Runtime.getRuntime().availableProcessors());
+        this.loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        TimeGauge.builder("users.journal.load", this, TimeUnit.MILLISECONDS, repository -> repository.loadMillis)
+            .description("Time taken to load users from the snapshot and logs on startup")
+            .register(meterRegistry);
+        Gauge.builder("users.journal.loaded", this, repository -> repository.loadedRecords)
+            .description("Snapshot and log records read on startup")
+            .register(meterRegistry);
+        Gauge.builder("users.journal.pending", recordsSinceSnapshot, AtomicLong::get)
+            .description("Log records written since the last snapshot")
+            .register(meterRegistry);
+        this.snapshotTimer = Timer.builder("users.journal.snapshot")
+            .description("Time taken to write a snapshot of all users")
+            .register(meterRegistry);
+        this.snapshotFailures = Counter.builder("users.journal.snapshot.failures")
+            .description("Scheduled snapshots that failed and will be retried")
+            .register(meterRegistry);
+
+        if (snapshotInterval != null && !snapshotInterval.isZero()) {
+            this.snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-snapshotter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = Math.max(1, snapshotInterval.toMillis());
+            snapshotter.scheduleWithFixedDelay(this::snapshotIfDue, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.snapshotter = null;
+        }
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        return delegate.findByEmail(email);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return delegate.existsByEmail(email);
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return delegate.existsByUsername(username);
+    }
+
+    @Override
+    public void insert(User user) throws IllegalStateException {
+        byte[] username = encode(user.getUsername());
+        byte[] password = encode(user.getPassword());
+        byte[] email = encode(user.getEmail());
+        long dateOfBirth = user.getDateOfBirth() == null ? NO_DATE : user.getDateOfBirth().toEpochDay();
+
+        // Journaled before it is applied, so a failed append leaves nothing in the store that a restart would lose.
+        // Writes are serialized here, so the checks hold until the insert; an insert the store still rejects is
+        // skipped again on replay.
+        writeLock.lock();
+        try {
+            if (delegate.existsByUsername(user.getUsername())) {
+                throw new DuplicateUserException(DuplicateUserException.Key.USERNAME);
+            }
+            if (delegate.existsByEmail(user.getEmail())) {
+                throw new DuplicateUserException(DuplicateUserException.Key.EMAIL);
+            }
+            log.append(insertLength(username, password, email),
+                target -> writeInsert(target, user.id(), user.creditCardNumber(), dateOfBirth, username, password, email));
+            delegate.insert(user);
+        } finally {
+            writeLock.unlock();
+        }
+        recordsSinceSnapshot.incrementAndGet();
+    }
+
+    @Override
+    public User updateCreditCardNumber(String email, Long creditCardNumber) throws IllegalStateException {
+        byte[] encodedEmail = encode(email);
+        long card = creditCardNumber == null ? User.NO_CREDIT_CARD : creditCardNumber;
+
+        User updated;
+        writeLock.lock();
+        try {
+            // Replay cannot skip an update for an unknown user, so only updates the store will accept are journaled
+            if (!delegate.existsByEmail(email)) {
+                throw new IllegalStateException("User not found");
+            }
+            log.append(1 + 8 + stringLength(encodedEmail), target -> {
+                target.put(CARD_UPDATE).putLong(card);
+                putString(target, encodedEmail);
+            });
+            updated = delegate.updateCreditCardNumber(email, creditCardNumber);
+        } finally {
+            writeLock.unlock();
+        }
+        recordsSinceSnapshot.incrementAndGet();
+        return updated;
+    }
+
+    @Override
+    public Collection<User> findAll(Optional<Boolean> hasCreditCard) {
+        return delegate.findAll(hasCreditCard);
+    }
+
+    @Override
+    public UserPage findPage(long after, int limit, Optional<Boolean> hasCreditCard) {
+        return delegate.findPage(after, limit, hasCreditCard);
+    }
+
+    @Override
+    public long count(Optional<Boolean> hasCreditCard) {
+        return delegate.count(hasCreditCard);
+    }
+
+    /**
+     * Writes a snapshot of every user and deletes the generations it replaces.
+     */
+    public void snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            long startedAt = System.nanoTime();
+            long snapshotGeneration;
+            MappedJournal previous;
+            writeLock.lock();
+            try {
+                snapshotGeneration = generation + 1;
+                previous = log;
+                log = openJournal(directory.resolve(LOG + snapshotGeneration));
+                generation = snapshotGeneration;
+                recordsSinceSnapshot.set(0);
+            } finally {
+                writeLock.unlock();
+            }
+            previous.close();
+
+            Path tmp = directory.resolve(SNAPSHOT + snapshotGeneration + TMP);
+            Files.deleteIfExists(tmp);
+            try (MappedJournal snapshot = openSnapshot(tmp)) {
+                for (User user : delegate.findAll()) {
+                    byte[] username = encode(user.getUsername());
+                    byte[] password = encode(user.getPassword());
+                    byte[] email = encode(user.getEmail());
+                    long dateOfBirth = user.getDateOfBirth() == null ? NO_DATE : user.getDateOfBirth().toEpochDay();
+                    snapshot.append(insertLength(username, password, email),
+                        target -> writeInsert(target, user.id(), user.creditCardNumber(), dateOfBirth, username, password, email));
+                }
+            }
+            Files.move(tmp, directory.resolve(SNAPSHOT + snapshotGeneration), StandardCopyOption.ATOMIC_MOVE);
+            deleteGenerationsBefore(snapshotGeneration);
+            snapshotTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    public long loadMillis() {
+        return loadMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        writeLock.lock();
+        try {
+            log.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void snapshotIfDue() {
+        if (recordsSinceSnapshot.get() < snapshotMinRecords) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            // Journaling carries on in the current log and the next run retries; thrown out of here it would cancel the schedule
+            snapshotFailures.increment();
+        }
+    }
+
+    private long load(int parallelism) throws IOException {
+        TreeMap<Long, Path> snapshots = new TreeMap<>();
+        TreeMap<Long, Path> logs = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP)) {
+                    Files.delete(file); // snapshot interrupted before it was renamed into place
+                } else if (name.startsWith(SNAPSHOT)) {
+                    snapshots.put(Long.parseLong(name.substring(SNAPSHOT.length())), file);
+                } else if (name.startsWith(LOG)) {
+                    logs.put(Long.parseLong(name.substring(LOG.length())), file);
+                }
+            }
+        }
+
+        long snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.lastKey();
+        ExecutorService decoders = Executors.newFixedThreadPool(parallelism, new LoaderThreadFactory());
+        try {
+            Loader loader = new Loader(decoders, parallelism);
+            if (snapshotGeneration > 0) {
+                try (MappedJournal snapshot = openSnapshot(snapshots.get(snapshotGeneration))) {
+                    loader.load(snapshot);
+                }
+            }
+            long replayed = loader.records;
+            for (var entry : logs.tailMap(snapshotGeneration, true).entrySet()) {
+                generation = entry.getKey();
+                MappedJournal journal = openJournal(entry.getValue());
+                loader.load(journal);
+                if (entry.getKey().equals(logs.lastKey())) {
+                    log = journal; // keep appending to the newest log
+                } else {
+                    journal.close();
+                }
+            }
+            recordsSinceSnapshot.set(loader.records - replayed);
+            if (log == null) {
+                generation = Math.max(snapshotGeneration, 1);
+                log = openJournal(directory.resolve(LOG + generation));
+            }
+            deleteGenerationsBefore(snapshotGeneration);
+            return loader.records;
+        } finally {
+            decoders.shutdown();
+        }
+    }
+
+    private void deleteGenerationsBefore(long keep) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP)) continue;
+                String prefix = name.startsWith(LOG) ? LOG : name.startsWith(SNAPSHOT) ? SNAPSHOT : null;
+                if (prefix != null && Long.parseLong(name.substring(prefix.length())) < keep) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private MappedJournal openJournal(Path path) throws IOException {
+        return new MappedJournal(path, regionSize, fsyncPolicy, fsyncGroupSize, fsyncInterval);
+    }
+
+    // Snapshots are forced once, when closed, before they are renamed into place
+    private MappedJournal openSnapshot(Path path) throws IOException {
+        return new MappedJournal(path, regionSize, FsyncPolicy.GROUPED, Integer.MAX_VALUE, Duration.ZERO);
+    }
+
+    private void apply(Entry entry) {
+        if (entry.type() == INSERT) {
+            try {
+                delegate.insert(entry.user());
+            } catch (IllegalStateException e) {
+                // already restored from the snapshot
+            }
+        } else {
+            delegate.updateCreditCardNumber(entry.user().getEmail(), entry.user().getCreditCardNumber());
+        }
+    }
+
+    /** A decoded record; card updates carry a {@link User} with only the email and card set. */
+    private record Entry(byte type, User user) {}
+
+    /**
+     * Reads journals record by record, decoding each full batch on the decoder pool while the previous one is applied.
+     */
+    private final class Loader {
+        private final ExecutorService decoders;
+        private final int parallelism;
+        private ByteBuffer[] batch = new ByteBuffer[LOAD_BATCH_SIZE];
+        private int batchSize;
+        private CompletableFuture<Entry[]> pending;
+        private long records;
+
+        Loader(ExecutorService decoders, int parallelism) {
+            this.decoders = decoders;
+            this.parallelism = parallelism;
+        }
+
+        void load(MappedJournal journal) {
+            journal.forEach((offset, payload) -> {
+                batch[batchSize++] = payload;
+                records++;
+                if (batchSize == LOAD_BATCH_SIZE) {
+                    submit();
+                }
+            });
+            submit();
+            applyPending();
+        }
+
+        private void submit() {
+            if (batchSize == 0) return;
+            ByteBuffer[] payloads = batch;
+            int size = batchSize;
+            Entry[] decoded = new Entry[size];
+            int partitions = Math.min(parallelism, size);
+            CompletableFuture<?>[] parts = new CompletableFuture<?>[partitions];
+            for (int p = 0; p < partitions; p++) {
+                int from = (int) ((long) size * p / partitions);
+                int to = (int) ((long) size * (p + 1) / partitions);
+                parts[p] = CompletableFuture.runAsync(() -> {
+                    for (int i = from; i < to; i++) {
+                        decoded[i] = decode(payloads[i]);
+                    }
+                }, decoders);
+            }
+            batch = new ByteBuffer[LOAD_BATCH_SIZE];
+            batchSize = 0;
+
+            applyPending();
+            pending = CompletableFuture.allOf(parts).thenApply(done -> decoded);
+        }
+
+        private void applyPending() {
+            if (pending == null) return;
+            for (Entry entry : pending.join()) {
+                apply(entry);
+            }
+            pending = null;
+        }
+    }
+
+    private static Entry decode(ByteBuffer record) {
+        byte type = record.get();
+        if (type == CARD_UPDATE) {
+            long card = record.getLong();
+            return new Entry(type, User.of(User.NO_ID, null, null, getString(record), null, card));
+        }
+        if (type != INSERT) {
+            throw new IllegalStateException("Unknown user journal record type " + type);
+        }
+        long id = record.getLong();
+        long card = record.getLong();
+        long dateOfBirth = record.getLong();
+        String username = getString(record);
+        String password = getString(record);
+        String email = getString(record);
+        return new Entry(type, User.of(id, username, password, email, dateOfBirth == NO_DATE ? null : LocalDate.ofEpochDay(dateOfBirth), card));
+    }
+
+    private static int insertLength(byte[] username, byte[] password, byte[] email) {
+        return 1 + 8 + 8 + 8 + stringLength(username) + stringLength(password) + stringLength(email);
+    }
+
+    private static void writeInsert(ByteBuffer target, long id, long card, long dateOfBirth,
+            byte[] username, byte[] password, byte[] email) {
+        target.put(INSERT).putLong(id).putLong(card).putLong(dateOfBirth);
+        putString(target, username);
+        putString(target, password);
+        putString(target, email);
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) return null;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Field too long");
+        }
+        return bytes;
+    }
+
+    private static int stringLength(byte[] value) {
+        return 2 + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer target, byte[] value) {
+        if (value == null) {
+            target.putShort((short) -1);
+        } else {
+            target.putShort((short) value.length).put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class LoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "user-journal-loader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * User store that keeps users outside the Java heap, for subscriber counts where millions of
+ * {@link User} object graphs would mean multi-GB heaps and long GC pauses.
+ *
+ * <p>Each user is a fixed 48 byte record in direct memory, addressed by its slot (registration order):
+ * {@code [long id][long creditCardNumber][long usernameRef][long passwordRef][long emailRef][long dateOfBirthEpochDay]}.
+ * The variable-length fields are appended once to an off-heap string arena and referenced by offset.
+ * Emails and usernames are found through open-addressing hash indexes, also off-heap, that store only
+ * {@code [int hash][int slot + 1]} and compare candidate keys against the arena bytes without decoding them.
+ * Card holders are tracked in a bit set over slots. Users are decoded into {@link User} objects only when read.
+ *
+ * <p>A read/write lock guards the store: lookups share it, inserts and updates take it exclusively.
+ * Selected with {@code streaming.users.store=off-heap}.
+ */
+public class OffHeapUserRepository implements UserRepository {
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 1 << 16;
+
+    private static final int ID = 0;
+    private static final int CREDIT_CARD = 8;
+    private static final int USERNAME = 16;
+    private static final int PASSWORD = 24;
+    private static final int EMAIL = 32;
+    private static final int DATE_OF_BIRTH = 40;
+    private static final int RECORD_BYTES = 48;
+
+    private static final int RECORDS_PER_CHUNK_SHIFT = 16;
+    private static final int RECORDS_PER_CHUNK = 1 << RECORDS_PER_CHUNK_SHIFT;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ByteBuffer> recordChunks = new ArrayList<>();
+    private final StringArena strings = new StringArena();
+    private final HashIndex emailIndex;
+    private final HashIndex usernameIndex;
+    private final BitSet creditCardHolders = new BitSet();
+    private volatile int size;
+    private int creditCardHolderCount;
+
+    public OffHeapUserRepository() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public OffHeapUserRepository(int initialCapacity) {
+        this.emailIndex = new HashIndex(EMAIL, initialCapacity);
+        this.usernameIndex = new HashIndex(USERNAME, initialCapacity);
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        if (email == null) return null;
+        byte[] key = email.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            int slot = emailIndex.find(key);
+            // The index matched the stored bytes, so the caller's string can stand in for the stored email
+            return slot < 0 ? null : decode(slot, email);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return email != null && exists(emailIndex, email);
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return username != null && exists(usernameIndex, username);
+    }
+
+    private boolean exists(HashIndex index, String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        lock.readLock().lock();
+        try {
+            return index.find(bytes) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void insert(User user) throws IllegalStateException {
+        byte[] username = user.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] email = user.getEmail().getBytes(StandardCharsets.UTF_8);
+        byte[] password = user.getPassword() == null ? null : user.getPassword().getBytes(StandardCharsets.UTF_8);
+
+        lock.writeLock().lock();
+        try {
+            if (usernameIndex.find(username) >= 0) {
+                throw new DuplicateUserException(DuplicateUserException.Key.USERNAME);
+            }
+            if (emailIndex.find(email) >= 0) {
+                throw new DuplicateUserException(DuplicateUserException.Key.EMAIL);
+            }
+
+            int slot = size;
+            if (slot == Integer.MAX_VALUE) {
+                throw new IllegalStateException("User store is full");
+            }
+            // Grow both indexes before writing anything, so a full index cannot leave the other one pointing at a half-inserted slot
+            usernameIndex.reserve();
+            emailIndex.reserve();
+            if (recordChunks.size() <= slot >>> RECORDS_PER_CHUNK_SHIFT) {
+                recordChunks.add(ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_BYTES));
+            }
+            ByteBuffer chunk = chunk(slot);
+            int base = offset(slot);
+            chunk.putLong(base + ID, user.id());
+            chunk.putLong(base + CREDIT_CARD, user.creditCardNumber());
+            chunk.putLong(base + USERNAME, strings.append(username));
+            chunk.putLong(base + PASSWORD, password == null ? StringArena.NULL : strings.append(password));
+            chunk.putLong(base + EMAIL, strings.append(email));
+            chunk.putLong(base + DATE_OF_BIRTH, user.getDateOfBirth() == null ? NO_DATE : user.getDateOfBirth().toEpochDay());
+
+            usernameIndex.put(hash(username), slot);
+            emailIndex.put(hash(email), slot);
+            if (user.hasCreditCard()) {
+                creditCardHolders.set(slot);
+                creditCardHolderCount++;
+            }
+            size = slot + 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public User updateCreditCardNumber(String email, Long creditCardNumber) throws IllegalStateException {
+        byte[] key = email == null ? null : email.getBytes(StandardCharsets.UTF_8);
+        lock.writeLock().lock();
+        try {
+            int slot = key == null ? -1 : emailIndex.find(key);
+            if (slot < 0) {
+                throw new IllegalStateException("User not found");
+            }
+            long card = creditCardNumber == null ? User.NO_CREDIT_CARD : creditCardNumber;
+            chunk(slot).putLong(offset(slot) + CREDIT_CARD, card);
+
+            boolean wasHolder = creditCardHolders.get(slot);
+            boolean isHolder = card != User.NO_CREDIT_CARD;
+            if (wasHolder != isHolder) {
+                creditCardHolders.set(slot, isHolder);
+                creditCardHolderCount += isHolder ? 1 : -1;
+            }
+            return decode(slot, email);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<User> findAll(Optional<Boolean> hasCreditCard) {
+        return new AbstractCollection<User>() {
+            @Override
+            public Iterator<User> iterator() {
+                return new SlotIterator(hasCreditCard, 0);
+            }
+
+            @Override
+            public int size() {
+                return (int) Math.min(Integer.MAX_VALUE, count(hasCreditCard));
+            }
+        };
+    }
+
+    @Override
+    public UserPage findPage(long after, int limit, Optional<Boolean> hasCreditCard) {
+        List<User> users = new ArrayList<>(Math.min(limit, 256));
+        // Cursors are slot + 1, so the slot after cursor n is n
+        SlotIterator slots = new SlotIterator(hasCreditCard, (int) Math.min(after, Integer.MAX_VALUE));
+        while (users.size() < limit && slots.hasNext()) {
+            users.add(slots.next());
+        }
+        return new UserPage(users, slots.hasNext() ? (long) slots.lastSlot + 1 : null);
+    }
+
+    @Override
+    public long count(Optional<Boolean> hasCreditCard) {
+        lock.readLock().lock();
+        try {
+            if (!hasCreditCard.isPresent()) return size;
+            return hasCreditCard.get() ? creditCardHolderCount : size - creditCardHolderCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private User decode(int slot, String email) {
+        ByteBuffer chunk = chunk(slot);
+        int base = offset(slot);
+        long dateOfBirth = chunk.getLong(base + DATE_OF_BIRTH);
+        return User.of(
+            chunk.getLong(base + ID),
+            strings.read(chunk.getLong(base + USERNAME)),
+            strings.read(chunk.getLong(base + PASSWORD)),
+            email != null ? email : strings.read(chunk.getLong(base + EMAIL)),
+            dateOfBirth == NO_DATE ? null : LocalDate.ofEpochDay(dateOfBirth),
+            chunk.getLong(base + CREDIT_CARD));
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return recordChunks.get(slot >>> RECORDS_PER_CHUNK_SHIFT);
+    }
+
+    private static int offset(int slot) {
+        return (slot & (RECORDS_PER_CHUNK - 1)) * RECORD_BYTES;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 1;
+        for (byte b : key) {
+            h = 31 * h + b;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /**
+     * Walks the slots matching a credit card filter in registration order, decoding one user per step
+     * under the read lock. Weakly consistent: users inserted during iteration may or may not be seen.
+     */
+    private final class SlotIterator implements Iterator<User> {
+        private final Optional<Boolean> hasCreditCard;
+        private int nextSlot;
+        private int lastSlot = -1;
+
+        SlotIterator(Optional<Boolean> hasCreditCard, int fromSlot) {
+            this.hasCreditCard = hasCreditCard;
+            this.nextSlot = advance(fromSlot);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextSlot >= 0;
+        }
+
+        @Override
+        public User next() {
+            if (nextSlot < 0) throw new NoSuchElementException();
+            lock.readLock().lock();
+            try {
+                User user = decode(nextSlot, null);
+                lastSlot = nextSlot;
+                nextSlot = advance(nextSlot + 1);
+                return user;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private int advance(int from) {
+            lock.readLock().lock();
+            try {
+                int slot = from;
+                if (hasCreditCard.isPresent()) {
+                    slot = hasCreditCard.get() ? creditCardHolders.nextSetBit(from) : creditCardHolders.nextClearBit(from);
+                }
+                return slot >= 0 && slot < size ? slot : -1;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Append-only UTF-8 string storage in direct memory. A reference is {@code chunk << 32 | position}
+     * of a {@code [int length][bytes]} entry; entries never straddle chunks.
+     */
+    private static final class StringArena {
+        static final long NULL = -1;
+        private static final int CHUNK_BYTES = 16 << 20;
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private ByteBuffer current;
+
+        long append(byte[] bytes) {
+            int needed = 4 + bytes.length;
+            if (needed > CHUNK_BYTES) {
+                throw new IllegalArgumentException("Field too long");
+            }
+            if (current == null || current.remaining() < needed) {
+                current = ByteBuffer.allocateDirect(CHUNK_BYTES);
+                chunks.add(current);
+            }
+            long ref = ((long) (chunks.size() - 1) << 32) | current.position();
+            current.putInt(bytes.length).put(bytes);
+            return ref;
+        }
+
+        String read(long ref) {
+            if (ref == NULL) return null;
+            ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+            int position = (int) ref;
+            byte[] bytes = new byte[chunk.getInt(position)];
+            chunk.get(position + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        boolean matches(long ref, byte[] key) {
+            ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+            int position = (int) ref;
+            return chunk.getInt(position) == key.length
+                && chunk.slice(position + 4, key.length).mismatch(ByteBuffer.wrap(key)) < 0;
+        }
+    }
+
+    /**
+     * Open-addressing (linear probing) index from a record's string field to its slot, kept in direct
+     * memory as {@code [int hash][int slot + 1]} entries. Doubles at 70% load, rehashing from the stored hashes.
+     */
+    private final class HashIndex {
+        private static final int MAX_CAPACITY = 1 << 27;
+
+        private final int field;
+        private ByteBuffer table;
+        private int mask;
+        private int entries;
+
+        HashIndex(int field, int initialCapacity) {
+            this.field = field;
+            int capacity = Integer.highestOneBit(Math.max(16, Math.min(MAX_CAPACITY, initialCapacity)) - 1) << 1;
+            this.table = ByteBuffer.allocateDirect(capacity * 8);
+            this.mask = capacity - 1;
+        }
+
+        int find(byte[] key) {
+            int hash = hash(key);
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = table.getInt(i * 8 + 4) - 1;
+                if (slot < 0) return -1;
+                if (table.getInt(i * 8) == hash && strings.matches(chunk(slot).getLong(offset(slot) + field), key)) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * Makes room for one more entry, growing the table if needed, so the following {@link #put} cannot fail.
+         */
+        void reserve() {
+            if (entries + 1 > (mask + 1) / 10 * 7) {
+                resize();
+            }
+        }
+
+        void put(int hash, int slot) {
+            reserve();
+            insert(table, mask, hash, slot);
+            entries++;
+        }
+
+        private void resize() {
+            int capacity = (mask + 1) * 2;
+            if (capacity > MAX_CAPACITY) {
+                throw new IllegalStateException("User store is full");
+            }
+            ByteBuffer resized = ByteBuffer.allocateDirect(capacity * 8);
+            for (int i = 0; i <= mask; i++) {
+                int slot = table.getInt(i * 8 + 4) - 1;
+                if (slot >= 0) {
+                    insert(resized, capacity - 1, table.getInt(i * 8), slot);
+                }
+            }
+            table = resized;
+            mask = capacity - 1;
+        }
+
+        private void insert(ByteBuffer target, int targetMask, int hash, int slot) {
+            int i = hash & targetMask;
+            while (target.getInt(i * 8 + 4) != 0) {
+                i = (i + 1) & targetMask;
+            }
+            target.putInt(i * 8, hash);
+            target.putInt(i * 8 + 4, slot + 1);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs BCrypt hashing on a dedicated, bounded pool so a burst of registrations cannot occupy
+ * every request thread. When both the pool and its queue are full, callers are rejected straight away
+ * with a {@link PasswordHashingRejectedException} instead of waiting.
+ */
+@Component
+public class PasswordHasher {
+
+    public static final int DEFAULT_COST = 10;
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor executor;
+    private final int retryAfterSeconds;
+
+    private final Timer hashTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejectedCounter;
+
+    public PasswordHasher() {
+        this(new BCryptPasswordEncoder(DEFAULT_COST), Runtime.getRuntime().availableProcessors(),
+            DEFAULT_QUEUE_CAPACITY, DEFAULT_RETRY_AFTER_SECONDS, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public PasswordHasher(
+            @Value("${streaming.registration.hashing.cost:10}") int cost,
+            @Value("${streaming.registration.hashing.parallelism:0}") int parallelism,
+            @Value("${streaming.registration.hashing.queue-capacity:256}") int queueCapacity,
+            @Value("${streaming.registration.hashing.retry-after-seconds:1}") int retryAfterSeconds,
+            MeterRegistry meterRegistry) {
+        this(new BCryptPasswordEncoder(cost),
+            parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors(),
+            queueCapacity, retryAfterSeconds, meterRegistry);
+    }
+
+    public PasswordHasher(PasswordEncoder encoder, int parallelism, int queueCapacity, int retryAfterSeconds, MeterRegistry meterRegistry) {
+        this.encoder = encoder;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.executor = new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), new HasherThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.hashTimer = Timer.builder("registration.hashing.latency")
+            .description("Time spent computing a password hash")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("registration.hashing.queue.wait")
+            .description("Time a hash request waited for a hashing thread")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("registration.hashing.rejected")
+            .description("Hash requests rejected because the queue was full")
+            .register(meterRegistry);
+        Gauge.builder("registration.hashing.queue.depth", executor, e -> e.getQueue().size())
+            .description("Hash requests waiting for a hashing thread")
+            .register(meterRegistry);
+        Gauge.builder("registration.hashing.active", executor, ThreadPoolExecutor::getActiveCount)
+            .description("Hashes currently being computed")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Hashes the password on the hashing pool and waits for the result.
+     * @throws PasswordHashingRejectedException if the hashing queue is full, or the caller is interrupted while waiting
+     */
+    public String hash(String rawPassword) throws PasswordHashingRejectedException {
+        long submittedAt = System.nanoTime();
+        Future<String> result;
+        try {
+            result = executor.submit(() -> {
+                queueWaitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return hashTimer.record(() -> encoder.encode(rawPassword));
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingRejectedException(retryAfterSeconds);
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            // Not an IllegalStateException, which registration answers with 409 as a duplicate user
+            throw new PasswordHashingRejectedException(retryAfterSeconds, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new RuntimeException("Password hashing failed", e.getCause());
+        }
+    }
+
+    public int getQueueDepth() {return executor.getQueue().size();}
+    public int getActiveCount() {return executor.getActiveCount();}
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static final class HasherThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
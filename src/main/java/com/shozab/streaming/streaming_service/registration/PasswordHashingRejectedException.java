@@ -0,0 +1,22 @@
+package com.shozab.streaming.streaming_service.registration;
+
+/**
+ * Thrown when the password hashing queue is full, or the wait for a hash was interrupted, and the registration
+ * should be retried later.
+ */
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public PasswordHashingRejectedException(int retryAfterSeconds) {
+        super("Registration is temporarily unavailable, please retry later");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public PasswordHashingRejectedException(int retryAfterSeconds, Throwable cause) {
+        this(retryAfterSeconds);
+        initCause(cause);
+    }
+
+    public int getRetryAfterSeconds() {return retryAfterSeconds;}
+}
@@ -0,0 +1,67 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking facade over {@link UserService} for the reactive stack.
+ * Registration blocks on password hashing, so it runs on a bounded scheduler; once that scheduler's
+ * queue is full, registrations fail with a {@link PasswordHashingRejectedException} carrying the configured
+ * {@code Retry-After}, as when the hashing queue itself is full, instead of queueing without limit. Reads only touch the in-memory indexes and run on the caller.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserService {
+
+    private final UserService userService;
+    private final Scheduler blockingScheduler;
+    private final int retryAfterSeconds;
+
+    public ReactiveUserService(UserService userService,
+            @Value("${streaming.reactive.blocking-threads:0}") int blockingThreads,
+            @Value("${streaming.reactive.blocking-queue-capacity:1024}") int blockingQueueCapacity,
+            @Value("${streaming.registration.hashing.retry-after-seconds:1}") int retryAfterSeconds) {
+        this.userService = userService;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.blockingScheduler = Schedulers.newBoundedElastic(
+            blockingThreads > 0 ? blockingThreads : Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+            blockingQueueCapacity, "reactive-registration");
+    }
+
+    public Mono<Void> registerUser(User user) {
+        return Mono.<Void>fromRunnable(() -> userService.registerUser(user))
+            .subscribeOn(blockingScheduler)
+            .onErrorMap(RejectedExecutionException.class, e -> new PasswordHashingRejectedException(retryAfterSeconds, e));
+    }
+
+    public Flux<User> getUsers(Optional<Boolean> hasCreditCard) {
+        return Flux.fromStream(() -> userService.streamUsers(hasCreditCard));
+    }
+
+    public Mono<UserPage> getUsersPage(Optional<Boolean> hasCreditCard, long after, int limit) {
+        return Mono.fromSupplier(() -> userService.getUsersPage(hasCreditCard, after, limit));
+    }
+
+    public Mono<Long> countUsers(Optional<Boolean> hasCreditCard) {
+        return Mono.fromSupplier(() -> userService.countUsers(hasCreditCard));
+    }
+
+    public Mono<User> findUserByEmail(String email) {
+        return Mono.fromSupplier(() -> userService.findUserByEmail(email));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        blockingScheduler.dispose();
+    }
+}
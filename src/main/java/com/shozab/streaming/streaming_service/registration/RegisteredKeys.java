@@ -0,0 +1,120 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Bloom filters over the registered emails and usernames, consulted before the user store when checking
+ * whether a registration's keys are taken. A key the filter has never seen is new without probing the store;
+ * a key it may have seen is confirmed against the store.
+ *
+ * <p>The filters are filled from the store on startup and sized for {@code expected-insertions} keys or twice
+ * the users already stored, whichever is larger. They only learn of users registered through this instance;
+ * a user inserted elsewhere, e.g. through another node of a sharded registry, is still caught by the store's
+ * atomic insert, after the password has been hashed.
+ *
+ * <p>Publishes {@code registration.bloom.checks{key,result}} ({@code absent}: store probe skipped,
+ * {@code present}: store probed), {@code registration.bloom.false.positives{key}} (probed and not taken) and
+ * {@code registration.bloom.fpp{key}}, the false positive probability expected at the current fill.
+ */
+@Component
+public class RegisteredKeys {
+
+    public static final long DEFAULT_EXPECTED_INSERTIONS = 1_000_000;
+    public static final double DEFAULT_FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final KeyFilter emails;
+    private final KeyFilter usernames;
+
+    public RegisteredKeys(UserRepository userRepository, MeterRegistry meterRegistry) {
+        this(true, DEFAULT_EXPECTED_INSERTIONS, DEFAULT_FALSE_POSITIVE_PROBABILITY, userRepository, meterRegistry);
+    }
+
+    @Autowired
+    public RegisteredKeys(
+            @Value("${streaming.registration.bloom.enabled:true}") boolean enabled,
+            @Value("${streaming.registration.bloom.expected-insertions:1000000}") long expectedInsertions,
+            @Value("${streaming.registration.bloom.fpp:0.01}") double falsePositiveProbability,
+            UserRepository userRepository, MeterRegistry meterRegistry) {
+        long capacity = Math.max(expectedInsertions, 2 * userRepository.count());
+        this.emails = new KeyFilter("email", enabled ? new BloomFilter(capacity, falsePositiveProbability) : null, meterRegistry);
+        this.usernames = new KeyFilter("username", enabled ? new BloomFilter(capacity, falsePositiveProbability) : null, meterRegistry);
+        if (enabled) {
+            for (User user : userRepository.findAll()) {
+                add(user);
+            }
+        }
+    }
+
+    /**
+     * @param store confirms whether a key the filter may have seen is really taken
+     */
+    public boolean isEmailTaken(String email, Predicate<String> store) {
+        return emails.isTaken(email, store);
+    }
+
+    public boolean isUsernameTaken(String username, Predicate<String> store) {
+        return usernames.isTaken(username, store);
+    }
+
+    public void add(User user) {
+        emails.add(user.getEmail());
+        usernames.add(user.getUsername());
+    }
+
+    private static final class KeyFilter {
+        private final BloomFilter filter;
+        private final Counter absent;
+        private final Counter present;
+        private final Counter falsePositives;
+
+        KeyFilter(String key, BloomFilter filter, MeterRegistry meterRegistry) {
+            this.filter = filter;
+            this.absent = checkCounter(key, "absent", meterRegistry);
+            this.present = checkCounter(key, "present", meterRegistry);
+            this.falsePositives = Counter.builder("registration.bloom.false.positives")
+                .description("Keys the Bloom filter reported as possibly taken that the store did not hold")
+                .tag("key", key)
+                .register(meterRegistry);
+            if (filter != null) {
+                Gauge.builder("registration.bloom.fpp", filter, BloomFilter::expectedFalsePositiveProbability)
+                    .description("False positive probability expected at the Bloom filter's current fill")
+                    .tag("key", key)
+                    .register(meterRegistry);
+            }
+        }
+
+        boolean isTaken(String value, Predicate<String> store) {
+            if (filter == null || value == null) {
+                return store.test(value);
+            }
+            if (!filter.mightContain(value)) {
+                absent.increment();
+                return false;
+            }
+            present.increment();
+            boolean taken = store.test(value);
+            if (!taken) falsePositives.increment();
+            return taken;
+        }
+
+        void add(String value) {
+            if (filter != null && value != null) filter.put(value);
+        }
+
+        private static Counter checkCounter(String key, String result, MeterRegistry meterRegistry) {
+            return Counter.builder("registration.bloom.checks")
+                .description("Registration uniqueness checks answered by the Bloom filter (absent) or sent on to the store (present)")
+                .tag("key", key)
+                .tag("result", result)
+                .register(meterRegistry);
+        }
+    }
+}
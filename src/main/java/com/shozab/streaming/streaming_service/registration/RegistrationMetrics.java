@@ -0,0 +1,121 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters for the registration and lookup paths of {@link UserService}. Meters are created up front,
+ * so recording is a clock read and an update of an existing meter.
+ * <ul>
+ * <li>{@code registration.validation{step}} - each field check and the age check</li>
+ * <li>{@code registration.uniqueness{key}} - the username and email existence checks</li>
+ * <li>{@code registration.password.encode} - hashing, including the wait for a hashing thread</li>
+ * <li>{@code registration.rejected{reason}} - registrations refused, by reason</li>
+ * <li>{@code users.lookup} - user lookup by email through the cache</li>
+ * </ul>
+ * Percentile histograms are switched on per meter with {@code management.metrics.distribution.percentiles-histogram.*}.
+ */
+public class RegistrationMetrics implements UserValidator.StepTimer {
+
+    public static final String UNDERAGE = "underage";
+    public static final String USERNAME_TAKEN = "username_taken";
+    public static final String EMAIL_TAKEN = "email_taken";
+    public static final String HASHING_REJECTED = "hashing_rejected";
+
+    private static final String[] FIELDS = {"username", "password", "email", "dateOfBirth", "creditCardNumber"};
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> validationTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejections = new ConcurrentHashMap<>();
+    private final Timer ageTimer;
+    private final Timer usernameUniquenessTimer;
+    private final Timer emailUniquenessTimer;
+    private final Timer encodeTimer;
+    private final Timer lookupTimer;
+
+    public RegistrationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (String field : FIELDS) {
+            validationTimers.put(field, validationTimer(field));
+            rejections.put("invalid_" + field, rejectionCounter("invalid_" + field));
+        }
+        for (String reason : new String[] {UNDERAGE, USERNAME_TAKEN, EMAIL_TAKEN, HASHING_REJECTED}) {
+            rejections.put(reason, rejectionCounter(reason));
+        }
+        this.ageTimer = validationTimer("age");
+        this.usernameUniquenessTimer = uniquenessTimer("username");
+        this.emailUniquenessTimer = uniquenessTimer("email");
+        this.encodeTimer = Timer.builder("registration.password.encode")
+            .description("Time to hash a registration password, including the wait for a hashing thread")
+            .register(meterRegistry);
+        this.lookupTimer = Timer.builder("users.lookup")
+            .description("Time to look a user up by email")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public long lap(String field, long startNanos) {
+        long now = System.nanoTime();
+        validationTimers.get(field).record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void recordAge(long startNanos) {
+        ageTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordUsernameUniqueness(long startNanos) {
+        usernameUniquenessTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordEmailUniqueness(long startNanos) {
+        emailUniquenessTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordEncode(long startNanos) {
+        encodeTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordLookup(long startNanos) {
+        lookupTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Counts one rejected registration per invalid field of {@code result}.
+     */
+    public void rejected(ValidationResult result) {
+        for (String field : result.getFieldErrors().keySet()) {
+            rejected("invalid_" + field);
+        }
+    }
+
+    public void rejected(String reason) {
+        rejections.computeIfAbsent(reason, this::rejectionCounter).increment();
+    }
+
+    private Timer validationTimer(String step) {
+        return Timer.builder("registration.validation")
+            .description("Time taken by one registration validation step")
+            .tag("step", step)
+            .register(meterRegistry);
+    }
+
+    private Timer uniquenessTimer(String key) {
+        return Timer.builder("registration.uniqueness")
+            .description("Time to check that a username or email is not already registered")
+            .tag("key", key)
+            .register(meterRegistry);
+    }
+
+    private Counter rejectionCounter(String reason) {
+        return Counter.builder("registration.rejected")
+            .description("Registrations refused, by reason")
+            .tag("reason", reason)
+            .register(meterRegistry);
+    }
+}
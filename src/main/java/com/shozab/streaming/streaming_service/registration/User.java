@@ -1,16 +1,47 @@
 package com.shozab.streaming.streaming_service.registration;
 
 import java.time.LocalDate;
+import java.util.Objects;
 
-public class User {
-    private Long id;
-    private String username;
-    private String password;
-    private String email;
-    private LocalDate dateOfBirth;
-    private Long creditCardNumber;
-    
-    public User(Long id, String username, String password, String email, LocalDate dateOfBirth, Long creditCardNumber) {
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable user. The id and credit card number are kept as primitives, with {@link #NO_ID} and
+ * {@link #NO_CREDIT_CARD} standing for "absent"; the boxed getters map those back to {@code null}
+ * for JSON and existing callers, while hot paths use {@link #id()}, {@link #hasCreditCard()} and
+ * {@link #creditCardNumber()}. Changes are made through the {@code with*} methods, which return a new user.
+ */
+public final class User {
+
+    public static final long NO_ID = Long.MIN_VALUE;
+    public static final long NO_CREDIT_CARD = Long.MIN_VALUE;
+
+    private final long id;
+    private final String username;
+    private final String password;
+    private final String email;
+    private final LocalDate dateOfBirth;
+    private final long creditCardNumber;
+
+    @JsonCreator
+    public User(@JsonProperty("id") Long id, @JsonProperty("username") String username,
+            @JsonProperty("password") String password, @JsonProperty("email") String email,
+            @JsonProperty("dateOfBirth") LocalDate dateOfBirth, @JsonProperty("creditCardNumber") Long creditCardNumber) {
+        this(id == null ? NO_ID : id, username, password, email, dateOfBirth,
+            toCreditCardNumber(creditCardNumber));
+    }
+
+    /**
+     * Maps an absent card to {@link #NO_CREDIT_CARD}. The sentinel itself is legal JSON, so a client sending it
+     * gets another out-of-range number, which validation rejects, instead of being read as "no card".
+     */
+    private static long toCreditCardNumber(Long creditCardNumber) {
+        if (creditCardNumber == null) return NO_CREDIT_CARD;
+        return creditCardNumber == NO_CREDIT_CARD ? NO_CREDIT_CARD + 1 : creditCardNumber;
+    }
+
+    private User(long id, String username, String password, String email, LocalDate dateOfBirth, long creditCardNumber) {
         this.id = id;
         this.username = username;
         this.password = password;
@@ -19,21 +50,45 @@ public class User {
         this.creditCardNumber = creditCardNumber;
     }
 
-    public User(User user) {
-        this.id = user.id;
-        this.username = user.username;
-        this.password = user.password;
-        this.email = user.email;
-        this.dateOfBirth = user.dateOfBirth;
-        this.creditCardNumber = user.creditCardNumber;
+    /**
+     * Builds a user from primitive fields without boxing; pass {@link #NO_ID} / {@link #NO_CREDIT_CARD} for absent values.
+     */
+    public static User of(long id, String username, String password, String email, LocalDate dateOfBirth, long creditCardNumber) {
+        return new User(id, username, password, email, dateOfBirth, creditCardNumber);
     }
 
-    public User() {}
-
-    public Long getId() {return id;}
+    public Long getId() {return id == NO_ID ? null : id;}
     public String getUsername() {return username;}
     public String getPassword() {return password;}
     public String getEmail() {return email;}
     public LocalDate getDateOfBirth() {return dateOfBirth;}
-    public Long getCreditCardNumber() {return creditCardNumber;}
+    public Long getCreditCardNumber() {return hasCreditCard() ? creditCardNumber : null;}
+
+    public long id() {return id;}
+    public boolean hasCreditCard() {return creditCardNumber != NO_CREDIT_CARD;}
+    /** The card number, or {@link #NO_CREDIT_CARD}. */
+    public long creditCardNumber() {return creditCardNumber;}
+
+    public User withPassword(String password) {
+        return new User(id, username, password, email, dateOfBirth, creditCardNumber);
+    }
+
+    public User withCreditCardNumber(long creditCardNumber) {
+        return new User(id, username, password, email, dateOfBirth, creditCardNumber);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof User)) return false;
+        User other = (User) o;
+        return id == other.id && creditCardNumber == other.creditCardNumber
+            && Objects.equals(username, other.username) && Objects.equals(password, other.password)
+            && Objects.equals(email, other.email) && Objects.equals(dateOfBirth, other.dateOfBirth);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, username, email, dateOfBirth, creditCardNumber);
+    }
 }
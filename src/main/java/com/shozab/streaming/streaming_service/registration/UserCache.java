@@ -0,0 +1,64 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Read-through cache of user snapshots keyed by email, bounded by size (W-TinyLFU eviction) and by
+ * time since load. Stored users are never mutated, only replaced, so cached instances are handed out
+ * as they are. Callers invalidate an email after every write to it.
+ * Hits, misses and evictions are published as the {@code cache.*} meters tagged {@code cache=users}.
+ */
+@Component
+public class UserCache {
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 100_000;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private final Cache<String, User> cache;
+
+    public UserCache() {
+        this(DEFAULT_MAXIMUM_SIZE, DEFAULT_TTL, new SimpleMeterRegistry());
+    }
+
+    @Autowired
+    public UserCache(
+            @Value("${streaming.users.cache.maximum-size:100000}") long maximumSize,
+            @Value("${streaming.users.cache.ttl:10m}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "users");
+    }
+
+    /**
+     * Returns the cached user, loading it with {@code loader} on a miss. Users that are not found are not cached.
+     */
+    public User get(String email, Function<String, User> loader) {
+        if (email == null) return null;
+        return cache.get(email, loader);
+    }
+
+    public void invalidate(String email) {
+        if (email != null) cache.invalidate(email);
+    }
+
+    public long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+}
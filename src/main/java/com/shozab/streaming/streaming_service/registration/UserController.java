@@ -1,16 +1,34 @@
 package com.shozab.streaming.streaming_service.registration;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.shozab.streaming.streaming_service.bulk.BulkRequestProcessor;
+import com.shozab.streaming.streaming_service.codec.BinaryMediaTypes;
+import com.shozab.streaming.streaming_service.throttle.RequestThrottle;
+import com.shozab.streaming.streaming_service.throttle.RequestThrottledException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.ValidationException;
 
 import org.springframework.web.bind.annotation.PostMapping;
@@ -19,43 +37,179 @@ import org.springframework.web.bind.annotation.RequestBody;
 
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping(path = "/users")
 public class UserController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter ndjsonWriter;
+    private final BulkRequestProcessor bulkRequestProcessor;
+    private final RequestThrottle requestThrottle;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper, BulkRequestProcessor bulkRequestProcessor,
+            RequestThrottle requestThrottle) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.bulkRequestProcessor = bulkRequestProcessor;
+        this.requestThrottle = requestThrottle;
+        this.ndjsonWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
     }
 
     @PostMapping("/register")
     public ResponseEntity<String> registerUser(@RequestBody User user) {
         try {
             userService.registerUser(user);
-            return ResponseEntity.status(HttpStatus.CREATED).body("User registered successfully"); // 201
-        } catch (IllegalArgumentException e) {
+            return registered();
+        } catch (RuntimeException e) {
+            return registrationRejected(e);
+        }
+    }
+
+    static ResponseEntity<String> registered() {
+        return ResponseEntity.status(HttpStatus.CREATED).body("User registered successfully"); // 201
+    }
+
+    /**
+     * Maps a registration failure to its response; shared with the reactive handler so both stacks answer alike.
+     */
+    static ResponseEntity<String> registrationRejected(RuntimeException e) {
+        if (e instanceof RequestThrottledException throttled) {
+            return ResponseEntity.status(throttled.getStatus()) // 429 Too Many Requests
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(throttled.getRetryAfterSeconds()))
+                .body(e.getMessage());
+        } else if (e instanceof IllegalArgumentException) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage()); // 400
-        } catch (ValidationException e) {
+        } else if (e instanceof ValidationException) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(e.getMessage()); // 403
-        } catch (IllegalStateException e) {
+        } else if (e instanceof IllegalStateException) {
             return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage()); // 409
+        } else if (e instanceof PasswordHashingRejectedException rejected) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE) // 503
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(rejected.getRetryAfterSeconds()))
+                .body(e.getMessage());
         }
+        throw e;
+    }
+
+    /**
+     * Registers every user in a JSON array or NDJSON body, streaming one result per user back as NDJSON
+     * in input order. Each result carries the status and message {@code POST /users/register} would give,
+     * and each user is charged to the client's rate limit like a single registration.
+     */
+    @PostMapping(path = "/register/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> registerUsers(InputStream body, HttpServletRequest request) {
+        String clientAddress = request.getRemoteAddr();
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(bulkRequestProcessor.process(body, User.class, user -> {
+                try {
+                    requestThrottle.checkClient(RequestThrottle.Route.REGISTRATION, clientAddress);
+                } catch (RequestThrottledException e) {
+                    return registrationRejected(e);
+                }
+                return registerUser(user);
+            }));
     }
     
-    @GetMapping
-	public ResponseEntity<List<User>> getUsers(@RequestParam Optional<String> hasCreditCard) {
-		if (hasCreditCard.isPresent()) {
-            String param = hasCreditCard.get().trim().toLowerCase();
-            
-            switch (param) {
-                case "yes":
-                    return ResponseEntity.ok(userService.getUsers(Optional.of(true)));
-                case "no":
-                    return ResponseEntity.ok(userService.getUsers(Optional.of(false)));
-                default:
-                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Collections.emptyList());
-            }
+    /**
+     * Lists users as a JSON array, or a CBOR or Smile one when the {@code Accept} header asks for it.
+     * With {@code limit} and/or {@code after} only one page is returned, and the cursor for the next page,
+     * if any, is sent in the {@value #NEXT_CURSOR_HEADER} header.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, BinaryMediaTypes.APPLICATION_CBOR_VALUE,
+            BinaryMediaTypes.APPLICATION_SMILE_VALUE})
+	public ResponseEntity<List<User>> getUsers(@RequestParam Optional<String> hasCreditCard,
+            @RequestParam Optional<Integer> limit, @RequestParam Optional<Long> after) {
+        Optional<Boolean> creditCardFilter;
+        try {
+            creditCardFilter = parseCreditCardFilter(hasCreditCard);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Collections.emptyList());
+        }
+
+        if (limit.isEmpty() && after.isEmpty()) {
+            return ResponseEntity.ok(userService.getUsers(creditCardFilter));
+        }
+        if (!isPageValid(limit, after)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Collections.emptyList());
         }
-        return ResponseEntity.ok(userService.getUsers(Optional.empty()));
+
+        UserPage page = userService.getUsersPage(creditCardFilter, after.orElse(0L), limit.orElse(MAX_PAGE_SIZE));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(page.getUsers());
 	}
-}
\ No newline at end of file
+
+    /**
+     * Streams users as newline-delimited JSON, writing each one to the response as it is read from the store,
+     * so memory use does not grow with the number of users. Accepts the same parameters as {@link #getUsers}.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers(@RequestParam Optional<String> hasCreditCard,
+            @RequestParam Optional<Integer> limit, @RequestParam Optional<Long> after) {
+        Optional<Boolean> creditCardFilter;
+        try {
+            creditCardFilter = parseCreditCardFilter(hasCreditCard);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        if ((limit.isPresent() || after.isPresent()) && !isPageValid(limit, after)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON);
+        if (limit.isEmpty() && after.isEmpty()) {
+            return response.body(out -> writeNdjson(out, userService.streamUsers(creditCardFilter).iterator()));
+        }
+
+        UserPage page = userService.getUsersPage(creditCardFilter, after.orElse(0L), limit.orElse(MAX_PAGE_SIZE));
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+        }
+        return response.body(out -> writeNdjson(out, page.getUsers().iterator()));
+    }
+
+    @GetMapping("/count")
+    public ResponseEntity<Long> countUsers(@RequestParam Optional<String> hasCreditCard) {
+        try {
+            return ResponseEntity.ok(userService.countUsers(parseCreditCardFilter(hasCreditCard)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    private void writeNdjson(OutputStream out, Iterator<User> users) throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            while (users.hasNext()) {
+                ndjsonWriter.writeValue(generator, users.next());
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    static Optional<Boolean> parseCreditCardFilter(Optional<String> hasCreditCard) throws IllegalArgumentException {
+        if (hasCreditCard.isEmpty()) return Optional.empty();
+        String param = hasCreditCard.get().trim().toLowerCase();
+
+        switch (param) {
+            case "yes":
+                return Optional.of(true);
+            case "no":
+                return Optional.of(false);
+            default:
+                throw new IllegalArgumentException("Invalid hasCreditCard parameter");
+        }
+    }
+
+    public static boolean isPageValid(Optional<Integer> limit, Optional<Long> after) {
+        return limit.map(l -> l > 0 && l <= MAX_PAGE_SIZE).orElse(true) && after.map(a -> a >= 0).orElse(true);
+    }
+}
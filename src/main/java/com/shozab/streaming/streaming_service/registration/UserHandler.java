@@ -0,0 +1,132 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.Collections;
+import java.util.Optional;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+
+import com.shozab.streaming.streaming_service.bulk.BulkResult;
+import com.shozab.streaming.streaming_service.bulk.ReactiveBulkProcessor;
+import com.shozab.streaming.streaming_service.codec.BinaryMediaTypes;
+import com.shozab.streaming.streaming_service.throttle.RequestThrottle;
+import com.shozab.streaming.streaming_service.throttle.ThrottleWebFilter;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * WebFlux handlers for {@code /users}, answering with the same statuses, bodies and headers as {@link UserController}.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class UserHandler {
+
+    private final ReactiveUserService userService;
+    private final ReactiveBulkProcessor bulkProcessor;
+    private final RequestThrottle requestThrottle;
+
+    public UserHandler(ReactiveUserService userService, ReactiveBulkProcessor bulkProcessor, RequestThrottle requestThrottle) {
+        this.userService = userService;
+        this.bulkProcessor = bulkProcessor;
+        this.requestThrottle = requestThrottle;
+    }
+
+    public Mono<ServerResponse> registerUser(ServerRequest request) {
+        return request.bodyToMono(User.class)
+            .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Request body is missing")))
+            .flatMap(this::register)
+            .flatMap(UserHandler::toServerResponse);
+    }
+
+    public Mono<ServerResponse> registerUsers(ServerRequest request) {
+        String clientAddress = ThrottleWebFilter.clientAddress(request.exchange().getRequest());
+        return ServerResponse.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(bulkProcessor.process(request.bodyToFlux(User.class), user -> Mono.fromRunnable(
+                    () -> requestThrottle.checkClient(RequestThrottle.Route.REGISTRATION, clientAddress))
+                .then(Mono.defer(() -> register(user)))
+                .onErrorResume(RuntimeException.class, e -> Mono.fromSupplier(() -> UserController.registrationRejected(e)))),
+                BulkResult.class);
+    }
+
+    /**
+     * Lists users as a JSON array, streamed from the store, or one page of them with the next cursor
+     * in the {@value UserController#NEXT_CURSOR_HEADER} header. CBOR and Smile are negotiated from the
+     * {@code Accept} header like on the servlet stack.
+     */
+    public Mono<ServerResponse> getUsers(ServerRequest request) {
+        return listUsers(request, BinaryMediaTypes.negotiate(request.headers().accept()));
+    }
+
+    public Mono<ServerResponse> streamUsers(ServerRequest request) {
+        return listUsers(request, MediaType.APPLICATION_NDJSON);
+    }
+
+    public Mono<ServerResponse> countUsers(ServerRequest request) {
+        Optional<Boolean> creditCardFilter;
+        try {
+            creditCardFilter = UserController.parseCreditCardFilter(request.queryParam("hasCreditCard"));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().build();
+        }
+        return userService.countUsers(creditCardFilter)
+            .flatMap(count -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(count));
+    }
+
+    private Mono<ServerResponse> listUsers(ServerRequest request, MediaType mediaType) {
+        Optional<Boolean> creditCardFilter;
+        Optional<Integer> limit;
+        Optional<Long> after;
+        try {
+            creditCardFilter = UserController.parseCreditCardFilter(request.queryParam("hasCreditCard"));
+            limit = request.queryParam("limit").map(Integer::valueOf);
+            after = request.queryParam("after").map(Long::valueOf);
+        } catch (IllegalArgumentException e) {
+            return badList(mediaType);
+        }
+
+        if (limit.isEmpty() && after.isEmpty()) {
+            if (BinaryMediaTypes.isBinary(mediaType)) {
+                // Jackson's CBOR encoder cannot write a stream of values, so binary lists are written as one array
+                return userService.getUsers(creditCardFilter).collectList()
+                    .flatMap(users -> ServerResponse.ok().contentType(mediaType).bodyValue(users));
+            }
+            return ServerResponse.ok().contentType(mediaType).body(userService.getUsers(creditCardFilter), User.class);
+        }
+        if (!UserController.isPageValid(limit, after)) {
+            return badList(mediaType);
+        }
+        return userService.getUsersPage(creditCardFilter, after.orElse(0L), limit.orElse(UserController.MAX_PAGE_SIZE))
+            .flatMap(page -> {
+                ServerResponse.BodyBuilder response = ServerResponse.ok().contentType(mediaType);
+                if (page.getNextCursor() != null) {
+                    response.header(UserController.NEXT_CURSOR_HEADER, page.getNextCursor().toString());
+                }
+                return response.bodyValue(page.getUsers());
+            });
+    }
+
+    private static Mono<ServerResponse> badList(MediaType mediaType) {
+        if (MediaType.APPLICATION_NDJSON.equals(mediaType)) {
+            return ServerResponse.badRequest().build();
+        }
+        return ServerResponse.badRequest().contentType(mediaType).bodyValue(Collections.emptyList());
+    }
+
+    private Mono<ResponseEntity<String>> register(User user) {
+        return userService.registerUser(user)
+            .then(Mono.fromSupplier(UserController::registered))
+            .onErrorResume(RuntimeException.class, e -> Mono.fromSupplier(() -> UserController.registrationRejected(e)));
+    }
+
+    private static Mono<ServerResponse> toServerResponse(ResponseEntity<String> response) {
+        return ServerResponse.status(response.getStatusCode())
+            .headers(headers -> headers.addAll(response.getHeaders()))
+            .bodyValue(response.getBody());
+    }
+}
@@ -0,0 +1,20 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.List;
+
+/**
+ * One page of users in registration order. {@code nextCursor} is passed back as {@code after}
+ * to fetch the following page and is null on the last page.
+ */
+public class UserPage {
+    private final List<User> users;
+    private final Long nextCursor;
+
+    public UserPage(List<User> users, Long nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<User> getUsers() {return users;}
+    public Long getNextCursor() {return nextCursor;}
+}
@@ -0,0 +1,54 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Storage for registered users, keyed by email.
+ * Implementations must be safe for concurrent use by request threads.
+ * Methods taking {@code hasCreditCard} restrict the result to users with (true) or without (false)
+ * a credit card on file, or return all users when it is empty.
+ */
+public interface UserRepository {
+
+    User findByEmail(String email);
+
+    boolean existsByEmail(String email);
+
+    boolean existsByUsername(String username);
+
+    /**
+     * Atomically checks that neither the email nor the username is taken and stores the user.
+     * @throws DuplicateUserException if the username or email is already registered
+     */
+    void insert(User user) throws IllegalStateException;
+
+    /**
+     * Replaces the credit card on file for the user, moving them between the card holder partitions if needed.
+     * @return the updated user
+     * @throws IllegalStateException if no user is registered with the email
+     */
+    User updateCreditCardNumber(String email, Long creditCardNumber) throws IllegalStateException;
+
+    /**
+     * Live view of the matching users in registration order, for iterating without copying.
+     * Iteration is weakly consistent.
+     */
+    Collection<User> findAll(Optional<Boolean> hasCreditCard);
+
+    default Collection<User> findAll() {
+        return findAll(Optional.empty());
+    }
+
+    /**
+     * Up to {@code limit} matching users registered after the user at cursor {@code after}.
+     * Cursor 0 starts from the first user.
+     */
+    UserPage findPage(long after, int limit, Optional<Boolean> hasCreditCard);
+
+    long count(Optional<Boolean> hasCreditCard);
+
+    default long count() {
+        return count(Optional.empty());
+    }
+}
@@ -0,0 +1,74 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import com.shozab.streaming.streaming_service.cluster.ConsistentHashRing;
+import com.shozab.streaming.streaming_service.cluster.LocalShard;
+import com.shozab.streaming.streaming_service.cluster.LocalShardTransport;
+import com.shozab.streaming.streaming_service.cluster.ShardedUserRepository;
+import com.shozab.streaming.streaming_service.storage.FsyncPolicy;
+import com.shozab.streaming.streaming_service.storage.MappedJournal;
+
+/**
+ * Picks the user store from {@code streaming.users.store} ({@code in-memory} or {@code off-heap}),
+ * split into {@code streaming.users.shards} in-process shards by consistent hash of email when more than one,
+ * and, when {@code streaming.users.journal.enabled} is true, makes it durable with a {@link JournaledUserRepository}.
+ */
+@Configuration
+public class UserRepositoryConfiguration {
+
+    @Bean
+    public UserRepository userRepository(
+            @Value("${streaming.users.store:in-memory}") String store,
+            @Value("${streaming.users.off-heap.initial-capacity:" + OffHeapUserRepository.DEFAULT_INITIAL_CAPACITY + "}") int initialCapacity,
+            @Value("${streaming.users.shards:1}") int shards,
+            @Value("${streaming.users.journal.enabled:false}") boolean journalEnabled,
+            @Value("${streaming.users.journal.directory:data/users}") Path directory,
+            @Value("${streaming.users.journal.fsync:always}") FsyncPolicy fsyncPolicy,
+            @Value("${streaming.users.journal.fsync-group-size:64}") int fsyncGroupSize,
+            @Value("${streaming.users.journal.fsync-interval:100ms}") Duration fsyncInterval,
+            @Value("${streaming.users.journal.region-size:" + MappedJournal.DEFAULT_REGION_SIZE + "}") int regionSize,
+            @Value("${streaming.users.journal.load-parallelism:0}") int loadParallelism,
+            @Value("${streaming.users.journal.snapshot-interval:10m}") Duration snapshotInterval,
+            @Value("${streaming.users.journal.snapshot-min-records:100000}") long snapshotMinRecords,
+            MeterRegistry meterRegistry) throws IOException {
+        UserRepository repository = shards > 1 ? shardedStore(store, initialCapacity / shards, shards) : store(store, initialCapacity);
+        if (!journalEnabled) {
+            return repository;
+        }
+        return new JournaledUserRepository(repository, directory, regionSize, fsyncPolicy, fsyncGroupSize, fsyncInterval,
+            loadParallelism, snapshotInterval, snapshotMinRecords, meterRegistry);
+    }
+
+    private static UserRepository store(String store, int initialCapacity) {
+        return switch (store) {
+            case "in-memory" -> new InMemoryUserRepository();
+            case "off-heap" -> new OffHeapUserRepository(initialCapacity);
+            default -> throw new IllegalArgumentException("Unknown streaming.users.store " + store);
+        };
+    }
+
+    // Every shard lives in this JVM, so the repository can stand in for any of them as the local node
+    private static UserRepository shardedStore(String store, int initialCapacity, int shards) {
+        List<String> nodes = new ArrayList<>();
+        LocalShardTransport transport = new LocalShardTransport();
+        LocalShard first = null;
+        for (int i = 0; i < shards; i++) {
+            LocalShard shard = new LocalShard(store(store, initialCapacity));
+            transport.register("shard-" + i, shard);
+            nodes.add("shard-" + i);
+            if (first == null) first = shard;
+        }
+        return new ShardedUserRepository(nodes.get(0), first, new ConsistentHashRing(nodes), transport);
+    }
+}
@@ -0,0 +1,38 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Routes for the reactive stack; the servlet stack is served by {@link UserController}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class UserRouter {
+
+    @Bean
+    public RouterFunction<ServerResponse> userRoutes(UserHandler handler) {
+        return RouterFunctions.route()
+            .path("/users", users -> users
+                .POST("/register", handler::registerUser)
+                .POST("/register/bulk", handler::registerUsers)
+                .GET("/count", handler::countUsers)
+                .GET("", UserRouter::acceptsNdjson, handler::streamUsers)
+                .GET("", handler::getUsers))
+            .build();
+    }
+
+    /**
+     * Only an explicit NDJSON Accept header selects the stream; like the servlet stack, a missing
+     * or wildcard Accept header gets the JSON array.
+     */
+    private static boolean acceptsNdjson(ServerRequest request) {
+        return request.headers().accept().stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+    }
+}
@@ -4,75 +4,144 @@ import java.util.Optional;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.HashMap;
+import java.util.stream.Stream;
 
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.validation.ValidationException;
 
 @Service
 public class UserService {
     
-    public final HashMap<String, User> userList = new HashMap<>();
+    private final UserRepository userRepository;
+    private final PasswordHasher passwordHasher;
+    private final UserCache userCache;
+    private final RegisteredKeys registeredKeys;
+    private final RegistrationMetrics metrics;
     
-    public UserService() {}
+    public UserService() {
+        this(new InMemoryUserRepository(), new PasswordHasher());
+    }
+
+    public UserService(UserRepository userRepository, PasswordHasher passwordHasher) {
+        this(userRepository, passwordHasher, new UserCache());
+    }
+
+    public UserService(UserRepository userRepository, PasswordHasher passwordHasher, UserCache userCache) {
+        this(userRepository, passwordHasher, userCache, new SimpleMeterRegistry());
+    }
+
+    public UserService(UserRepository userRepository, PasswordHasher passwordHasher, UserCache userCache, MeterRegistry meterRegistry) {
+        this(userRepository, passwordHasher, userCache, new RegisteredKeys(userRepository, meterRegistry), meterRegistry);
+    }
+
+    @Autowired
+    public UserService(UserRepository userRepository, PasswordHasher passwordHasher, UserCache userCache,
+            RegisteredKeys registeredKeys, MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.passwordHasher = passwordHasher;
+        this.userCache = userCache;
+        this.registeredKeys = registeredKeys;
+        this.metrics = new RegistrationMetrics(meterRegistry);
+        Gauge.builder("users.store.size", userRepository, UserRepository::count)
+            .description("Registered users")
+            .register(meterRegistry);
+    }
     
-    public void registerUser(User user) throws IllegalArgumentException, ValidationException, IllegalStateException {
+    /**
+     * Checks run cheapest first: the field validators, the age check, then the uniqueness checks, which are
+     * answered by the Bloom filters for new keys and only reach the store for keys that may be taken. The
+     * password is hashed only once all of them pass.
+     */
+    public void registerUser(User user) throws IllegalArgumentException, ValidationException, IllegalStateException, PasswordHashingRejectedException {
+        ValidationResult result = validate(user);
+        if (!result.isValid()) {
+            metrics.rejected(result);
+            throw new UserValidationException(result);
+        }
+        
+        isUserValidAge(user.getDateOfBirth());
+        doesUsernameAlreadyExist(user.getUsername());
+        doesEmailAlreadyExist(user.getEmail());
+        
+        // Encode password before saving user to the database
+        user = encodePassword(user);
+        
+        // Re-checks both keys atomically in case a concurrent registration won the race
         try {
-            isUsernameValid(user.getUsername());
-            isPasswordValid(user.getPassword());
-            isEmailValid(user.getEmail());
-            isDateOfBirthValid(user.getDateOfBirth());
-            isCreditCardNumberValid(user.getCreditCardNumber());
-            
-            isUserValidAge(user.getDateOfBirth());
-            doesUsernameAlreadyExist(user.getUsername());
-            doesEmailAlreadyExist(user.getEmail());
-            
-            // Encode password before saving user to the database
-            user = encodePassword(user);
-            
-            userList.put(user.getEmail(), user);
-        } catch (IllegalArgumentException | ValidationException | IllegalStateException e) {
+            userRepository.insert(user);
+        } catch (DuplicateUserException e) {
+            metrics.rejected(e.getKey() == DuplicateUserException.Key.USERNAME
+                ? RegistrationMetrics.USERNAME_TAKEN : RegistrationMetrics.EMAIL_TAKEN);
             throw e;
         }
+        registeredKeys.add(user);
+        userCache.invalidate(user.getEmail());
+    }
+
+    /**
+     * Checks every registration field and reports all invalid ones at once, without throwing.
+     */
+    public ValidationResult validate(User user) {
+        return UserValidator.validate(user, metrics);
     }
     
 	public List<User> getUsers(Optional<Boolean> hasCreditCard) {
-        if (!hasCreditCard.isPresent()) return new ArrayList<>(userList.values());
-        List<User> filteredUsers = new ArrayList<>();
-        
-        for (User user : userList.values()) {
-            if (hasCreditCard.get() == true && user.getCreditCardNumber() != null) {
-                filteredUsers.add(user);
-            }
-            else if (hasCreditCard.get() == false && user.getCreditCardNumber() == null) {
-                filteredUsers.add(user);
-            }
-        }
-        return filteredUsers;
+        return new ArrayList<>(userRepository.findAll(hasCreditCard));
 	}
 
+    /**
+     * One page of users in registration order, optionally filtered by whether they have a credit card.
+     */
+    public UserPage getUsersPage(Optional<Boolean> hasCreditCard, long after, int limit) {
+        return userRepository.findPage(after, limit, hasCreditCard);
+    }
+
+    /**
+     * Lazily streams matching users straight from the store, without collecting them into a list.
+     */
+    public Stream<User> streamUsers(Optional<Boolean> hasCreditCard) {
+        return userRepository.findAll(hasCreditCard).stream();
+    }
+
+    public long countUsers(Optional<Boolean> hasCreditCard) {
+        return userRepository.count(hasCreditCard);
+    }
+
+    public User updateCreditCardNumber(String email, Long creditCardNumber) throws IllegalArgumentException, IllegalStateException {
+        isCreditCardNumberValid(creditCardNumber);
+        User updated = userRepository.updateCreditCardNumber(email, creditCardNumber);
+        userCache.invalidate(email);
+        return updated;
+    }
+
+    /**
+     * Looks the user up through the snapshot cache. The returned user is shared and must not be modified.
+     */
     public User findUserByEmail(String email) {
-        if (userList.containsKey(email)) {
-            return new User(userList.get(email));
-        } else {
-            return null;
+        long start = System.nanoTime();
+        try {
+            return userCache.get(email, userRepository::findByEmail);
+        } finally {
+            metrics.recordLookup(start);
         }
     }
 
-    public User encodePassword(User user) {
-        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder();
-        String encodedPassword = encoder.encode(user.getPassword());
-        return new User(
-            user.getId(),
-            user.getUsername(), 
-            encodedPassword, 
-            user.getEmail(), 
-            user.getDateOfBirth(), 
-            user.getCreditCardNumber()
-        );
+    public User encodePassword(User user) throws PasswordHashingRejectedException {
+        long start = System.nanoTime();
+        try {
+            String encodedPassword = passwordHasher.hash(user.getPassword());
+            return user.withPassword(encodedPassword);
+        } catch (PasswordHashingRejectedException e) {
+            metrics.rejected(RegistrationMetrics.HASHING_REJECTED);
+            throw e;
+        } finally {
+            metrics.recordEncode(start);
+        }
     }
 
     // Validation methods
@@ -82,7 +151,7 @@ public class UserService {
      * @return 
      */
     public boolean isUsernameValid(String username) throws IllegalArgumentException {
-        if (username != null && username.length() >= 3 && username.matches("^[a-zA-Z0-9_-]*$")) {
+        if (UserValidator.isUsernameValid(username)) {
             return true;
         } else {
             throw new IllegalArgumentException("Invalid username");
@@ -94,7 +163,7 @@ public class UserService {
      * @return
      */
     public boolean isPasswordValid(String password) throws IllegalArgumentException {
-        if (password != null && password.length() >= 8 && password.matches(".*[A-Z].*") && password.matches(".*[0-9].*")) {
+        if (UserValidator.isPasswordValid(password)) {
             return true;
         } else {
             throw new IllegalArgumentException("Invalid password");
@@ -108,7 +177,7 @@ public class UserService {
      * @return
      */
     public boolean isEmailValid(String email) throws IllegalArgumentException {
-        if (email != null && email.matches("^[a-zA-Z0-9%+._-]+@[a-zA-Z0-9][a-zA-Z0-9.-]*\\.[a-zA-Z]{2,}$") && !email.contains("..")) {
+        if (UserValidator.isEmailValid(email)) {
             return true;
         } else {
             throw new IllegalArgumentException("Invalid email");
@@ -116,7 +185,7 @@ public class UserService {
     }
 
     public boolean isDateOfBirthValid(LocalDate dateOfBirth) throws IllegalArgumentException {
-        if (dateOfBirth != null && dateOfBirth.isBefore(LocalDate.now())) {
+        if (UserValidator.isDateOfBirthValid(dateOfBirth)) {
             return true;
         } else {
             throw new IllegalArgumentException("Invalid date of birth");
@@ -124,10 +193,16 @@ public class UserService {
     } 
 
     public boolean isUserValidAge(LocalDate dateOfBirth) throws ValidationException {
-        if (dateOfBirth != null && dateOfBirth.isBefore(LocalDate.now().minusYears(18))) {
-            return true;
-        } else {
-            throw new ValidationException("User is not old enough");
+        long start = System.nanoTime();
+        try {
+            if (dateOfBirth != null && dateOfBirth.isBefore(LocalDate.now().minusYears(18))) {
+                return true;
+            } else {
+                metrics.rejected(RegistrationMetrics.UNDERAGE);
+                throw new ValidationException("User is not old enough");
+            }
+        } finally {
+            metrics.recordAge(start);
         }
     }
     
@@ -136,7 +211,7 @@ public class UserService {
      * @return
      */
     public boolean isCreditCardNumberValid(Long creditCardNumber) throws IllegalArgumentException {
-        if (creditCardNumber == null || creditCardNumber.toString().length() == 16) {
+        if (UserValidator.isCreditCardNumberValid(creditCardNumber)) {
             return true;
         } else {
             throw new IllegalArgumentException("Invalid credit card number");
@@ -144,17 +219,23 @@ public class UserService {
     }
 
     public boolean doesUsernameAlreadyExist(String username) throws IllegalStateException {
-        for (User user : userList.values()) {
-            if (user.getUsername().equals(username)) {
-                throw new IllegalStateException("Username already exists");
-            }
+        long start = System.nanoTime();
+        boolean exists = registeredKeys.isUsernameTaken(username, userRepository::existsByUsername);
+        metrics.recordUsernameUniqueness(start);
+        if (exists) {
+            metrics.rejected(RegistrationMetrics.USERNAME_TAKEN);
+            throw new DuplicateUserException(DuplicateUserException.Key.USERNAME);
         }
         return false;
     }
 
     public boolean doesEmailAlreadyExist(String email) throws IllegalStateException {
-        if (userList.containsKey(email)) {
-            throw new IllegalStateException("Email already exists");
+        long start = System.nanoTime();
+        boolean exists = registeredKeys.isEmailTaken(email, userRepository::existsByEmail);
+        metrics.recordEmailUniqueness(start);
+        if (exists) {
+            metrics.rejected(RegistrationMetrics.EMAIL_TAKEN);
+            throw new DuplicateUserException(DuplicateUserException.Key.EMAIL);
         } else {
             return false;
         }
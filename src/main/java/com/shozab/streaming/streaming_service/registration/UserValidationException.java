@@ -0,0 +1,22 @@
+package com.shozab.streaming.streaming_service.registration;
+
+/**
+ * Thrown by {@link UserService#registerUser(User)} when one or more fields are invalid.
+ * Rejections are frequent and expected, so no stack trace is captured.
+ */
+public class UserValidationException extends IllegalArgumentException {
+
+    private final transient ValidationResult result;
+
+    public UserValidationException(ValidationResult result) {
+        super(result.getMessage());
+        this.result = result;
+    }
+
+    public ValidationResult getResult() {return result;}
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
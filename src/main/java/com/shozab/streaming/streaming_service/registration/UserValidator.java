@@ -0,0 +1,140 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.time.LocalDate;
+
+/**
+ * Single-pass field validators for registration.
+ * Each check walks its input once without regex matching or allocation and reports
+ * a boolean; {@link #validate(User)} collects every failing field into one {@link ValidationResult}.
+ */
+public final class UserValidator {
+
+    private static final long MIN_CREDIT_CARD_NUMBER = 1_000_000_000_000_000L;
+    private static final long MAX_CREDIT_CARD_NUMBER = 9_999_999_999_999_999L;
+
+    private UserValidator() {}
+
+    /**
+     * Receives how long each validation step took. {@link #lap} records the time since {@code startNanos}
+     * against {@code field} and returns the current time, which starts the next step.
+     */
+    @FunctionalInterface
+    public interface StepTimer {
+        StepTimer UNTIMED = (field, startNanos) -> startNanos;
+
+        long lap(String field, long startNanos);
+    }
+
+    public static ValidationResult validate(User user) {
+        return validate(user, StepTimer.UNTIMED);
+    }
+
+    public static ValidationResult validate(User user, StepTimer timer) {
+        ValidationResult.Builder result = new ValidationResult.Builder();
+        long start = timer == StepTimer.UNTIMED ? 0 : System.nanoTime();
+        if (!isUsernameValid(user.getUsername())) result.reject("username", "Invalid username");
+        start = timer.lap("username", start);
+        if (!isPasswordValid(user.getPassword())) result.reject("password", "Invalid password");
+        start = timer.lap("password", start);
+        if (!isEmailValid(user.getEmail())) result.reject("email", "Invalid email");
+        start = timer.lap("email", start);
+        if (!isDateOfBirthValid(user.getDateOfBirth())) result.reject("dateOfBirth", "Invalid date of birth");
+        start = timer.lap("dateOfBirth", start);
+        if (user.hasCreditCard() && !isSixteenDigits(user.creditCardNumber())) result.reject("creditCardNumber", "Invalid credit card number");
+        timer.lap("creditCardNumber", start);
+        return result.build();
+    }
+
+    /**
+     * At least 3 characters, only letters, digits, underscores and hyphens.
+     */
+    public static boolean isUsernameValid(String username) {
+        if (username == null || username.length() < 3) return false;
+        for (int i = 0; i < username.length(); i++) {
+            char c = username.charAt(i);
+            if (!isAsciiLetterOrDigit(c) && c != '_' && c != '-') return false;
+        }
+        return true;
+    }
+
+    /**
+     * At least 8 characters with at least one uppercase letter and one digit.
+     */
+    public static boolean isPasswordValid(String password) {
+        if (password == null || password.length() < 8) return false;
+        boolean hasUppercase = false;
+        boolean hasDigit = false;
+        for (int i = 0; i < password.length(); i++) {
+            char c = password.charAt(i);
+            if (isLineTerminator(c)) return false;
+            if (c >= 'A' && c <= 'Z') hasUppercase = true;
+            else if (c >= '0' && c <= '9') hasDigit = true;
+        }
+        return hasUppercase && hasDigit;
+    }
+
+    /**
+     * Equivalent to {@code ^[a-zA-Z0-9%+._-]+@[a-zA-Z0-9][a-zA-Z0-9.-]*\.[a-zA-Z]{2,}$} with no consecutive dots.
+     */
+    public static boolean isEmailValid(String email) {
+        if (email == null) return false;
+        int length = email.length();
+        int i = 0;
+
+        // Local part
+        while (i < length && email.charAt(i) != '@') {
+            char c = email.charAt(i);
+            if (!isAsciiLetterOrDigit(c) && c != '%' && c != '+' && c != '.' && c != '_' && c != '-') return false;
+            if (c == '.' && i > 0 && email.charAt(i - 1) == '.') return false;
+            i++;
+        }
+        if (i == 0 || i == length) return false;
+
+        // Domain: starts with a letter or digit, ends with a dot and a top level domain of 2+ letters
+        int domainStart = ++i;
+        if (domainStart == length || !isAsciiLetterOrDigit(email.charAt(domainStart))) return false;
+        int lastDot = -1;
+        for (; i < length; i++) {
+            char c = email.charAt(i);
+            if (c == '.') {
+                if (email.charAt(i - 1) == '.') return false;
+                lastDot = i;
+            } else if (!isAsciiLetterOrDigit(c) && c != '-') {
+                return false;
+            }
+        }
+        if (lastDot <= domainStart || length - lastDot - 1 < 2) return false;
+        for (i = lastDot + 1; i < length; i++) {
+            if (!isAsciiLetter(email.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    public static boolean isDateOfBirthValid(LocalDate dateOfBirth) {
+        return dateOfBirth != null && dateOfBirth.isBefore(LocalDate.now());
+    }
+
+    /**
+     * Either no credit card, or a positive 16 digit number.
+     */
+    public static boolean isCreditCardNumberValid(Long creditCardNumber) {
+        return creditCardNumber == null || isSixteenDigits(creditCardNumber);
+    }
+
+    public static boolean isSixteenDigits(long number) {
+        return number >= MIN_CREDIT_CARD_NUMBER && number <= MAX_CREDIT_CARD_NUMBER;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9');
+    }
+
+    // '.' in the original patterns does not match line terminators
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
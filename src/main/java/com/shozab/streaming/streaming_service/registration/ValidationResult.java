@@ -0,0 +1,44 @@
+package com.shozab.streaming.streaming_service.registration;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Field errors collected while validating a user, in the order the fields were checked.
+ */
+public class ValidationResult {
+
+    private static final ValidationResult VALID = new ValidationResult(Collections.emptyMap());
+
+    private final Map<String, String> fieldErrors;
+
+    private ValidationResult(Map<String, String> fieldErrors) {
+        this.fieldErrors = fieldErrors;
+    }
+
+    public static ValidationResult valid() {return VALID;}
+
+    public boolean isValid() {return fieldErrors.isEmpty();}
+
+    /**
+     * @return field name to error message, e.g. "email" -> "Invalid email"
+     */
+    public Map<String, String> getFieldErrors() {return Collections.unmodifiableMap(fieldErrors);}
+
+    public String getMessage() {return String.join(", ", fieldErrors.values());}
+
+    static class Builder {
+        private Map<String, String> fieldErrors;
+
+        Builder reject(String field, String message) {
+            if (fieldErrors == null) fieldErrors = new LinkedHashMap<>();
+            fieldErrors.put(field, message);
+            return this;
+        }
+
+        ValidationResult build() {
+            return fieldErrors == null ? VALID : new ValidationResult(fieldErrors);
+        }
+    }
+}
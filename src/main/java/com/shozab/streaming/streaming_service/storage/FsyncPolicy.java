@@ -0,0 +1,13 @@
+package com.shozab.streaming.streaming_service.storage;
+
+/**
+ * When appended journal records are forced to disk.
+ */
+public enum FsyncPolicy {
+    /** Force after every append. Nothing acknowledged is lost on a crash, at the cost of throughput. */
+    ALWAYS,
+    /** Force once every configured number of appends. */
+    GROUPED,
+    /** Force on a fixed interval from a background thread. */
+    PERIODIC
+}
@@ -0,0 +1,339 @@
+package com.shozab.streaming.streaming_service.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of variable-length records in a memory-mapped file.
+ *
+ * <p>The file is mapped in fixed-size regions. Each record is laid out as
+ * {@code [int length][int crc32c][payload]} and never spans two regions; when a record does not fit,
+ * the rest of the region is skipped. Writes are sequential and reads return read-only slices of the
+ * mapping, so neither copies the payload.
+ *
+ * <p>On open the log is scanned from the start and cut at the first record that is incomplete or
+ * fails its checksum, which is where a crash interrupted the last writes.
+ */
+public class MappedJournal implements Closeable {
+
+    /** Writes exactly the declared number of bytes of one record into {@code target}. */
+    @FunctionalInterface
+    public interface RecordWriter {
+        void write(ByteBuffer target);
+    }
+
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(long offset, ByteBuffer payload);
+    }
+
+    public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+
+    private static final int HEADER_BYTES = 8;
+    private static final int END_OF_REGION = -1;
+    private static final byte[] ZEROS = new byte[64 * 1024];
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final int fsyncGroupSize;
+    private final ScheduledExecutorService flusher;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final CRC32C crc = new CRC32C();
+
+    private volatile MappedByteBuffer[] regions;
+    private volatile long committedOffset;
+    private long forcedOffset;
+    private int unforcedRecords;
+    private int batchDepth;
+
+    public MappedJournal(Path path, int regionSize, FsyncPolicy fsyncPolicy, int fsyncGroupSize, Duration fsyncInterval) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.regionSize = regionSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncGroupSize = Math.max(1, fsyncGroupSize);
+
+        int regionCount = (int) Math.max(1, (channel.size() + regionSize - 1) / regionSize);
+        MappedByteBuffer[] mapped = new MappedByteBuffer[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            mapped[i] = map(i);
+        }
+        this.regions = mapped;
+        this.committedOffset = recover();
+        this.forcedOffset = committedOffset;
+
+        if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-flusher-" + path.getFileName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = Math.max(1, fsyncInterval.toMillis());
+            flusher.scheduleWithFixedDelay(this::force, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Appends one record of {@code length} bytes, filled in by {@code writer}.
+     * @return the offset of the record, for {@link #read(long)}
+     */
+    public long append(int length, RecordWriter writer) {
+        if (length <= 0 || length > regionSize - HEADER_BYTES) {
+            throw new IllegalArgumentException("Record length " + length + " does not fit in a journal region");
+        }
+        writeLock.lock();
+        try {
+            long offset = reserve(length);
+            MappedByteBuffer region = regions[regionIndex(offset)];
+            int position = regionPosition(offset);
+
+            ByteBuffer payload = region.slice(position + HEADER_BYTES, length);
+            writer.write(payload);
+            if (payload.position() != length) {
+                throw new IllegalStateException("Record writer wrote " + payload.position() + " of " + length + " bytes");
+            }
+            crc.reset();
+            crc.update(region.slice(position + HEADER_BYTES, length));
+            region.putInt(position + 4, (int) crc.getValue());
+            region.putInt(position, length);
+
+            committedOffset = offset + HEADER_BYTES + length;
+            unforcedRecords++;
+            if (batchDepth == 0) {
+                applyFsyncPolicy();
+            }
+            return offset;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Runs {@code appends} while holding the journal, applying the fsync policy once for all the records
+     * it appends rather than per record. With {@link FsyncPolicy#ALWAYS} this is a group commit.
+     */
+    public void batch(Runnable appends) {
+        writeLock.lock();
+        try {
+            batchDepth++;
+            try {
+                appends.run();
+            } finally {
+                // Also when an append failed: the records before it are visible and must be as durable as the rest
+                batchDepth--;
+                if (batchDepth == 0) {
+                    applyFsyncPolicy();
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @return a read-only view of the payload of the record at {@code offset}
+     */
+    public ByteBuffer read(long offset) {
+        if (offset < 0 || offset >= committedOffset) {
+            throw new IllegalArgumentException("No record at offset " + offset);
+        }
+        MappedByteBuffer region = regions[regionIndex(offset)];
+        int position = regionPosition(offset);
+        return region.slice(position + HEADER_BYTES, region.getInt(position)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Visits every committed record in append order.
+     */
+    public void forEach(RecordVisitor visitor) {
+        long end = committedOffset;
+        long offset = 0;
+        while (offset < end) {
+            MappedByteBuffer region = regions[regionIndex(offset)];
+            int position = regionPosition(offset);
+            int length = position + HEADER_BYTES <= regionSize ? region.getInt(position) : END_OF_REGION;
+            if (length == END_OF_REGION) {
+                offset = nextRegionStart(offset);
+                continue;
+            }
+            visitor.visit(offset, region.slice(position + HEADER_BYTES, length).asReadOnlyBuffer());
+            offset += HEADER_BYTES + length;
+        }
+    }
+
+    /**
+     * Forces every record appended so far to disk.
+     */
+    public void force() {
+        writeLock.lock();
+        try {
+            forceLocked();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public long size() {
+        return committedOffset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        writeLock.lock();
+        try {
+            if (channel.isOpen()) {
+                forceLocked();
+                channel.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private long recover() throws IOException {
+        long offset = 0;
+        while (true) {
+            int index = regionIndex(offset);
+            if (index >= regions.length) {
+                return offset;
+            }
+            MappedByteBuffer region = regions[index];
+            int position = regionPosition(offset);
+            int length = position + HEADER_BYTES <= regionSize ? region.getInt(position) : END_OF_REGION;
+            if (length == END_OF_REGION) {
+                offset = nextRegionStart(offset);
+                continue;
+            }
+            if (length == 0) {
+                // A payload may have reached the disk without its header; zero it so a later, shorter record
+                // cannot leave part of it behind to be read as records by the next recovery
+                truncate(offset);
+                return offset;
+            }
+            if (length < 0 || position + HEADER_BYTES + length > regionSize || !checksumMatches(region, position, length)) {
+                truncate(offset);
+                return offset;
+            }
+            offset += HEADER_BYTES + length;
+        }
+    }
+
+    private boolean checksumMatches(MappedByteBuffer region, int position, int length) {
+        crc.reset();
+        crc.update(region.slice(position + HEADER_BYTES, length));
+        return (int) crc.getValue() == region.getInt(position + 4);
+    }
+
+    // Drops a torn tail: zeroes whatever was written after it in its region and discards any later regions,
+    // since pages of a memory-mapped file can reach the disk out of order. A clean tail is only read, so pages
+    // that were never written stay unallocated and nothing needs forcing.
+    private void truncate(long offset) throws IOException {
+        int index = regionIndex(offset);
+        MappedByteBuffer region = regions[index];
+        int start = regionPosition(offset);
+        int dirty = firstNonZero(region, start);
+        if (dirty < regionSize) {
+            for (int i = dirty; i < regionSize; i += ZEROS.length) {
+                region.put(i, ZEROS, 0, Math.min(ZEROS.length, regionSize - i));
+            }
+            region.force();
+        }
+        if (index + 1 < regions.length) {
+            regions = Arrays.copyOf(regions, index + 1);
+            channel.truncate((long) (index + 1) * regionSize);
+        }
+    }
+
+    private int firstNonZero(MappedByteBuffer region, int from) {
+        int i = from;
+        while (i < regionSize && (i & 7) != 0) {
+            if (region.get(i) != 0) return i;
+            i++;
+        }
+        while (i + 8 <= regionSize && region.getLong(i) == 0) {
+            i += 8;
+        }
+        while (i < regionSize && region.get(i) == 0) {
+            i++;
+        }
+        return i;
+    }
+
+    private long reserve(int length) {
+        long offset = committedOffset;
+        int position = regionPosition(offset);
+        if (position + HEADER_BYTES + length > regionSize) {
+            if (position + 4 <= regionSize) {
+                regions[regionIndex(offset)].putInt(position, END_OF_REGION);
+            }
+            offset = nextRegionStart(offset);
+        }
+        int index = regionIndex(offset);
+        if (index >= regions.length) {
+            MappedByteBuffer[] grown = Arrays.copyOf(regions, index + 1);
+            try {
+                grown[index] = map(index);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not extend journal", e);
+            }
+            regions = grown;
+        }
+        return offset;
+    }
+
+    private void applyFsyncPolicy() {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS
+                || (fsyncPolicy == FsyncPolicy.GROUPED && unforcedRecords >= fsyncGroupSize)) {
+            forceLocked();
+        }
+    }
+
+    private void forceLocked() {
+        if (forcedOffset == committedOffset || !channel.isOpen()) {
+            return;
+        }
+        int last = regionIndex(committedOffset - 1);
+        for (int i = regionIndex(forcedOffset); i <= last; i++) {
+            regions[i].force();
+        }
+        forcedOffset = committedOffset;
+        unforcedRecords = 0;
+    }
+
+    private MappedByteBuffer map(int index) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, (long) index * regionSize, regionSize);
+    }
+
+    private int regionIndex(long offset) {
+        return (int) (offset / regionSize);
+    }
+
+    private int regionPosition(long offset) {
+        return (int) (offset % regionSize);
+    }
+
+    private long nextRegionStart(long offset) {
+        return (offset / regionSize + 1) * regionSize;
+    }
+}
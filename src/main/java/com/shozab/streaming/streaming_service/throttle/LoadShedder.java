@@ -0,0 +1,159 @@
+package com.shozab.streaming.streaming_service.throttle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntSupplier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+/**
+ * Refuses requests while the work already in progress is at an adaptive limit.
+ *
+ * <p>Work is measured by {@code work}, e.g. the password hashes queued and running, or by default as the
+ * requests admitted here and not yet released. Every {@code adjustInterval} the p99 latency of the requests
+ * released since the last adjustment is compared with {@code targetP99}: above it the limit is cut by 10%,
+ * otherwise it grows by {@code maxLimit / 32}, staying between {@code minLimit} and {@code maxLimit}.
+ * Latencies are kept in a ring of the last {@value #SAMPLES} requests, written without locking.
+ *
+ * <p>Publishes {@code requests.shed{route}} and the {@code requests.shedding.limit}, {@code requests.shedding.work}
+ * and {@code requests.shedding.p99} gauges.
+ */
+public class LoadShedder {
+
+    static final int SAMPLES = 1024;
+
+    private final IntSupplier work;
+    private final long targetP99Nanos;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long adjustIntervalNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLongArray latencies = new AtomicLongArray(SAMPLES);
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong nextAdjustment;
+    private volatile int limit;
+    private volatile long p99Nanos;
+    private volatile long recordedAtAdjustment;
+
+    private final Counter shed;
+
+    /**
+     * @param work current amount of work, or null to count the requests in flight
+     */
+    public LoadShedder(String route, IntSupplier work, Duration targetP99, int minLimit, int maxLimit,
+            Duration adjustInterval, MeterRegistry meterRegistry) {
+        this.work = work;
+        this.targetP99Nanos = targetP99.toNanos();
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.adjustIntervalNanos = adjustInterval.toNanos();
+        this.limit = this.maxLimit;
+        this.nextAdjustment = new AtomicLong(System.nanoTime() + adjustIntervalNanos);
+
+        this.shed = Counter.builder("requests.shed")
+            .description("Requests refused because the server was overloaded")
+            .tag("route", route)
+            .register(meterRegistry);
+        Gauge.builder("requests.shedding.limit", this, LoadShedder::limit)
+            .description("Work admitted before requests are shed")
+            .tag("route", route)
+            .register(meterRegistry);
+        Gauge.builder("requests.shedding.work", this, LoadShedder::work)
+            .description("Work in progress, compared with the shedding limit")
+            .tag("route", route)
+            .register(meterRegistry);
+        TimeGauge.builder("requests.shedding.p99", this, TimeUnit.NANOSECONDS, LoadShedder::p99Nanos)
+            .description("p99 latency at the last limit adjustment")
+            .tag("route", route)
+            .register(meterRegistry);
+    }
+
+    /**
+     * @return a permit to {@link Permit#release release} once the request completes, or null if it is shed
+     */
+    public Permit tryAcquire() {
+        return tryAcquire(true);
+    }
+
+    /**
+     * Like {@link #tryAcquire}, for long-running work such as a bulk request: it counts as in flight, but its
+     * latency is not recorded, so it does not pull the p99 up and the limit down.
+     */
+    public Permit tryAcquireUntimed() {
+        return tryAcquire(false);
+    }
+
+    private Permit tryAcquire(boolean timed) {
+        long now = System.nanoTime();
+        adjust(now);
+        int current = inFlight.incrementAndGet();
+        if ((work == null ? current - 1 : work.getAsInt()) >= limit) {
+            inFlight.decrementAndGet();
+            shed.increment();
+            return null;
+        }
+        return new Permit(now, timed);
+    }
+
+    public int limit() {return limit;}
+    public long p99Nanos() {return p99Nanos;}
+
+    private int work() {
+        return work == null ? inFlight.get() : work.getAsInt();
+    }
+
+    private void record(long latencyNanos) {
+        latencies.set((int) (recorded.getAndIncrement() & (SAMPLES - 1)), latencyNanos);
+    }
+
+    private void adjust(long now) {
+        long due = nextAdjustment.get();
+        if (now - due < 0 || !nextAdjustment.compareAndSet(due, now + adjustIntervalNanos)) {
+            return;
+        }
+        // Only the thread that moved nextAdjustment gets here
+        long total = recorded.get();
+        int samples = (int) Math.min(total - recordedAtAdjustment, SAMPLES);
+        recordedAtAdjustment = total;
+        if (samples == 0) {
+            limit = Math.min(maxLimit, limit + Math.max(1, maxLimit / 32));
+            return;
+        }
+
+        long[] window = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            window[i] = latencies.get((int) ((total - 1 - i) & (SAMPLES - 1)));
+        }
+        Arrays.sort(window);
+        p99Nanos = window[(int) Math.ceil(samples * 0.99) - 1];
+        limit = p99Nanos > targetP99Nanos
+            ? Math.max(minLimit, (int) (limit * 0.9))
+            : Math.min(maxLimit, limit + Math.max(1, maxLimit / 32));
+    }
+
+    /** An admitted request; releasing it records its latency unless it was acquired untimed. */
+    public final class Permit {
+        private final long startedAt;
+        private final boolean timed;
+
+        private Permit(long startedAt, boolean timed) {
+            this.startedAt = startedAt;
+            this.timed = timed;
+        }
+
+        public void release() {
+            inFlight.decrementAndGet();
+            if (timed) {
+                record(System.nanoTime() - startedAt);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.shozab.streaming.streaming_service.throttle;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Token buckets per key, each allowing {@code burst} requests at once and refilling at {@code permitsPerSecond}.
+ *
+ * <p>A bucket is a single {@link AtomicLong} holding the time at which it will next be full, as in the generic
+ * cell rate algorithm: taking a token pushes that time one refill interval later, and a request is refused when
+ * it would land more than {@code burst} intervals ahead of now. Buckets are updated with compare-and-set, so
+ * acquiring never blocks. They live in a Caffeine map bounded to {@code maxKeys} and expire once idle long enough
+ * to have refilled, when dropping them loses nothing; under size pressure the least recently used are evicted
+ * and start again full.
+ *
+ * <p>Publishes {@code requests.limited{limit}} and the number of buckets held as {@code requests.limiter.keys{limit}}.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final Cache<String, AtomicLong> buckets;
+    private final Counter limited;
+
+    public RateLimiter(String name, double permitsPerSecond, int burst, long maxKeys, MeterRegistry meterRegistry) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(maxKeys)
+            .expireAfterAccess(Duration.ofNanos(Math.max(toleranceNanos + intervalNanos, TimeUnit.SECONDS.toNanos(1))))
+            .build();
+        this.limited = Counter.builder("requests.limited")
+            .description("Requests refused because their client or payor was over its rate")
+            .tag("limit", name)
+            .register(meterRegistry);
+        Gauge.builder("requests.limiter.keys", buckets, Cache::estimatedSize)
+            .description("Rate limit buckets held")
+            .tag("limit", name)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Takes a token from {@code key}'s bucket.
+     * @return 0 if a token was taken, otherwise the nanoseconds until one will be available
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long full = bucket.get();
+            long next = (full - now < 0 ? now : full) + intervalNanos;
+            long wait = next - intervalNanos - toleranceNanos - now;
+            if (wait > 0) {
+                limited.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+}
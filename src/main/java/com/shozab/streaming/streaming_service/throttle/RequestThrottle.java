@@ -0,0 +1,130 @@
+package com.shozab.streaming.streaming_service.throttle;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Admission control for the write endpoints. Registrations and payments are rate limited per client address,
+ * payments also per payor, and each route sheds load through a {@link LoadShedder}: registrations by the password
+ * hashes queued and running, payments by the payment requests in flight.
+ *
+ * <p>The client address checks run in front of the controllers ({@link ThrottleInterceptor},
+ * {@link ThrottleWebFilter}), except for bulk requests: those only pass load shedding up front, and each of their
+ * records is charged to the client as it is read, so a bulk request costs as much as the single requests it
+ * replaces. The payor check runs once the payment body has been read.
+ */
+@Component
+public class RequestThrottle {
+
+    public enum Route {REGISTRATION, PAYMENTS}
+
+    /** Permit handed out when throttling is disabled. */
+    private static final Permit UNTHROTTLED = () -> {};
+    private static final long SHED_RETRY_AFTER_SECONDS = 1;
+
+    private final boolean enabled;
+    private final RateLimiter registrationClients;
+    private final RateLimiter paymentClients;
+    private final RateLimiter payors;
+    private final LoadShedder registrationShedder;
+    private final LoadShedder paymentShedder;
+
+    /** A request admitted by {@link #admit}; release it once the response is complete. */
+    @FunctionalInterface
+    public interface Permit {
+        void release();
+    }
+
+    public RequestThrottle(
+            @Value("${streaming.throttle.enabled:true}") boolean enabled,
+            @Value("${streaming.throttle.max-keys:100000}") long maxKeys,
+            @Value("${streaming.throttle.registration.per-client-rate:5}") double registrationRate,
+            @Value("${streaming.throttle.registration.per-client-burst:20}") int registrationBurst,
+            @Value("${streaming.throttle.payments.per-client-rate:100}") double paymentRate,
+            @Value("${streaming.throttle.payments.per-client-burst:200}") int paymentBurst,
+            @Value("${streaming.throttle.payments.per-payor-rate:5}") double payorRate,
+            @Value("${streaming.throttle.payments.per-payor-burst:20}") int payorBurst,
+            @Value("${streaming.throttle.registration.target-p99:2s}") Duration registrationTargetP99,
+            @Value("${streaming.throttle.registration.max-in-flight:256}") int registrationMaxInFlight,
+            @Value("${streaming.throttle.payments.target-p99:500ms}") Duration paymentTargetP99,
+            @Value("${streaming.throttle.payments.max-in-flight:1024}") int paymentMaxInFlight,
+            @Value("${streaming.throttle.shedding.min-in-flight:4}") int minInFlight,
+            @Value("${streaming.throttle.shedding.adjust-interval:1s}") Duration adjustInterval,
+            PasswordHasher passwordHasher,
+            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.registrationClients = new RateLimiter("registration.client", registrationRate, registrationBurst, maxKeys, meterRegistry);
+        this.paymentClients = new RateLimiter("payments.client", paymentRate, paymentBurst, maxKeys, meterRegistry);
+        this.payors = new RateLimiter("payments.payor", payorRate, payorBurst, maxKeys, meterRegistry);
+        this.registrationShedder = new LoadShedder("registration",
+            () -> passwordHasher.getQueueDepth() + passwordHasher.getActiveCount(),
+            registrationTargetP99, minInFlight, registrationMaxInFlight, adjustInterval, meterRegistry);
+        this.paymentShedder = new LoadShedder("payments", null,
+            paymentTargetP99, minInFlight, paymentMaxInFlight, adjustInterval, meterRegistry);
+    }
+
+    /**
+     * Admits a request from {@code clientAddress} to {@code route}.
+     * @throws RequestThrottledException if the client is over its rate or the route is shedding load
+     */
+    public Permit admit(Route route, String clientAddress) throws RequestThrottledException {
+        if (!enabled) return UNTHROTTLED;
+        checkClient(route, clientAddress);
+        return shed(route, true);
+    }
+
+    /**
+     * Admits a bulk request to {@code route}; its records are charged to the client one at a time with {@link #checkClient}.
+     * The whole stream counts as one request in flight, but its duration is not taken as a request latency.
+     * @throws RequestThrottledException if the route is shedding load
+     */
+    public Permit admitBulk(Route route) throws RequestThrottledException {
+        if (!enabled) return UNTHROTTLED;
+        return shed(route, false);
+    }
+
+    /**
+     * Charges one request, or one record of a bulk request, from {@code clientAddress} to {@code route}.
+     * @throws RequestThrottledException if the client is over its rate
+     */
+    public void checkClient(Route route, String clientAddress) throws RequestThrottledException {
+        if (enabled) {
+            checkRate(route == Route.REGISTRATION ? registrationClients : paymentClients, clientAddress);
+        }
+    }
+
+    private Permit shed(Route route, boolean timed) {
+        LoadShedder shedder = route == Route.REGISTRATION ? registrationShedder : paymentShedder;
+        LoadShedder.Permit permit = timed ? shedder.tryAcquire() : shedder.tryAcquireUntimed();
+        if (permit == null) {
+            throw new RequestThrottledException(HttpStatus.SERVICE_UNAVAILABLE, "Server is busy, please retry later",
+                SHED_RETRY_AFTER_SECONDS);
+        }
+        return permit::release;
+    }
+
+    /**
+     * @throws RequestThrottledException if the payor is over its rate
+     */
+    public void checkPayor(String payorEmail) throws RequestThrottledException {
+        if (enabled && payorEmail != null) {
+            checkRate(payors, payorEmail);
+        }
+    }
+
+    private static void checkRate(RateLimiter limiter, String key) {
+        long waitNanos = limiter.tryAcquire(key);
+        if (waitNanos > 0) {
+            throw new RequestThrottledException(HttpStatus.TOO_MANY_REQUESTS, "Too many requests, please retry later",
+                Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1)));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.shozab.streaming.streaming_service.throttle;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Thrown when a request is refused by {@link RequestThrottle}: 429 when its client or payor is over its rate,
+ * 503 when the server is shedding load. Either way it may be retried after {@link #getRetryAfterSeconds()}.
+ */
+public class RequestThrottledException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public RequestThrottledException(HttpStatus status, String message, long retryAfterSeconds) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {return status;}
+    public long getRetryAfterSeconds() {return retryAfterSeconds;}
+}
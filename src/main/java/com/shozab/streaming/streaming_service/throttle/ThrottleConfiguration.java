@@ -0,0 +1,33 @@
+package com.shozab.streaming.streaming_service.throttle;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts {@link ThrottleInterceptor}s in front of the registration and payment endpoints of the servlet stack;
+ * the reactive stack uses {@link ThrottleWebFilter}.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class ThrottleConfiguration implements WebMvcConfigurer {
+
+    private final RequestThrottle throttle;
+
+    public ThrottleConfiguration(RequestThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ThrottleInterceptor(throttle, RequestThrottle.Route.REGISTRATION, false))
+            .addPathPatterns("/users/register");
+        registry.addInterceptor(new ThrottleInterceptor(throttle, RequestThrottle.Route.REGISTRATION, true))
+            .addPathPatterns("/users/register/bulk");
+        registry.addInterceptor(new ThrottleInterceptor(throttle, RequestThrottle.Route.PAYMENTS, false))
+            .addPathPatterns("/payments");
+        registry.addInterceptor(new ThrottleInterceptor(throttle, RequestThrottle.Route.PAYMENTS, true))
+            .addPathPatterns("/payments/bulk");
+    }
+}
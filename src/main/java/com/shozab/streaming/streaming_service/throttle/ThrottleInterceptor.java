@@ -0,0 +1,56 @@
+package com.shozab.streaming.streaming_service.throttle;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Applies {@link RequestThrottle} to POST requests on one route of the servlet stack. A streamed (bulk) response is
+ * dispatched again once it completes; the permit taken on the first dispatch is kept and released after the last.
+ * Bulk requests are only checked for load shedding here, as their records are charged to the client one at a time.
+ */
+public class ThrottleInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = ThrottleInterceptor.class.getName() + ".permit";
+
+    private final RequestThrottle throttle;
+    private final RequestThrottle.Route route;
+    private final boolean bulk;
+
+    public ThrottleInterceptor(RequestThrottle throttle, RequestThrottle.Route route, boolean bulk) {
+        this.throttle = throttle;
+        this.route = route;
+        this.bulk = bulk;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!"POST".equals(request.getMethod()) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        try {
+            request.setAttribute(PERMIT_ATTRIBUTE, bulk ? throttle.admitBulk(route) : throttle.admit(route, request.getRemoteAddr()));
+            return true;
+        } catch (RequestThrottledException e) {
+            response.setStatus(e.getStatus().value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write(e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) instanceof RequestThrottle.Permit permit) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            permit.release();
+        }
+    }
+}
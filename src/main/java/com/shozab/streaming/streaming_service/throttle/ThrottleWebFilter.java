@@ -0,0 +1,74 @@
+package com.shozab.streaming.streaming_service.throttle;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies {@link RequestThrottle} to POST requests on the registration and payment endpoints of the reactive stack,
+ * answering refused requests as {@link ThrottleInterceptor} does.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ThrottleWebFilter implements WebFilter {
+
+    private final RequestThrottle throttle;
+
+    public ThrottleWebFilter(RequestThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        RequestThrottle.Route route = request.getMethod() == HttpMethod.POST ? route(path) : null;
+        if (route == null) {
+            return chain.filter(exchange);
+        }
+
+        RequestThrottle.Permit permit;
+        try {
+            // Bulk records are charged to the client one at a time by the handlers
+            permit = path.endsWith("/bulk") ? throttle.admitBulk(route) : throttle.admit(route, clientAddress(request));
+        } catch (RequestThrottledException e) {
+            ServerHttpResponse response = exchange.getResponse();
+            response.setStatusCode(e.getStatus());
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+            return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(e.getMessage().getBytes(StandardCharsets.UTF_8))));
+        }
+        return chain.filter(exchange).doFinally(signal -> permit.release());
+    }
+
+    private static RequestThrottle.Route route(String path) {
+        switch (path) {
+            case "/users/register":
+            case "/users/register/bulk":
+                return RequestThrottle.Route.REGISTRATION;
+            case "/payments":
+            case "/payments/bulk":
+                return RequestThrottle.Route.PAYMENTS;
+            default:
+                return null;
+        }
+    }
+
+    public static String clientAddress(ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) return "unknown";
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+}
@@ -0,0 +1,397 @@
+package com.shozab.streaming.streaming_service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.registration.User;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * HTTP contract shared by the servlet and reactive stacks. Each subclass binds {@link #client()} to one stack.
+ */
+public abstract class ApiContractTest {
+
+    private static final LocalDate ADULT = LocalDate.now().minusYears(30);
+
+    /** Burst of registrations per client and payments per payor that the subclasses configure. */
+    static final int THROTTLE_BURST = 10;
+
+    private final ObjectMapper oMapper = new ObjectMapper();
+
+    protected abstract WebTestClient client();
+
+    @Test
+    public void testRegisterUser_Success() {
+        register(new User(1L, "johndoe", "Password1", "johndoe@example.org", ADULT, 1234567812345678L))
+            .expectStatus().isEqualTo(201)
+            .expectBody(String.class).isEqualTo("User registered successfully");
+    }
+
+    @Test
+    public void testRegisterUser_Rejected() {
+        register(new User(1L, "johndoe", "Password1", "johndoe@example.org", ADULT, null)).expectStatus().isEqualTo(201);
+
+        register(new User(2L, "johndoe", "Password1", "other@example.org", ADULT, null))
+            .expectStatus().isEqualTo(409)
+            .expectBody(String.class).isEqualTo("Username already exists");
+        register(new User(3L, "janedoe", "Password1", "janedoe.example.org", ADULT, null))
+            .expectStatus().isEqualTo(400);
+        register(new User(4L, "jimdoe", "Password1", "jimdoe@example.org", LocalDate.now().minusYears(10), null))
+            .expectStatus().isEqualTo(403)
+            .expectBody(String.class).isEqualTo("User is not old enough");
+    }
+
+    @Test
+    public void testRegisterUser_SentinelCreditCardNumberRejected() {
+        client().post().uri("/users/register").contentType(MediaType.APPLICATION_JSON)
+            .bodyValue("{\"username\":\"johndoe\",\"password\":\"Password1\",\"email\":\"johndoe@example.org\","
+                + "\"dateOfBirth\":\"" + ADULT + "\",\"creditCardNumber\":" + Long.MIN_VALUE + "}")
+            .exchange()
+            .expectStatus().isEqualTo(400)
+            .expectBody(String.class).isEqualTo("Invalid credit card number");
+    }
+
+    @Test
+    public void testMissingBody_BadRequest() {
+        client().post().uri("/users/register").contentType(MediaType.APPLICATION_JSON).exchange()
+            .expectStatus().isBadRequest();
+        client().post().uri("/payments").contentType(MediaType.APPLICATION_JSON).exchange()
+            .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testGetUsers_FilterByCreditCard() {
+        registerTwoUsers();
+
+        client().get().uri("/users").exchange()
+            .expectStatus().isOk()
+            .expectBodyList(User.class).hasSize(2);
+        client().get().uri("/users?hasCreditCard=yes").exchange()
+            .expectStatus().isOk()
+            .expectBodyList(User.class).hasSize(1);
+        client().get().uri("/users?hasCreditCard=no").exchange()
+            .expectStatus().isOk()
+            .expectBodyList(User.class).hasSize(1);
+        client().get().uri("/users?hasCreditCard=maybe").exchange()
+            .expectStatus().isBadRequest()
+            .expectBody().json("[]");
+    }
+
+    @Test
+    public void testGetUsers_Pagination() {
+        registerTwoUsers();
+
+        var first = client().get().uri("/users?limit=1").exchange()
+            .expectStatus().isOk()
+            .expectBodyList(User.class).hasSize(1)
+            .returnResult();
+        String cursor = first.getResponseHeaders().getFirst("X-Next-Cursor");
+        assertNotNull(cursor);
+
+        client().get().uri("/users?limit=1&after=" + cursor).exchange()
+            .expectStatus().isOk()
+            .expectHeader().doesNotExist("X-Next-Cursor")
+            .expectBodyList(User.class).hasSize(1);
+        client().get().uri("/users?limit=0").exchange()
+            .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testGetPayments_History() throws Exception {
+        registerTwoUsers();
+        for (int amount = 100; amount <= 300; amount += 100) {
+            pay(new Payment((long) amount, 1234567812345678L, amount, "johndoe@example.org")).expectStatus().isEqualTo(201);
+        }
+
+        var first = client().get().uri("/payments?email=johndoe@example.org&limit=2").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).returnResult();
+        JsonNode payments = oMapper.readTree(first.getResponseBody());
+        assertEquals(2, payments.size());
+        assertEquals(100, payments.get(0).get("amount").asInt());
+        assertEquals("johndoe@example.org", payments.get(0).get("payorEmail").asText());
+        assertNotNull(payments.get(0).get("timestamp").asText());
+        String cursor = first.getResponseHeaders().getFirst("X-Next-Cursor");
+        assertNotNull(cursor);
+
+        client().get().uri("/payments?email=johndoe@example.org&limit=2&after=" + cursor).exchange()
+            .expectStatus().isOk()
+            .expectHeader().doesNotExist("X-Next-Cursor")
+            .expectBody().jsonPath("$.length()").isEqualTo(1).jsonPath("$[0].amount").isEqualTo(300);
+        client().get().uri("/payments?email=johndoe@example.org&from=2000-01-01T00:00:00Z&to=2001-01-01T00:00:00Z").exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.length()").isEqualTo(0);
+        client().get().uri("/payments?email=janedoe@example.org").exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.length()").isEqualTo(0);
+
+        client().get().uri("/payments").exchange().expectStatus().isBadRequest();
+        client().get().uri("/payments?email=johndoe@example.org&from=yesterday").exchange().expectStatus().isBadRequest();
+        client().get().uri("/payments?email=johndoe@example.org&from=2001-01-01T00:00:00Z&to=2000-01-01T00:00:00Z").exchange()
+            .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testRequests_RateLimited() {
+        // Subclasses allow bursts of THROTTLE_BURST registrations per client and payments per payor
+        registerTwoUsers();
+        for (int i = 2; i < THROTTLE_BURST; i++) {
+            register(new User((long) i, "user_" + i, "Password1", "user" + i + "@example.org", ADULT, null)).expectStatus().isEqualTo(201);
+        }
+        register(new User(99L, "user_99", "Password1", "user99@example.org", ADULT, null))
+            .expectStatus().isEqualTo(429)
+            .expectHeader().exists("Retry-After");
+
+        Payment payment = new Payment(1L, 1234567812345678L, 100, "johndoe@example.org");
+        for (int i = 0; i < THROTTLE_BURST; i++) {
+            pay(payment).expectStatus().isEqualTo(201);
+        }
+        pay(payment)
+            .expectStatus().isEqualTo(429)
+            .expectHeader().exists("Retry-After");
+        // Other payors have their own budget
+        pay(new Payment(2L, 1234567812345678L, 100, "janedoe@example.org")).expectStatus().isEqualTo(404);
+    }
+
+    @Test
+    public void testStreamUsers_Ndjson() throws Exception {
+        registerTwoUsers();
+
+        String body = client().get().uri("/users").accept(MediaType.APPLICATION_NDJSON).exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.trim().split("\n");
+        assertEquals(2, lines.length);
+        for (String line : lines) {
+            assertNotNull(oMapper.readTree(line).get("username"));
+        }
+    }
+
+    @Test
+    public void testBinaryFormats() throws Exception {
+        registerTwoUsers();
+
+        Map<MediaType, ObjectMapper> formats = Map.of(
+            MediaType.APPLICATION_CBOR, new ObjectMapper(new CBORFactory()),
+            MediaType.parseMediaType("application/x-jackson-smile"), new ObjectMapper(new SmileFactory()));
+        long id = 0;
+        for (Map.Entry<MediaType, ObjectMapper> format : formats.entrySet()) {
+            MediaType mediaType = format.getKey();
+            ObjectMapper binary = format.getValue();
+
+            byte[] body = client().get().uri("/users").accept(mediaType).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(mediaType)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+            JsonNode users = binary.readTree(body);
+            assertEquals(2, users.size());
+            assertEquals("johndoe", users.get(0).get("username").asText());
+            assertEquals(ADULT.toString(), users.get(0).get("dateOfBirth").asText());
+
+            client().post().uri("/payments").contentType(mediaType)
+                .bodyValue(binary.writeValueAsBytes(new Payment(++id, 1234567812345678L, 100, "johndoe@example.org")))
+                .exchange()
+                .expectStatus().isEqualTo(201)
+                .expectBody(String.class).isEqualTo("Payment processed successfully");
+        }
+        client().get().uri("/payments?email=johndoe@example.org").exchange()
+            .expectBody().jsonPath("$.length()").isEqualTo(2);
+    }
+
+    @Test
+    public void testCountUsers() {
+        registerTwoUsers();
+
+        client().get().uri("/users/count").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("2");
+        client().get().uri("/users/count?hasCreditCard=yes").exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).isEqualTo("1");
+        client().get().uri("/users/count?hasCreditCard=maybe").exchange()
+            .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testProcessPayment() {
+        registerTwoUsers();
+
+        pay(new Payment(1L, 1234567812345678L, 100, "johndoe@example.org"))
+            .expectStatus().isEqualTo(201)
+            .expectBody(String.class).isEqualTo("Payment processed successfully");
+        pay(new Payment(2L, 1234567812345678L, 1000, "johndoe@example.org"))
+            .expectStatus().isEqualTo(400)
+            .expectBody(String.class).isEqualTo("Invalid payment amount");
+        pay(new Payment(3L, 8765432187654321L, 100, "johndoe@example.org"))
+            .expectStatus().isEqualTo(404)
+            .expectBody(String.class).isEqualTo("Payor not found or invalid credit card number");
+    }
+
+    @Test
+    public void testProcessPayment_IdempotencyKey() {
+        registerTwoUsers();
+        Payment payment = new Payment(1L, 1234567812345678L, 100, "johndoe@example.org");
+        String key = "retry-" + System.nanoTime();
+
+        payWithKey(payment, key)
+            .expectStatus().isEqualTo(201)
+            .expectHeader().doesNotExist("Idempotent-Replayed");
+        payWithKey(payment, key)
+            .expectStatus().isEqualTo(201)
+            .expectHeader().valueEquals("Idempotent-Replayed", "true")
+            .expectBody(String.class).isEqualTo("Payment processed successfully");
+        payWithKey(new Payment(1L, 1234567812345678L, 200, "johndoe@example.org"), key)
+            .expectStatus().isEqualTo(422);
+
+        // Rejections are remembered too
+        String rejectedKey = "rejected-" + System.nanoTime();
+        Payment invalid = new Payment(2L, 1234567812345678L, 1000, "johndoe@example.org");
+        payWithKey(invalid, rejectedKey).expectStatus().isEqualTo(400);
+        payWithKey(invalid, rejectedKey)
+            .expectStatus().isEqualTo(400)
+            .expectHeader().valueEquals("Idempotent-Replayed", "true");
+    }
+
+    @Test
+    public void testProcessPayment_RespondAsync() throws Exception {
+        registerTwoUsers();
+
+        String accepted = payAsync(new Payment(1L, 1234567812345678L, 100, "johndoe@example.org"))
+            .expectStatus().isEqualTo(202)
+            .expectHeader().valueEquals("Preference-Applied", "respond-async")
+            .returnResult(String.class).getResponseHeaders().getLocation().toString();
+        JsonNode status = awaitPaymentStatus(accepted);
+        assertEquals("ACCEPTED", status.get("state").asText());
+        assertEquals(201, status.get("status").asInt());
+        assertEquals("Payment processed successfully", status.get("message").asText());
+        client().get().uri("/payments?email=johndoe@example.org").exchange()
+            .expectBody().jsonPath("$.length()").isEqualTo(1);
+
+        // Refusals are reported with the status the synchronous request would have had
+        String rejected = payAsync(new Payment(2L, 8765432187654321L, 100, "johndoe@example.org"))
+            .expectStatus().isEqualTo(202)
+            .returnResult(String.class).getResponseHeaders().getLocation().toString();
+        status = awaitPaymentStatus(rejected);
+        assertEquals("REJECTED", status.get("state").asText());
+        assertEquals(404, status.get("status").asInt());
+
+        client().get().uri("/payments/no-such-payment").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void testRegisterUsers_Bulk() throws Exception {
+        List<User> users = List.of(
+            new User(1L, "johndoe", "Password1", "johndoe@example.org", ADULT, 1234567812345678L),
+            new User(2L, "johndoe", "Password1", "janedoe@example.org", ADULT, null),
+            new User(3L, "jimdoe", "Password1", "jimdoe.example.org", ADULT, null));
+
+        String body = client().post().uri("/users/register/bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(users)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.trim().split("\n");
+        int[] expectedStatuses = {201, 409, 400};
+        assertEquals(expectedStatuses.length, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode line = oMapper.readTree(lines[i]);
+            assertEquals(i, line.get("index").asInt());
+            assertEquals(expectedStatuses[i], line.get("status").asInt());
+        }
+    }
+
+    @Test
+    public void testRegisterUsers_BulkChargedPerRecord() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < THROTTLE_BURST + 2; i++) {
+            users.add(new User((long) i, "user_" + i, "Password1", "user" + i + "@example.org", ADULT, null));
+        }
+
+        String body = client().post().uri("/users/register/bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(users)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.trim().split("\n");
+        assertEquals(users.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(i < THROTTLE_BURST ? 201 : 429, oMapper.readTree(lines[i]).get("status").asInt());
+        }
+        // The bulk request used up the client's budget for single registrations too
+        register(new User(99L, "user_99", "Password1", "user99@example.org", ADULT, null)).expectStatus().isEqualTo(429);
+    }
+
+    @Test
+    public void testProcessPayments_Bulk() throws Exception {
+        registerTwoUsers();
+        String body = client().post().uri("/payments/bulk")
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .bodyValue(oMapper.writeValueAsString(new Payment(1L, 1234567812345678L, 100, "johndoe@example.org")) + "\n"
+                + oMapper.writeValueAsString(new Payment(2L, 8765432187654321L, 100, "johndoe@example.org")) + "\n"
+                + "{\"id\": ")
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(String.class).returnResult().getResponseBody();
+
+        String[] lines = body.trim().split("\n");
+        assertEquals(3, lines.length);
+        assertEquals(201, oMapper.readTree(lines[0]).get("status").asInt());
+        assertEquals(404, oMapper.readTree(lines[1]).get("status").asInt());
+        assertEquals(400, oMapper.readTree(lines[2]).get("status").asInt());
+        assertEquals(2, oMapper.readTree(lines[2]).get("index").asInt());
+    }
+
+    private void registerTwoUsers() {
+        register(new User(1L, "johndoe", "Password1", "johndoe@example.org", ADULT, 1234567812345678L)).expectStatus().isEqualTo(201);
+        register(new User(2L, "janedoe", "Password1", "janedoe@example.org", ADULT, null)).expectStatus().isEqualTo(201);
+    }
+
+    private WebTestClient.ResponseSpec register(User user) {
+        return client().post().uri("/users/register").contentType(MediaType.APPLICATION_JSON).bodyValue(user).exchange();
+    }
+
+    private WebTestClient.ResponseSpec payWithKey(Payment payment, String key) {
+        return client().post().uri("/payments").contentType(MediaType.APPLICATION_JSON).header("Idempotency-Key", key)
+            .bodyValue(payment).exchange();
+    }
+
+    private WebTestClient.ResponseSpec payAsync(Payment payment) {
+        return client().post().uri("/payments").contentType(MediaType.APPLICATION_JSON).header("Prefer", "respond-async")
+            .bodyValue(payment).exchange();
+    }
+
+    private JsonNode awaitPaymentStatus(String location) throws Exception {
+        for (int attempt = 0; attempt < 200; attempt++) {
+            JsonNode status = oMapper.readTree(client().get().uri(location).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody());
+            if (!status.get("completedAt").isNull()) return status;
+            Thread.sleep(25);
+        }
+        throw new AssertionError("Payment " + location + " was not processed");
+    }
+
+    private WebTestClient.ResponseSpec pay(Payment payment) {
+        return client().post().uri("/payments").contentType(MediaType.APPLICATION_JSON).bodyValue(payment).exchange();
+    }
+}
@@ -0,0 +1,174 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import com.shozab.streaming.streaming_service.payment.AsyncPaymentProcessor;
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.payment.PaymentProcessor;
+import com.shozab.streaming.streaming_service.payment.PaymentStatus;
+import com.shozab.streaming.streaming_service.throttle.RequestThrottledException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AsyncPaymentProcessorTest {
+
+    private MeterRegistry meterRegistry;
+    private StubProcessor stub;
+    private AsyncPaymentProcessor processor;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stub = new StubProcessor();
+        processor = new AsyncPaymentProcessor(stub, 1, 2, 3, 1000, Duration.ofHours(1), Duration.ofSeconds(5),
+            Clock.systemUTC(), meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        stub.release.countDown();
+        processor.shutdown();
+    }
+
+    @Test
+    public void testSubmit_ReportsOutcomes() throws Exception {
+        PaymentStatus accepted = processor.submit(payment(1, 100));
+        PaymentStatus rejected = processor.submit(payment(2, 1000));
+        assertEquals(PaymentStatus.State.QUEUED, accepted.getState());
+        assertEquals(202, accepted.getStatus());
+        assertFalse(accepted.isDone());
+
+        stub.release.countDown();
+        assertEquals(PaymentStatus.State.ACCEPTED, await(accepted.getId()).getState());
+        assertEquals(201, await(accepted.getId()).getStatus());
+        assertEquals(PaymentStatus.State.REJECTED, await(rejected.getId()).getState());
+        assertEquals(400, await(rejected.getId()).getStatus());
+        assertEquals("Invalid payment amount", await(rejected.getId()).getMessage());
+
+        PaymentStatus failed = processor.submit(payment(3, -1));
+        assertEquals(PaymentStatus.State.FAILED, await(failed.getId()).getState());
+        assertEquals(500, await(failed.getId()).getStatus());
+
+        assertEquals(List.of(1L, 2L, 3L), stub.processed);
+        assertNull(processor.getStatus("no-such-payment"));
+        assertEquals(3, meterRegistry.get("payments.async.wait").timer().count());
+        assertEquals(1, meterRegistry.get("payments.async.process").tag("outcome", "accepted").timer().count());
+        assertEquals(1, meterRegistry.get("payments.async.process").tag("outcome", "rejected").timer().count());
+        assertEquals(1, meterRegistry.get("payments.async.process").tag("outcome", "failed").timer().count());
+    }
+
+    @Test
+    public void testSubmit_QueueFull() throws Exception {
+        PaymentStatus running = processor.submit(payment(1, 100));
+        assertTrue(stub.started.await(5, TimeUnit.SECONDS));
+        assertEquals(PaymentStatus.State.PROCESSING, processor.getStatus(running.getId()).getState());
+        processor.submit(payment(2, 100));
+        processor.submit(payment(3, 100));
+        assertEquals(2, meterRegistry.get("payments.async.queue.depth").gauge().value());
+
+        RequestThrottledException e = assertThrows(RequestThrottledException.class, () -> processor.submit(payment(4, 100)));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+        assertEquals(3, e.getRetryAfterSeconds());
+        assertEquals(1, meterRegistry.get("payments.async.rejected").counter().count());
+
+        // Shutting down finishes the queued payments
+        stub.release.countDown();
+        processor.shutdown();
+        assertEquals(List.of(1L, 2L, 3L), stub.processed);
+    }
+
+    @Test
+    public void testStatuses_PendingKeptAndMapBoundedBySubmission() throws Exception {
+        AsyncPaymentProcessor small = new AsyncPaymentProcessor(stub, 1, 4, 3, 2, Duration.ofMillis(200), Duration.ofSeconds(5),
+            Clock.systemUTC(), meterRegistry);
+        try {
+            PaymentStatus first = small.submit(payment(1, 100));
+            PaymentStatus second = small.submit(payment(2, 100));
+            RequestThrottledException e = assertThrows(RequestThrottledException.class, () -> small.submit(payment(3, 100)));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatus());
+
+            // Pending statuses outlive the retention, which only starts once a payment completes
+            Thread.sleep(300);
+            assertFalse(small.getStatus(second.getId()).isDone());
+
+            stub.release.countDown();
+            for (int attempt = 0; attempt < 500 && !small.getStatus(second.getId()).isDone(); attempt++) {
+                Thread.sleep(10);
+            }
+            assertEquals(PaymentStatus.State.ACCEPTED, small.getStatus(first.getId()).getState());
+            assertEquals(PaymentStatus.State.ACCEPTED, small.getStatus(second.getId()).getState());
+
+            Thread.sleep(300);
+            assertNull(small.getStatus(first.getId()));
+            // Expired statuses are purged on Caffeine's timer wheel, whose finest buckets span about a second
+            for (int attempt = 0; attempt < 300 && small.getStatusCount() > 0; attempt++) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, small.getStatusCount());
+            small.submit(payment(3, 100));
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    public void testIsRequested() {
+        assertTrue(AsyncPaymentProcessor.isRequested("respond-async"));
+        assertTrue(AsyncPaymentProcessor.isRequested("return=minimal, Respond-Async; wait=10"));
+        assertFalse(AsyncPaymentProcessor.isRequested("return=representation"));
+        assertFalse(AsyncPaymentProcessor.isRequested(null));
+    }
+
+    private PaymentStatus await(String id) throws InterruptedException {
+        for (int attempt = 0; attempt < 500; attempt++) {
+            PaymentStatus status = processor.getStatus(id);
+            if (status.isDone()) return status;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Payment " + id + " was not processed");
+    }
+
+    private static Payment payment(long id, int amount) {
+        return new Payment(id, 1234567812345678L, amount, "johndoe@example.org");
+    }
+
+    /**
+     * Local stand-in for the payment service: holds every payment until released, refuses amounts over 999
+     * and fails unexpectedly on negative amounts.
+     */
+    private static final class StubProcessor implements PaymentProcessor {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> processed = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void process(Payment payment, String requestKey) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            processed.add(payment.getId());
+            if (payment.getAmount() < 0) throw new UnsupportedOperationException("Card network unavailable");
+            if (payment.getAmount() > 999) throw new IllegalArgumentException("Invalid payment amount");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.shozab.streaming.streaming_service.registration.BloomFilter;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testBloomFilter_NoFalseNegativesAndFppNearTarget() {
+        int keys = 100_000;
+        BloomFilter filter = new BloomFilter(keys, 0.01);
+        for (int i = 0; i < keys; i++) {
+            filter.put("user" + i + "@example.org");
+        }
+        for (int i = 0; i < keys; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.org"));
+        }
+
+        int falsePositives = 0;
+        for (int i = keys; i < 2 * keys; i++) {
+            if (filter.mightContain("user" + i + "@example.org")) falsePositives++;
+        }
+        double fpp = (double) falsePositives / keys;
+        assertTrue(fpp > 0.005 && fpp < 0.015, "Observed fpp " + fpp);
+        assertEquals(0.01, filter.expectedFalsePositiveProbability(), 0.002);
+        assertEquals(7, filter.hashCount());
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(keys, 1.0));
+    }
+
+    @Test
+    public void testBloomFilter_ConcurrentPuts() throws Exception {
+        int writers = 8;
+        int perWriter = 20_000;
+        BloomFilter filter = new BloomFilter(writers * perWriter, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            final int writer = w;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    filter.put("writer" + writer + "_user" + i);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (int w = 0; w < writers; w++) {
+            for (int i = 0; i < perWriter; i++) {
+                assertTrue(filter.mightContain("writer" + w + "_user" + i));
+            }
+        }
+        assertEquals(writers * perWriter, filter.insertions());
+    }
+}
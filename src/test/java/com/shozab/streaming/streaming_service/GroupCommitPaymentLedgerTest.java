@@ -0,0 +1,144 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.shozab.streaming.streaming_service.payment.GroupCommitPaymentLedger;
+import com.shozab.streaming.streaming_service.payment.InMemoryPaymentLedger;
+import com.shozab.streaming.streaming_service.payment.MappedPaymentLedger;
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.storage.FsyncPolicy;
+import com.shozab.streaming.streaming_service.storage.MappedJournal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GroupCommitPaymentLedgerTest {
+
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private volatile boolean failCommits;
+
+    private final InMemoryPaymentLedger delegate = new InMemoryPaymentLedger() {
+        @Override
+        public void appendAll(List<Map.Entry<String, Payment>> payments) {
+            if (failCommits) throw new IllegalStateException("Disk full");
+            batchSizes.add(payments.size());
+            super.appendAll(payments);
+        }
+    };
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GroupCommitPaymentLedger ledger = new GroupCommitPaymentLedger(delegate, 16, Duration.ofMillis(50), meterRegistry);
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        ledger.close();
+    }
+
+    @Test
+    public void testAppend_ConcurrentPaymentsCommittedInBatches() throws Exception {
+        int callers = 32;
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            final long id = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                ledger.append("user" + id + "@example.org", new Payment(id, 1234567812345678L, 100, "user" + id + "@example.org"));
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(callers, ledger.count());
+        assertEquals(callers, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.size() < callers, "Expected payments to share batches: " + batchSizes);
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 16));
+        assertEquals(batchSizes.size(), meterRegistry.get("payments.batch.commit").timer().count());
+        assertEquals(callers, meterRegistry.get("payments.batch.wait").timer().count());
+    }
+
+    @Test
+    public void testAppend_CommitFailureReportedToCaller() {
+        failCommits = true;
+
+        assertThrows(IllegalStateException.class,
+            () -> ledger.append("johndoe@example.org", new Payment(1L, 1234567812345678L, 100, "johndoe@example.org")), "Disk full");
+        assertEquals(0, ledger.count());
+    }
+
+    @Test
+    public void testAppend_PartialCommitFailsOnlyUnwrittenPayments() throws Exception {
+        InMemoryPaymentLedger failing = new InMemoryPaymentLedger() {
+            @Override
+            public void append(String payorEmail, Payment payment) {
+                if (payment.getAmount() == 999) throw new IllegalStateException("Disk full");
+                super.append(payorEmail, payment);
+            }
+        };
+        // The batch is committed once all three payments are queued
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (GroupCommitPaymentLedger batched = new GroupCommitPaymentLedger(failing, 3, Duration.ofSeconds(10), meterRegistry)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int amount : new int[] {100, 999, 200}) {
+                futures.add(executor.submit(() -> {
+                    batched.append("johndoe@example.org", new Payment((long) amount, 1234567812345678L, amount, "johndoe@example.org"));
+                    return null;
+                }));
+                Thread.sleep(100);
+            }
+
+            futures.get(0).get(5, TimeUnit.SECONDS);
+            ExecutionException failed = assertThrows(ExecutionException.class, () -> futures.get(1).get(5, TimeUnit.SECONDS));
+            assertEquals("Disk full", failed.getCause().getMessage());
+            assertThrows(ExecutionException.class, () -> futures.get(2).get(5, TimeUnit.SECONDS));
+            assertEquals(1, failing.count());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testAppend_UnappendablePaymentRefusedBeforeQueueing(@TempDir Path directory) throws Exception {
+        MappedJournal journal = new MappedJournal(directory.resolve("payments.journal"), 4096, FsyncPolicy.ALWAYS, 2, Duration.ofMillis(10));
+        try (GroupCommitPaymentLedger batched = new GroupCommitPaymentLedger(new MappedPaymentLedger(journal), 16, Duration.ofMillis(50), meterRegistry)) {
+            String longEmail = "a".repeat(Short.MAX_VALUE) + "@example.org";
+            assertThrows(IllegalArgumentException.class,
+                () -> batched.append(longEmail, new Payment(1L, 1234567812345678L, 100, longEmail)));
+            assertEquals(0, meterRegistry.get("payments.batch.size").summary().count());
+
+            batched.append("johndoe@example.org", new Payment(2L, 1234567812345678L, 100, "johndoe@example.org"));
+            assertEquals(1, batched.count());
+        }
+    }
+
+    @Test
+    public void testAppend_RefusedOnceClosed() throws Exception {
+        ledger.close();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+            () -> ledger.append("johndoe@example.org", new Payment(1L, 1234567812345678L, 100, "johndoe@example.org")));
+        assertEquals("Payment ledger is closed", e.getMessage());
+    }
+}
@@ -0,0 +1,160 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import com.shozab.streaming.streaming_service.payment.IdempotencyStore;
+import com.shozab.streaming.streaming_service.payment.Payment;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class IdempotencyStoreTest {
+
+    private static final Payment PAYMENT = new Payment(1L, 1234567812345678L, 100, "johndoe@example.org");
+
+    private MeterRegistry meterRegistry;
+    private IdempotencyStore idempotencyStore;
+    private AtomicInteger processed;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        idempotencyStore = new IdempotencyStore(1000, Duration.ofHours(1), meterRegistry);
+        processed = new AtomicInteger();
+    }
+
+    @Test
+    public void testExecute_ReplaysOriginalResponse() {
+        ResponseEntity<String> first = idempotencyStore.execute("key-1", PAYMENT, this::process);
+        ResponseEntity<String> retry = idempotencyStore.execute("key-1", PAYMENT, this::process);
+
+        assertEquals(1, processed.get());
+        assertEquals(201, retry.getStatusCode().value());
+        assertEquals(first.getBody(), retry.getBody());
+        assertNull(first.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(1, meterRegistry.get("payments.idempotency.replayed").counter().count());
+    }
+
+    @Test
+    public void testExecute_KeyReusedForDifferentPayment() {
+        idempotencyStore.execute("key-1", PAYMENT, this::process);
+        ResponseEntity<String> conflict = idempotencyStore.execute("key-1", new Payment(1L, 1234567812345678L, 200, "johndoe@example.org"), this::process);
+
+        assertEquals(422, conflict.getStatusCode().value());
+        assertEquals(1, processed.get());
+        assertEquals(1, meterRegistry.get("payments.idempotency.conflicts").counter().count());
+        assertEquals(400, idempotencyStore.execute("", PAYMENT, this::process).getStatusCode().value());
+    }
+
+    @Test
+    public void testExecute_RefusalReleasesKey() {
+        // A busy server's refusal never reached the card network, so the payment may be retried
+        assertEquals(429, idempotencyStore.execute("key-1", PAYMENT, () -> ResponseEntity.status(429).body("Too many requests")).getStatusCode().value());
+        assertEquals(201, idempotencyStore.execute("key-1", PAYMENT, this::process).getStatusCode().value());
+        assertEquals(503, idempotencyStore.execute("key-2", PAYMENT, () -> ResponseEntity.status(503).body("Payment gateway is busy")).getStatusCode().value());
+        assertEquals(201, idempotencyStore.execute("key-2", PAYMENT, this::process).getStatusCode().value());
+        assertEquals(2, processed.get());
+    }
+
+    @Test
+    public void testExecute_FailureReleasesKey() {
+        // After a 502 or an unexpected failure the retry runs again, reaching the card network with the same key
+        assertEquals(502, idempotencyStore.execute("key-1", PAYMENT, () -> ResponseEntity.status(502).body("Payment gateway timed out")).getStatusCode().value());
+        assertEquals(201, idempotencyStore.execute("key-1", PAYMENT, this::process).getStatusCode().value());
+
+        assertThrows(IllegalStateException.class, () -> idempotencyStore.execute("key-2", PAYMENT, () -> {
+            throw new IllegalStateException("Journal unavailable");
+        }));
+        assertEquals(201, idempotencyStore.execute("key-2", PAYMENT, this::process).getStatusCode().value());
+        assertEquals(2, processed.get());
+        assertEquals(2, idempotencyStore.size());
+    }
+
+    @Test
+    public void testExecute_ConcurrentRetriesProcessOnce() throws Exception {
+        int retries = 16;
+        CountDownLatch processing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(retries);
+        List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+
+        responses.add(executor.submit(() -> idempotencyStore.execute("key-1", PAYMENT, () -> {
+            processing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return process();
+        })));
+        assertTrue(processing.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < retries; i++) {
+            responses.add(executor.submit(() -> idempotencyStore.execute("key-1", PAYMENT, this::process)));
+        }
+        release.countDown();
+
+        for (Future<ResponseEntity<String>> response : responses) {
+            assertEquals(201, response.get(10, TimeUnit.SECONDS).getStatusCode().value());
+        }
+        executor.shutdown();
+        assertEquals(1, processed.get());
+    }
+
+    @Test
+    public void testStore_FullRefusesNewKeysButReplaysHeldOnes() {
+        IdempotencyStore small = new IdempotencyStore(10, Duration.ofHours(1), meterRegistry);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(201, small.execute("key-" + i, PAYMENT, this::process).getStatusCode().value());
+        }
+
+        ResponseEntity<String> refused = small.execute("key-10", PAYMENT, this::process);
+        assertEquals(503, refused.getStatusCode().value());
+        long retryAfter = Long.parseLong(refused.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertTrue(retryAfter > 3500 && retryAfter <= 3600);
+
+        // The earliest key is still held, so its retry is replayed rather than charged again
+        ResponseEntity<String> retry = small.execute("key-0", PAYMENT, this::process);
+        assertEquals(201, retry.getStatusCode().value());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(10, processed.get());
+        assertEquals(10, small.size());
+        assertEquals(1, meterRegistry.get("payments.idempotency.refused").counter().count());
+    }
+
+    @Test
+    public void testStore_ReleasedAndExpiredKeysFreeRoom() throws Exception {
+        IdempotencyStore small = new IdempotencyStore(2, Duration.ofMillis(200), meterRegistry);
+        small.execute("key-0", PAYMENT, () -> ResponseEntity.status(429).body("Too many requests"));
+        small.execute("key-1", PAYMENT, this::process);
+        assertEquals(201, small.execute("key-2", PAYMENT, this::process).getStatusCode().value());
+        assertEquals(503, small.execute("key-3", PAYMENT, this::process).getStatusCode().value());
+
+        Thread.sleep(300);
+        assertEquals(201, small.execute("key-3", PAYMENT, this::process).getStatusCode().value());
+        assertEquals(1, small.size());
+    }
+
+    private ResponseEntity<String> process() {
+        processed.incrementAndGet();
+        return ResponseEntity.status(201).body("Payment processed successfully");
+    }
+}
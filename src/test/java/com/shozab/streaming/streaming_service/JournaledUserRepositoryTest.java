@@ -0,0 +1,136 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.JournaledUserRepository;
+import com.shozab.streaming.streaming_service.registration.OffHeapUserRepository;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserRepository;
+import com.shozab.streaming.streaming_service.storage.FsyncPolicy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class JournaledUserRepositoryTest {
+
+    private static final int REGION_SIZE = 64 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRestart_RestoresUsersAndCardUpdates() throws IOException {
+        User hashed = new User(1L, "johndoe", "$2a$10$alreadyhashed", "johndoe@example.org", LocalDate.of(2000, 1, 1), null);
+        try (JournaledUserRepository userRepository = open(new InMemoryUserRepository())) {
+            userRepository.insert(hashed);
+            userRepository.insert(user("jane_doe", "janedoe@example.org"));
+            userRepository.updateCreditCardNumber("johndoe@example.org", 1234567812345678L);
+            assertThrows(IllegalStateException.class, () -> userRepository.insert(user("johndoe", "other@example.org")));
+        }
+
+        try (JournaledUserRepository userRepository = open(new InMemoryUserRepository())) {
+            assertEquals(2, userRepository.count());
+            assertEquals(hashed.withCreditCardNumber(1234567812345678L), userRepository.findByEmail("johndoe@example.org"));
+            assertEquals(List.of("johndoe", "jane_doe"), usernames(userRepository));
+            assertEquals(1, userRepository.count(Optional.of(true)));
+            assertFalse(userRepository.existsByUsername("other"));
+        }
+    }
+
+    @Test
+    public void testWrite_FailedAppendLeavesStoreUnchanged() throws IOException {
+        // Too long for a journal region, so the append fails
+        User oversized = new User(1L, "a".repeat(REGION_SIZE / 2), "A1" + "a".repeat(REGION_SIZE / 2), "johndoe@example.org", LocalDate.of(2000, 1, 1), null);
+        try (JournaledUserRepository userRepository = open(new InMemoryUserRepository())) {
+            assertThrows(IllegalArgumentException.class, () -> userRepository.insert(oversized));
+            assertFalse(userRepository.existsByEmail("johndoe@example.org"));
+            assertEquals(0, userRepository.count());
+
+            assertThrows(IllegalStateException.class, () -> userRepository.updateCreditCardNumber("nobody@example.org", 1234567812345678L));
+            userRepository.insert(user("johndoe", "johndoe@example.org"));
+        }
+
+        try (JournaledUserRepository userRepository = open(new InMemoryUserRepository())) {
+            assertEquals(List.of("johndoe"), usernames(userRepository));
+        }
+    }
+
+    @Test
+    public void testSnapshot_CompactsGenerationsAndKeepsLaterWrites() throws IOException {
+        try (JournaledUserRepository userRepository = open(new InMemoryUserRepository())) {
+            userRepository.insert(user("johndoe", "johndoe@example.org"));
+            userRepository.updateCreditCardNumber("johndoe@example.org", 1234567812345678L);
+            userRepository.snapshot();
+            userRepository.insert(user("jane_doe", "janedoe@example.org"));
+            userRepository.updateCreditCardNumber("johndoe@example.org", null);
+        }
+        assertEquals(List.of("log-2", "snapshot-2"), files());
+
+        // A snapshot interrupted before its rename is discarded
+        Files.write(directory.resolve("snapshot-3.tmp"), new byte[16]);
+
+        try (JournaledUserRepository userRepository = open(new InMemoryUserRepository())) {
+            assertEquals(List.of("johndoe", "jane_doe"), usernames(userRepository));
+            assertNull(userRepository.findByEmail("johndoe@example.org").getCreditCardNumber());
+        }
+        assertEquals(List.of("log-2", "snapshot-2"), files());
+    }
+
+    @Test
+    public void testRestart_ParallelLoadPreservesOrderAcrossBatches() throws IOException {
+        int users = 40_000;
+        try (JournaledUserRepository userRepository = open(new OffHeapUserRepository(16))) {
+            for (int i = 0; i < users / 2; i++) {
+                userRepository.insert(user("user_" + i, "user" + i + "@example.org"));
+            }
+            userRepository.snapshot();
+            for (int i = users / 2; i < users; i++) {
+                userRepository.insert(user("user_" + i, "user" + i + "@example.org"));
+            }
+        }
+
+        try (JournaledUserRepository userRepository = open(new OffHeapUserRepository(16))) {
+            assertEquals(users, userRepository.count());
+            int i = 0;
+            for (User user : userRepository.findAll()) {
+                assertEquals("user_" + i++, user.getUsername());
+            }
+            assertTrue(userRepository.existsByEmail("user" + (users - 1) + "@example.org"));
+        }
+    }
+
+    private JournaledUserRepository open(UserRepository delegate) throws IOException {
+        return new JournaledUserRepository(delegate, directory, REGION_SIZE, FsyncPolicy.GROUPED, 64, Duration.ZERO,
+            4, Duration.ZERO, 0, new SimpleMeterRegistry());
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static List<String> usernames(UserRepository userRepository) {
+        return userRepository.findAll().stream().map(User::getUsername).toList();
+    }
+
+    private static User user(String username, String email) {
+        return new User(1L, username, "Password1", email, LocalDate.of(2000, 1, 1), null);
+    }
+}
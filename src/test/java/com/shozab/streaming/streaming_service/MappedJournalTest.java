@@ -0,0 +1,211 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.shozab.streaming.streaming_service.payment.InMemoryPaymentLedger;
+import com.shozab.streaming.streaming_service.payment.MappedPaymentLedger;
+import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.payment.PaymentLedger;
+import com.shozab.streaming.streaming_service.payment.PaymentPage;
+import com.shozab.streaming.streaming_service.payment.RecordedPayment;
+import com.shozab.streaming.streaming_service.storage.FsyncPolicy;
+import com.shozab.streaming.streaming_service.storage.MappedJournal;
+
+public class MappedJournalTest {
+
+    private static final int REGION_SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testAppendAndRead_AcrossRegions() throws IOException {
+        Path path = directory.resolve("test.journal");
+        List<Long> offsets = new ArrayList<>();
+        try (MappedJournal journal = open(path, FsyncPolicy.ALWAYS)) {
+            for (int i = 0; i < 1000; i++) {
+                final int value = i;
+                offsets.add(journal.append(100, target -> target.putInt(value).put(new byte[96])));
+            }
+            assertEquals(999, journal.read(offsets.get(999)).getInt());
+        }
+
+        try (MappedJournal journal = open(path, FsyncPolicy.ALWAYS)) {
+            List<Integer> values = new ArrayList<>();
+            journal.forEach((offset, payload) -> values.add(payload.getInt()));
+            assertEquals(1000, values.size());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, values.get(i));
+                assertEquals(i, journal.read(offsets.get(i)).getInt());
+            }
+        }
+    }
+
+    @Test
+    public void testRecovery_TruncatesTornRecord() throws IOException {
+        Path path = directory.resolve("torn.journal");
+        long lastOffset;
+        try (MappedJournal journal = open(path, FsyncPolicy.GROUPED)) {
+            journal.append(8, target -> target.putLong(1));
+            journal.append(8, target -> target.putLong(2));
+            lastOffset = journal.append(8, target -> target.putLong(3));
+        }
+
+        // Corrupt the payload of the last record, as if the crash happened mid-write
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), lastOffset + 8 + 3);
+        }
+
+        try (MappedJournal journal = open(path, FsyncPolicy.PERIODIC)) {
+            List<Long> values = new ArrayList<>();
+            journal.forEach((offset, payload) -> values.add(payload.getLong()));
+            assertEquals(List.of(1L, 2L), values);
+
+            assertEquals(lastOffset, journal.append(8, target -> target.putLong(4)));
+        }
+
+        try (MappedJournal journal = open(path, FsyncPolicy.ALWAYS)) {
+            List<Long> values = new ArrayList<>();
+            journal.forEach((offset, payload) -> values.add(payload.getLong()));
+            assertEquals(List.of(1L, 2L, 4L), values);
+        }
+    }
+
+    @Test
+    public void testRecovery_ZeroesPayloadWithoutHeader() throws IOException {
+        Path path = directory.resolve("headerless.journal");
+        long lastOffset;
+        try (MappedJournal journal = open(path, FsyncPolicy.GROUPED)) {
+            journal.append(8, target -> target.putLong(1));
+            lastOffset = journal.append(16, target -> target.putLong(-1).putLong(-1));
+        }
+
+        // Drop the last record's header, as if the crash came after its payload reached the disk but not the header
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[8]), lastOffset);
+        }
+
+        try (MappedJournal journal = open(path, FsyncPolicy.ALWAYS)) {
+            List<Long> values = new ArrayList<>();
+            journal.forEach((offset, payload) -> values.add(payload.getLong()));
+            assertEquals(List.of(1L), values);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer stale = ByteBuffer.allocate(16);
+            channel.read(stale, lastOffset + 8);
+            assertEquals(0, stale.getLong(0));
+            assertEquals(0, stale.getLong(8));
+        }
+    }
+
+    @Test
+    public void testRecovery_ZeroesStrayBytesAtRegionEnd() throws IOException {
+        Path path = directory.resolve("stray.journal");
+        try (MappedJournal journal = open(path, FsyncPolicy.ALWAYS)) {
+            journal.append(8, target -> target.putLong(1));
+        }
+
+        // A page far past the last record reached the disk before the crash
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {42}), REGION_SIZE - 1);
+        }
+
+        try (MappedJournal journal = open(path, FsyncPolicy.ALWAYS)) {
+            List<Long> values = new ArrayList<>();
+            journal.forEach((offset, payload) -> values.add(payload.getLong()));
+            assertEquals(List.of(1L), values);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer stray = ByteBuffer.allocate(1);
+            channel.read(stray, REGION_SIZE - 1);
+            assertEquals(0, stray.get(0));
+        }
+    }
+
+    @Test
+    public void testPaymentLedger_RecoveredOnRestart() throws IOException {
+        Path path = directory.resolve("payments.journal");
+        try (MappedPaymentLedger ledger = new MappedPaymentLedger(open(path, FsyncPolicy.ALWAYS))) {
+            ledger.append("johndoe@example.org", new Payment(1L, 1234567812345678L, 100, "johndoe@example.org"));
+            ledger.append("johndoe@example.org", new Payment(2L, 1234567812345678L, 200, "johndoe@example.org"));
+            ledger.append("janedoe@example.org", new Payment(null, 1234567812345679L, 300, "janedoe@example.org"));
+        }
+
+        try (MappedPaymentLedger ledger = new MappedPaymentLedger(open(path, FsyncPolicy.ALWAYS))) {
+            assertEquals(3, ledger.count());
+            List<Payment> payments = ledger.findByPayor("johndoe@example.org");
+            assertEquals(2, payments.size());
+            assertEquals(100, payments.get(0).getAmount());
+            assertEquals(200, payments.get(1).getAmount());
+            assertEquals(2L, ledger.findLatestByPayor("johndoe@example.org").getId());
+
+            Payment janesPayment = ledger.findLatestByPayor("janedoe@example.org");
+            assertNull(janesPayment.getId());
+            assertEquals(1234567812345679L, janesPayment.getCreditCardNumber());
+            assertEquals(300, janesPayment.getAmount());
+        }
+    }
+
+    @Test
+    public void testPaymentLedger_HistoryByTime() throws Exception {
+        Path path = directory.resolve("payments.journal");
+        List<RecordedPayment> recorded;
+        try (MappedPaymentLedger ledger = new MappedPaymentLedger(open(path, FsyncPolicy.ALWAYS))) {
+            recorded = appendHistory(ledger);
+            assertHistory(ledger, recorded);
+        }
+        try (MappedPaymentLedger ledger = new MappedPaymentLedger(open(path, FsyncPolicy.ALWAYS))) {
+            assertHistory(ledger, recorded);
+        }
+
+        InMemoryPaymentLedger inMemory = new InMemoryPaymentLedger();
+        assertHistory(inMemory, appendHistory(inMemory));
+    }
+
+    private static List<RecordedPayment> appendHistory(PaymentLedger ledger) throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            ledger.append("johndoe@example.org", new Payment((long) i, 1234567812345678L, 100 + i, "johndoe@example.org"));
+            ledger.append("janedoe@example.org", new Payment((long) i, 1234567812345679L, 100 + i, "janedoe@example.org"));
+            Thread.sleep(3);
+        }
+        return ledger.findByPayor("johndoe@example.org", 0, Long.MAX_VALUE, 0, 1000).getPayments();
+    }
+
+    private static void assertHistory(PaymentLedger ledger, List<RecordedPayment> recorded) {
+        assertEquals(10, recorded.size());
+        long from = recorded.get(3).timestampMillis();
+        long to = recorded.get(7).timestampMillis();
+
+        PaymentPage first = ledger.findByPayor("johndoe@example.org", from, to, 0, 3);
+        assertEquals(List.of(103, 104, 105), first.getPayments().stream().map(p -> p.getPayment().getAmount()).toList());
+        assertEquals(recorded.get(3).timestampMillis(), first.getPayments().get(0).timestampMillis());
+        assertNotNull(first.getNextCursor());
+
+        PaymentPage second = ledger.findByPayor("johndoe@example.org", from, to, first.getNextCursor(), 3);
+        assertEquals(1, second.getPayments().size());
+        assertEquals(6L, second.getPayments().get(0).getPayment().getId());
+        assertNull(second.getNextCursor());
+
+        assertTrue(ledger.findByPayor("johndoe@example.org", to, from, 0, 3).getPayments().isEmpty());
+        assertTrue(ledger.findByPayor("nobody@example.org", 0, Long.MAX_VALUE, 0, 3).getPayments().isEmpty());
+    }
+
+    private static MappedJournal open(Path path, FsyncPolicy fsyncPolicy) throws IOException {
+        return new MappedJournal(path, REGION_SIZE, fsyncPolicy, 2, Duration.ofMillis(10));
+    }
+}
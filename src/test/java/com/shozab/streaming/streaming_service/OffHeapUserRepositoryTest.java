@@ -0,0 +1,190 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.shozab.streaming.streaming_service.registration.OffHeapUserRepository;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserPage;
+
+public class OffHeapUserRepositoryTest {
+
+    private static final int WRITERS = 16;
+    private static final int UNIQUE_USERS_PER_WRITER = 500;
+    private static final int CONTENDED_KEYS = 50;
+
+    private OffHeapUserRepository userRepository;
+
+    @BeforeEach
+    public void setUp() {
+        // Small initial capacity so the index resizes several times during the tests
+        userRepository = new OffHeapUserRepository(16);
+    }
+
+    @Test
+    public void testInsert_DuplicateKeysRejected() {
+        userRepository.insert(user("johndoe", "johndoe@example.org"));
+
+        assertThrows(IllegalStateException.class, () -> userRepository.insert(user("johndoe", "john@example.org")), "Username already exists");
+        assertThrows(IllegalStateException.class, () -> userRepository.insert(user("john", "johndoe@example.org")), "Email already exists");
+
+        assertEquals(1, userRepository.count());
+        assertNotNull(userRepository.findByEmail("johndoe@example.org"));
+        assertTrue(userRepository.existsByUsername("johndoe"));
+        assertFalse(userRepository.existsByUsername("john"));
+    }
+
+    @Test
+    public void testInsert_UsernameReleasedWhenEmailTaken() {
+        userRepository.insert(user("johndoe", "johndoe@example.org"));
+
+        assertThrows(IllegalStateException.class, () -> userRepository.insert(user("jane_doe", "johndoe@example.org")), "Email already exists");
+        assertFalse(userRepository.existsByUsername("jane_doe"));
+
+        userRepository.insert(user("jane_doe", "janedoe@example.org"));
+        assertTrue(userRepository.existsByUsername("jane_doe"));
+    }
+
+    @Test
+    public void testCreditCardPartitions() {
+        userRepository.insert(new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2000, 1, 1), 1234567812345678L));
+        userRepository.insert(user("jane_doe", "janedoe@example.org"));
+        userRepository.insert(user("jim_doe", "jimdoe@example.org"));
+
+        assertEquals(3, userRepository.count());
+        assertEquals(1, userRepository.count(Optional.of(true)));
+        assertEquals(2, userRepository.count(Optional.of(false)));
+        assertEquals(List.of("jane_doe", "jim_doe"), usernames(userRepository.findAll(Optional.of(false))));
+
+        userRepository.updateCreditCardNumber("jimdoe@example.org", 1234567812345679L);
+
+        assertEquals(2, userRepository.count(Optional.of(true)));
+        assertEquals(1, userRepository.count(Optional.of(false)));
+        assertEquals(List.of("johndoe", "jim_doe"), usernames(userRepository.findAll(Optional.of(true))));
+        assertEquals(1234567812345679L, userRepository.findByEmail("jimdoe@example.org").getCreditCardNumber());
+
+        UserPage page = userRepository.findPage(0, 1, Optional.of(true));
+        assertEquals(List.of("johndoe"), usernames(page.getUsers()));
+        assertEquals(List.of("jim_doe"), usernames(userRepository.findPage(page.getNextCursor(), 1, Optional.of(true)).getUsers()));
+
+        assertThrows(IllegalStateException.class, () -> userRepository.updateCreditCardNumber("nobody@example.org", null), "User not found");
+    }
+
+    @Test
+    public void testInsert_ConcurrentWritersNoLostOrDuplicateRegistrations() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sharedUsernameWins = new AtomicInteger();
+        AtomicInteger sharedEmailWins = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int writer = 0; writer < WRITERS; writer++) {
+            final int w = writer;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < UNIQUE_USERS_PER_WRITER; i++) {
+                    userRepository.insert(user("user_" + w + "_" + i, "user" + w + "." + i + "@example.org"));
+
+                    if (i < CONTENDED_KEYS) {
+                        // Every writer races for the same username and for the same email
+                        try {
+                            userRepository.insert(user("shared_" + i, "writer" + w + ".shared" + i + "@example.org"));
+                            sharedUsernameWins.incrementAndGet();
+                        } catch (IllegalStateException e) {
+                            // lost the race
+                        }
+                        try {
+                            userRepository.insert(user("writer_" + w + "_email_" + i, "shared" + i + "@example.org"));
+                            sharedEmailWins.incrementAndGet();
+                        } catch (IllegalStateException e) {
+                            // lost the race
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(CONTENDED_KEYS, sharedUsernameWins.get());
+        assertEquals(CONTENDED_KEYS, sharedEmailWins.get());
+        assertEquals((long) WRITERS * UNIQUE_USERS_PER_WRITER + 2 * CONTENDED_KEYS, userRepository.count());
+
+        Set<String> usernames = new HashSet<>();
+        for (User user : userRepository.findAll()) {
+            assertTrue(usernames.add(user.getUsername()), "Duplicate username " + user.getUsername());
+        }
+        for (int w = 0; w < WRITERS; w++) {
+            for (int i = 0; i < UNIQUE_USERS_PER_WRITER; i++) {
+                assertNotNull(userRepository.findByEmail("user" + w + "." + i + "@example.org"));
+            }
+        }
+    }
+
+    @Test
+    public void testFindByEmail_RoundTripsAllFields() {
+        User user = new User(7L, "johndoe", "$2a$10$hash", "jöhn.doe@example.org", LocalDate.of(1990, 2, 3), 1234567812345678L);
+        userRepository.insert(user);
+        userRepository.insert(new User(null, "jane_doe", null, "janedoe@example.org", null, null));
+
+        assertEquals(user, userRepository.findByEmail("jöhn.doe@example.org"));
+        User jane = userRepository.findByEmail("janedoe@example.org");
+        assertNull(jane.getId());
+        assertNull(jane.getPassword());
+        assertNull(jane.getDateOfBirth());
+        assertNull(jane.getCreditCardNumber());
+        assertNull(userRepository.findByEmail("JANEDOE@example.org"));
+        assertNull(userRepository.findByEmail(null));
+    }
+
+    @Test
+    public void testFindPage_CursorAcrossRecordChunks() {
+        int users = (1 << 16) + 10;
+        for (int i = 0; i < users; i++) {
+            userRepository.insert(user("user_" + i, "user" + i + "@example.org"));
+        }
+
+        UserPage page = userRepository.findPage(65530, 8, Optional.empty());
+        assertEquals(List.of("user_65530", "user_65531", "user_65532", "user_65533", "user_65534", "user_65535", "user_65536", "user_65537"),
+            usernames(page.getUsers()));
+        assertEquals(65538L, page.getNextCursor());
+        assertEquals(8, userRepository.findPage(page.getNextCursor(), 100, Optional.empty()).getUsers().size());
+        assertNull(userRepository.findPage(page.getNextCursor(), 100, Optional.empty()).getNextCursor());
+        assertTrue(userRepository.existsByUsername("user_" + (users - 1)));
+        assertEquals(users, userRepository.findAll().size());
+    }
+
+    private static List<String> usernames(Collection<User> users) {
+        return users.stream().map(User::getUsername).toList();
+    }
+
+    private static User user(String username, String email) {
+        return new User(1L, username, "Password1", email, LocalDate.of(2000, 1, 1), null);
+    }
+}
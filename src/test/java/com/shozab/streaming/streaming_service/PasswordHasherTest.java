@@ -0,0 +1,88 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
+import com.shozab.streaming.streaming_service.registration.PasswordHashingRejectedException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class PasswordHasherTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final PasswordEncoder blockingEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals("hashed:" + rawPassword);
+        }
+    };
+
+    private final PasswordHasher passwordHasher = new PasswordHasher(blockingEncoder, 1, 1, 5, meterRegistry);
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    public void testHash_RejectsWhenQueueIsFull() throws Exception {
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> passwordHasher.hash("Password1"));
+        waitUntil(() -> passwordHasher.getActiveCount() == 1);
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> passwordHasher.hash("Password2"));
+        waitUntil(() -> passwordHasher.getQueueDepth() == 1);
+
+        PasswordHashingRejectedException e = assertThrows(PasswordHashingRejectedException.class, () -> passwordHasher.hash("Password3"));
+        assertEquals(5, e.getRetryAfterSeconds());
+        assertEquals(1.0, meterRegistry.get("registration.hashing.queue.depth").gauge().value());
+        assertEquals(1.0, meterRegistry.get("registration.hashing.rejected").counter().count());
+
+        release.countDown();
+        assertEquals("hashed:Password1", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hashed:Password2", queued.get(5, TimeUnit.SECONDS));
+        assertEquals(2, meterRegistry.get("registration.hashing.latency").timer().count());
+    }
+
+    @Test
+    public void testHash_InterruptedWaitIsRetryable() throws Exception {
+        Thread.currentThread().interrupt();
+        try {
+            PasswordHashingRejectedException e = assertThrows(PasswordHashingRejectedException.class, () -> passwordHasher.hash("Password1"));
+            assertEquals(5, e.getRetryAfterSeconds());
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for hasher state");
+            Thread.sleep(5);
+        }
+    }
+}
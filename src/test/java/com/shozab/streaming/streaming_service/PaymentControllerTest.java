@@ -11,6 +11,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shozab.streaming.streaming_service.registration.*;
@@ -21,6 +22,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.mockito.Mockito.*; 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.shozab.streaming.streaming_service.payment.Payment;
@@ -67,7 +69,7 @@ public class PaymentControllerTest {
     public void testProcessPayment_Success() throws Exception {
         Payment payment = new Payment(1L, 1234567812345678L, 100, "johndoe@example.org");
         
-        doNothing().when(paymentService).processPayment(payment);
+        doNothing().when(paymentService).processPayment(payment, null);
 
         mockMvc.perform(post("/payments")
                 .contentType("application/json")
@@ -84,7 +86,7 @@ public class PaymentControllerTest {
     public void testProcessPayment_shortCreditCardNumber(String id, String creditCardNumber, int amount) throws Exception {
         Payment payment = new Payment(Long.parseLong(id), Long.parseLong(creditCardNumber), amount, "johndoe@example.org");
         
-        doThrow(new IllegalArgumentException("Invalid credit card number")).when(paymentService).processPayment(payment);
+        doThrow(new IllegalArgumentException("Invalid credit card number")).when(paymentService).processPayment(payment, null);
 
         mockMvc.perform(post("/payments")
                 .contentType("application/json")
@@ -97,7 +99,7 @@ public class PaymentControllerTest {
     public void testProcessPayment_nullCreditCardNumber() throws Exception {
         Payment payment = new Payment(1L, null, 100, "johndoe@example.org");
         
-        doThrow(new IllegalArgumentException("Invalid credit card number")).when(paymentService).processPayment(payment);
+        doThrow(new IllegalArgumentException("Invalid credit card number")).when(paymentService).processPayment(payment, null);
 
         mockMvc.perform(post("/payments")
                 .contentType("application/json")
@@ -110,7 +112,7 @@ public class PaymentControllerTest {
     public void testProcessPayment_creditCardNumberNotFound() throws Exception {
         Payment payment = new Payment(1L, 1234567812345671L, 100, "johndoe@example.org");
         
-        doThrow(new IllegalStateException("Payor not found or invalid credit card number")).when(paymentService).processPayment(payment);
+        doThrow(new IllegalStateException("Payor not found or invalid credit card number")).when(paymentService).processPayment(payment, null);
 
         mockMvc.perform(post("/payments")
                 .contentType("application/json")
@@ -123,7 +125,7 @@ public class PaymentControllerTest {
     public void testProcessPayment_InvalidAmount() throws Exception {
         Payment payment = new Payment(1L, 1234567812345678L, 1000, "johndoe@example.org");
         
-        doThrow(new IllegalArgumentException("Invalid payment amount")).when(paymentService).processPayment(payment);
+        doThrow(new IllegalArgumentException("Invalid payment amount")).when(paymentService).processPayment(payment, null);
 
         mockMvc.perform(post("/payments")
                 .contentType("application/json")
@@ -131,4 +133,28 @@ public class PaymentControllerTest {
                 .andExpect(status().is(400))
                 .andExpect(content().string("Invalid payment amount"));
     }
+
+    @Test
+    public void testProcessPayments_Bulk() throws Exception {
+        Payment[] payments = {
+            new Payment(1L, 1234567812345678L, 100, "johndoe@example.org"),
+            new Payment(2L, 1234567812345678L, 1000, "johndoe@example.org"),
+            new Payment(3L, 8765432187654321L, 100, "johndoe@example.org")
+        };
+
+        MvcResult result = mockMvc.perform(post("/payments/bulk")
+                .contentType("application/json")
+                .content(oMapper.writeValueAsString(payments)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().is(200))
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertEquals(3, lines.length);
+        assertEquals(201, oMapper.readTree(lines[0]).get("status").asInt());
+        assertEquals(400, oMapper.readTree(lines[1]).get("status").asInt());
+        assertEquals(404, oMapper.readTree(lines[2]).get("status").asInt());
+    }
 }
@@ -0,0 +1,170 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.shozab.streaming.streaming_service.gateway.Authorization;
+import com.shozab.streaming.streaming_service.gateway.CircuitBreaker;
+import com.shozab.streaming.streaming_service.gateway.GatewayUnavailableException;
+import com.shozab.streaming.streaming_service.gateway.HttpPaymentGateway;
+import com.shozab.streaming.streaming_service.gateway.PaymentGateway;
+import com.shozab.streaming.streaming_service.gateway.PaymentGatewayException;
+import com.shozab.streaming.streaming_service.gateway.ResilientPaymentGateway;
+import com.shozab.streaming.streaming_service.gateway.SimulatedGatewayServer;
+import com.shozab.streaming.streaming_service.gateway.SimulatedPaymentGateway;
+import com.shozab.streaming.streaming_service.payment.Payment;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class PaymentGatewayTest {
+
+    private static final Payment PAYMENT = new Payment(1L, 1234567812345678L, 100, "johndoe@example.org");
+
+    @Test
+    public void testCircuitBreaker_OpensAndRecovers() {
+        AtomicLong now = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, Duration.ofSeconds(5), 2, now::get);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure();
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(TimeUnit.SECONDS.toNanos(5), breaker.remainingOpenNanos());
+
+        // Half open lets two trials through; a failure opens it again
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        breaker.onCancelled();
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void testResilient_HedgesSlowAttempt() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SimulatedPaymentGateway stub = new SimulatedPaymentGateway(Duration.ZERO);
+        List<CompletableFuture<Authorization>> attempts = new CopyOnWriteArrayList<>();
+        // The first attempt never answers; the hedge goes to the stand-in
+        PaymentGateway delegate = (key, payment) -> {
+            CompletableFuture<Authorization> attempt = attempts.isEmpty() ? new CompletableFuture<>() : stub.authorize(key, payment);
+            attempts.add(attempt);
+            return attempt;
+        };
+        ResilientPaymentGateway gateway = resilient(delegate, 10, Duration.ofSeconds(5), Duration.ofMillis(20), meterRegistry);
+
+        Authorization authorization = gateway.authorize("key-1", PAYMENT).join();
+        assertTrue(authorization.approved());
+        assertEquals(2, attempts.size());
+        // The losing attempt is cancelled just after the winner's answer is handed back
+        assertThrows(CancellationException.class, () -> attempts.get(0).get(1, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("payments.gateway.attempts").tag("kind", "hedge").counter().count());
+        assertEquals(1, meterRegistry.get("payments.gateway.authorize").tag("outcome", "approved").timer().count());
+        assertEquals(0, gateway.inFlight());
+        assertEquals(1, stub.charges());
+        gateway.close();
+    }
+
+    @Test
+    public void testResilient_RetriesFailureThenOpensCircuit() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SimulatedPaymentGateway stub = new SimulatedPaymentGateway(Duration.ZERO, 0, Duration.ZERO, 1.0, 0);
+        ResilientPaymentGateway gateway = resilient(stub, 10, Duration.ofSeconds(1), Duration.ZERO, meterRegistry);
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> gateway.authorize("key-1", PAYMENT).join());
+        assertInstanceOf(PaymentGatewayException.class, failure.getCause());
+        assertEquals(2, stub.calls());
+        assertEquals(1, meterRegistry.get("payments.gateway.attempts").tag("kind", "retry").counter().count());
+
+        // Two failed attempts out of a minimum of four opens the circuit; later payments do not reach the stand-in
+        assertThrows(CompletionException.class, () -> gateway.authorize("key-2", PAYMENT).join());
+        assertEquals(CircuitBreaker.State.OPEN, gateway.circuitState());
+        failure = assertThrows(CompletionException.class, () -> gateway.authorize("key-3", PAYMENT).join());
+        assertInstanceOf(GatewayUnavailableException.class, failure.getCause());
+        assertEquals(5, ((GatewayUnavailableException) failure.getCause()).getRetryAfterSeconds());
+        assertEquals(4, stub.calls());
+        assertEquals(1, meterRegistry.get("payments.gateway.rejected").tag("reason", "circuit_open").counter().count());
+        gateway.close();
+    }
+
+    @Test
+    public void testResilient_BulkheadAndTimeout() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PaymentGateway hanging = (key, payment) -> new CompletableFuture<>();
+        ResilientPaymentGateway gateway = resilient(hanging, 1, Duration.ofMillis(100), Duration.ZERO, meterRegistry);
+
+        CompletableFuture<Authorization> first = gateway.authorize("key-1", PAYMENT);
+        CompletionException busy = assertThrows(CompletionException.class, () -> gateway.authorize("key-2", PAYMENT).join());
+        assertInstanceOf(GatewayUnavailableException.class, busy.getCause());
+        assertEquals(1, meterRegistry.get("payments.gateway.rejected").tag("reason", "bulkhead").counter().count());
+
+        CompletionException timedOut = assertThrows(CompletionException.class, first::join);
+        assertEquals("Payment gateway timed out", timedOut.getCause().getMessage());
+        assertEquals(0, gateway.inFlight());
+        gateway.close();
+    }
+
+    @Test
+    public void testHttpGateway_AgainstStandIn() {
+        SimulatedPaymentGateway stub = new SimulatedPaymentGateway(Duration.ofMillis(5));
+        try (SimulatedGatewayServer server = new SimulatedGatewayServer(stub, 0);
+                HttpPaymentGateway http = new HttpPaymentGateway(server.baseUrl(), 4, 16, Duration.ofSeconds(1), Duration.ofMillis(500))) {
+            Authorization authorization = http.authorize("key-1", PAYMENT).join();
+            assertTrue(authorization.approved());
+            assertEquals("sim-key-1", authorization.reference());
+            http.authorize("key-1", PAYMENT).join();
+            assertEquals(2, stub.calls());
+            assertEquals(1, stub.charges());
+
+            stub.setDeclineRate(1.0);
+            assertFalse(http.authorize("key-2", PAYMENT).join().approved());
+
+            stub.setFailureRate(1.0);
+            CompletionException failure = assertThrows(CompletionException.class, () -> http.authorize("key-3", PAYMENT).join());
+            assertEquals("Payment gateway answered 503", failure.getCause().getMessage());
+
+            stub.setFailureRate(0);
+            stub.setLatency(Duration.ofSeconds(2));
+            failure = assertThrows(CompletionException.class, () -> http.authorize("key-4", PAYMENT).join());
+            assertInstanceOf(PaymentGatewayException.class, failure.getCause());
+        }
+    }
+
+    private static ResilientPaymentGateway resilient(PaymentGateway delegate, int maxConcurrentCalls, Duration timeout,
+            Duration hedgeDelay, MeterRegistry meterRegistry) {
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, Duration.ofSeconds(5), 1);
+        return new ResilientPaymentGateway(delegate, maxConcurrentCalls, timeout, 2, hedgeDelay, 0.1, breaker, meterRegistry);
+    }
+}
@@ -1,27 +1,56 @@
 package com.shozab.streaming.streaming_service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.time.LocalDate;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.shozab.streaming.streaming_service.gateway.Authorization;
+import com.shozab.streaming.streaming_service.gateway.PaymentDeclinedException;
+import com.shozab.streaming.streaming_service.gateway.PaymentGateway;
+import com.shozab.streaming.streaming_service.gateway.PaymentGatewayException;
+import com.shozab.streaming.streaming_service.payment.IdempotencyStore;
+import com.shozab.streaming.streaming_service.payment.InMemoryPaymentLedger;
 import com.shozab.streaming.streaming_service.payment.Payment;
+import com.shozab.streaming.streaming_service.payment.PaymentLedger;
 import com.shozab.streaming.streaming_service.payment.PaymentService;
 import com.shozab.streaming.streaming_service.registration.User;
 import com.shozab.streaming.streaming_service.registration.UserService;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class PaymentServiceTest {
     @Mock
     private UserService userService;
 
+    @Spy
+    private PaymentLedger paymentLedger = new InMemoryPaymentLedger();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private PaymentGateway paymentGateway = PaymentGateway.NONE;
+
     @InjectMocks
     private PaymentService paymentService;
 
@@ -69,6 +98,15 @@ public class PaymentServiceTest {
         assertThrows(IllegalStateException.class, () -> paymentService.processPayment(payment), "Payor not found or invalid credit card number");
     }
 
+    @Test
+    public void testProcessPayment_PayorWithoutCreditCard() {
+        User user = new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2000, 1, 1), null);
+        Payment payment = new Payment(1L, 1234567812345678L, 123, "johndoe@example.org");
+
+        when(userService.findUserByEmail(payment.getPayorEmail())).thenReturn(user);
+
+        assertThrows(IllegalStateException.class, () -> paymentService.processPayment(payment));
+    }
 
     @Test
     public void testProcessPayment_InvalidCreditCardNumber() {
@@ -76,6 +114,10 @@ public class PaymentServiceTest {
         Payment payment2 = new Payment(1L, null, 123, "johndoe@example.org");
         assertThrows(IllegalArgumentException.class, () -> paymentService.processPayment(payment1), "Invalid credit card number");
         assertThrows(IllegalArgumentException.class, () -> paymentService.processPayment(payment2), "Invalid credit card number");
+
+        Payment sentinel = new Payment(1L, Long.MIN_VALUE, 123, "johndoe@example.org");
+        assertTrue(sentinel.hasCreditCard());
+        assertThrows(IllegalArgumentException.class, () -> paymentService.processPayment(sentinel), "Invalid credit card number");
     }
 
     @Test
@@ -86,4 +128,97 @@ public class PaymentServiceTest {
         assertThrows(IllegalArgumentException.class, () -> paymentService.processPayment(payment1), "Invalid payment amount");
         assertThrows(IllegalArgumentException.class, () -> paymentService.processPayment(payment2), "Invalid payment amount");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testProcessPayment_Metrics() {
+        User user = new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2000, 1, 1), 1234567812345678L);
+        when(userService.findUserByEmail("johndoe@example.org")).thenReturn(user);
+
+        paymentService.processPayment(new Payment(1L, 1234567812345678L, 500, "johndoe@example.org"));
+        assertThrows(IllegalArgumentException.class, () -> paymentService.processPayment(new Payment(1L, 1234567812345678L, 0, "johndoe@example.org")));
+        assertThrows(IllegalStateException.class, () -> paymentService.processPayment(new Payment(1L, 1234567812345679L, 500, "johndoe@example.org")));
+
+        assertEquals(1, meterRegistry.get("payments.process").tag("outcome", "accepted").timer().count());
+        assertEquals(2, meterRegistry.get("payments.process").tag("outcome", "rejected").timer().count());
+        assertEquals(1, meterRegistry.get("payments.rejected").tag("reason", "invalid_amount").counter().count());
+        assertEquals(1, meterRegistry.get("payments.rejected").tag("reason", "payor_not_found").counter().count());
+        assertEquals(0, meterRegistry.get("payments.rejected").tag("reason", "invalid_card").counter().count());
+        assertEquals(1, meterRegistry.get("payments.ledger.size").gauge().value());
+    }
+
+    @Test
+    public void testProcessPayment_Gateway() {
+        User user = new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2000, 1, 1), 1234567812345678L);
+        when(userService.findUserByEmail("johndoe@example.org")).thenReturn(user);
+        Payment payment = new Payment(1L, 1234567812345678L, 500, "johndoe@example.org");
+        MeterRegistry registry = new SimpleMeterRegistry();
+
+        PaymentService declining = new PaymentService(userService, new InMemoryPaymentLedger(),
+            (key, p) -> CompletableFuture.completedFuture(Authorization.declined("Insufficient funds")), registry);
+        assertThrows(PaymentDeclinedException.class, () -> declining.processPayment(payment), "Payment declined: Insufficient funds");
+
+        PaymentService failing = new PaymentService(userService, new InMemoryPaymentLedger(),
+            (key, p) -> CompletableFuture.failedFuture(new PaymentGatewayException("Payment gateway timed out")), registry);
+        assertThrows(PaymentGatewayException.class, () -> failing.processPayment(payment), "Payment gateway timed out");
+
+        assertEquals(1, registry.get("payments.rejected").tag("reason", "declined").counter().count());
+        assertEquals(1, registry.get("payments.rejected").tag("reason", "gateway_unavailable").counter().count());
+        assertTrue(declining.getPaymentList().isEmpty());
+        assertTrue(failing.getPaymentList().isEmpty());
+    }
+
+    @Test
+    public void testProcessPayment_GatewayRequestKey() {
+        User user = new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2000, 1, 1), 1234567812345678L);
+        when(userService.findUserByEmail("johndoe@example.org")).thenReturn(user);
+        List<String> keys = new ArrayList<>();
+        PaymentService keyed = new PaymentService(userService, new InMemoryPaymentLedger(), (key, p) -> {
+            keys.add(key);
+            return CompletableFuture.completedFuture(Authorization.approved("auth-" + keys.size()));
+        }, new SimpleMeterRegistry());
+
+        keyed.processPayment(new Payment(1L, 1234567812345678L, 500, "johndoe@example.org"), "client-key");
+        // Payment ids are chosen by clients and need not be unique, so without a client key every request gets its own
+        keyed.processPayment(new Payment(2L, 1234567812345678L, 500, "johndoe@example.org"));
+        keyed.processPayment(new Payment(2L, 1234567812345678L, 500, "johndoe@example.org"));
+
+        assertEquals("client-key", keys.get(0));
+        assertNotEquals(keys.get(1), keys.get(2));
+        assertNotEquals("client-key", keys.get(1));
+    }
+
+    @Test
+    public void testProcessPayment_RetryAfterGatewayFailureChargesOnce() {
+        User user = new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2000, 1, 1), 1234567812345678L);
+        when(userService.findUserByEmail("johndoe@example.org")).thenReturn(user);
+        // The network approves the first request but its answer is lost; it answers a resent key with the original authorization
+        Map<String, Authorization> network = new ConcurrentHashMap<>();
+        List<String> charges = new ArrayList<>();
+        PaymentService service = new PaymentService(userService, new InMemoryPaymentLedger(), (key, p) -> {
+            if (network.containsKey(key)) return CompletableFuture.completedFuture(network.get(key));
+            charges.add(key);
+            network.put(key, Authorization.approved("auth-" + charges.size()));
+            return CompletableFuture.failedFuture(new PaymentGatewayException("Payment gateway timed out"));
+        }, new SimpleMeterRegistry());
+        IdempotencyStore idempotencyStore = new IdempotencyStore(1000, Duration.ofHours(1), new SimpleMeterRegistry());
+        Payment payment = new Payment(1L, 1234567812345678L, 500, "johndoe@example.org");
+
+        assertEquals(502, pay(idempotencyStore, service, "key-1", payment).getStatusCode().value());
+        assertEquals(201, pay(idempotencyStore, service, "key-1", payment).getStatusCode().value());
+        assertEquals(201, pay(idempotencyStore, service, "key-1", payment).getStatusCode().value());
+
+        assertEquals(List.of("key-1"), charges);
+        assertEquals(1, service.getPaymentList().size());
+    }
+
+    private static ResponseEntity<String> pay(IdempotencyStore idempotencyStore, PaymentService service, String key, Payment payment) {
+        return idempotencyStore.execute(key, payment, () -> {
+            try {
+                service.processPayment(payment, key);
+                return ResponseEntity.status(HttpStatus.CREATED).body("Payment processed");
+            } catch (PaymentGatewayException e) {
+                return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(e.getMessage());
+            }
+        });
+    }
+}
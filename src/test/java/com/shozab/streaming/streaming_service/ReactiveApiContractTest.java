@@ -0,0 +1,29 @@
+package com.shozab.streaming.streaming_service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@SpringBootTest(properties = {
+    "spring.main.web-application-type=reactive",
+    "streaming.throttle.enabled=true",
+    "streaming.throttle.registration.per-client-rate=0.1",
+    "streaming.throttle.registration.per-client-burst=" + ApiContractTest.THROTTLE_BURST,
+    "streaming.throttle.payments.per-payor-rate=0.1",
+    "streaming.throttle.payments.per-payor-burst=" + ApiContractTest.THROTTLE_BURST
+})
+@ActiveProfiles("reactive")
+@AutoConfigureWebTestClient
+public class ReactiveApiContractTest extends ApiContractTest {
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Override
+    protected WebTestClient client() {
+        return webTestClient;
+    }
+}
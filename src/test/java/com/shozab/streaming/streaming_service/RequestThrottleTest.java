@@ -0,0 +1,125 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.shozab.streaming.streaming_service.throttle.LoadShedder;
+import com.shozab.streaming.streaming_service.throttle.RateLimiter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RequestThrottleTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void testRateLimiter_BurstThenRefill() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter("test", 5, 3, 1000, meterRegistry);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        }
+        long wait = limiter.tryAcquire("10.0.0.1");
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(200), "Wait " + wait);
+        assertEquals(0, limiter.tryAcquire("10.0.0.2"));
+
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(wait) + 5);
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        assertEquals(1, meterRegistry.get("requests.limited").tag("limit", "test").counter().count());
+    }
+
+    @Test
+    public void testRateLimiter_ConcurrentAcquiresGrantExactlyTheBurst() throws Exception {
+        int burst = 500;
+        RateLimiter limiter = new RateLimiter("test", 0.01, burst, 1000, meterRegistry);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger granted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < burst; i++) {
+                    if (limiter.tryAcquire("10.0.0.1") == 0) granted.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(burst, granted.get());
+    }
+
+    @Test
+    public void testLoadShedder_LimitsRequestsInFlight() {
+        LoadShedder shedder = new LoadShedder("test", null, Duration.ofSeconds(10), 1, 2, Duration.ofHours(1), meterRegistry);
+
+        LoadShedder.Permit first = shedder.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(shedder.tryAcquire());
+        assertNull(shedder.tryAcquire());
+
+        first.release();
+        assertNotNull(shedder.tryAcquire());
+        assertEquals(1, meterRegistry.get("requests.shed").tag("route", "test").counter().count());
+
+        LoadShedder busy = new LoadShedder("busy", () -> 8, Duration.ofSeconds(10), 1, 8, Duration.ofHours(1), meterRegistry);
+        assertNull(busy.tryAcquire());
+    }
+
+    @Test
+    public void testLoadShedder_AdaptsToLatency() throws InterruptedException {
+        LoadShedder shedder = new LoadShedder("test", null, Duration.ofMillis(2), 4, 64, Duration.ofMillis(1), meterRegistry);
+
+        for (int i = 0; i < 40; i++) {
+            LoadShedder.Permit permit = shedder.tryAcquire();
+            Thread.sleep(5);
+            permit.release();
+            Thread.sleep(2);
+        }
+        assertEquals(4, shedder.limit());
+        assertTrue(shedder.p99Nanos() > TimeUnit.MILLISECONDS.toNanos(2));
+
+        for (int i = 0; i < 50; i++) {
+            shedder.tryAcquire().release();
+            Thread.sleep(2);
+        }
+        assertEquals(64, shedder.limit());
+    }
+
+    @Test
+    public void testLoadShedder_UntimedPermitsKeepLatencyOut() throws InterruptedException {
+        LoadShedder shedder = new LoadShedder("test", null, Duration.ofMillis(2), 4, 64, Duration.ofMillis(1), meterRegistry);
+
+        // Long bulk streams count as in flight but do not cut the limit
+        for (int i = 0; i < 10; i++) {
+            LoadShedder.Permit permit = shedder.tryAcquireUntimed();
+            assertNotNull(permit);
+            Thread.sleep(5);
+            permit.release();
+            Thread.sleep(2);
+        }
+        assertEquals(64, shedder.limit());
+        assertEquals(0, shedder.p99Nanos());
+    }
+}
@@ -0,0 +1,28 @@
+package com.shozab.streaming.streaming_service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.client.MockMvcWebTestClient;
+
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@SpringBootTest(properties = {
+    "streaming.throttle.enabled=true",
+    "streaming.throttle.registration.per-client-rate=0.1",
+    "streaming.throttle.registration.per-client-burst=" + ApiContractTest.THROTTLE_BURST,
+    "streaming.throttle.payments.per-payor-rate=0.1",
+    "streaming.throttle.payments.per-payor-burst=" + ApiContractTest.THROTTLE_BURST
+})
+@AutoConfigureMockMvc
+public class ServletApiContractTest extends ApiContractTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Override
+    protected WebTestClient client() {
+        return MockMvcWebTestClient.bindTo(mockMvc).build();
+    }
+}
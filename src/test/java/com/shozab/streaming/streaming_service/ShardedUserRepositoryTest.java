@@ -0,0 +1,207 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.shozab.streaming.streaming_service.cluster.ConsistentHashRing;
+import com.shozab.streaming.streaming_service.cluster.LocalShard;
+import com.shozab.streaming.streaming_service.cluster.LocalShardTransport;
+import com.shozab.streaming.streaming_service.cluster.ShardedUserRepository;
+import com.shozab.streaming.streaming_service.registration.DuplicateUserException;
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserPage;
+import com.shozab.streaming.streaming_service.registration.UserRepository;
+
+public class ShardedUserRepositoryTest {
+
+    private static final List<String> NODES = List.of("node-a", "node-b", "node-c");
+
+    private List<UserRepository> stores;
+    private List<ShardedUserRepository> nodes;
+
+    @BeforeEach
+    public void setUp() {
+        stores = new ArrayList<>();
+        for (int i = 0; i < NODES.size(); i++) {
+            stores.add(new InMemoryUserRepository());
+        }
+        nodes = startNodes();
+    }
+
+    @Test
+    public void testRing_SpreadsKeysAndMovesFewOnResize() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("n1", "n2", "n3", "n4"));
+        ConsistentHashRing grown = new ConsistentHashRing(List.of("n1", "n2", "n3", "n4", "n5"));
+        int keys = 100_000;
+        int[] perNode = new int[4];
+        int moved = 0;
+        for (int i = 0; i < keys; i++) {
+            String key = "user" + i + "@example.org";
+            perNode[ring.indexFor(key)]++;
+            if (!ring.nodeFor(key).equals(grown.nodeFor(key))) {
+                assertEquals("n5", grown.nodeFor(key));
+                moved++;
+            }
+        }
+        for (int count : perNode) {
+            assertTrue(Math.abs(count - keys / 4) < keys / 4 * 0.2, "Uneven shard " + count);
+        }
+        assertTrue(moved > keys / 5 * 0.7 && moved < keys / 5 * 1.3, "Moved " + moved);
+    }
+
+    @Test
+    public void testInsert_VisibleFromEveryNode() {
+        nodes.get(0).insert(user("johndoe", "johndoe@example.org"));
+
+        for (ShardedUserRepository node : nodes) {
+            assertNotNull(node.findByEmail("johndoe@example.org"));
+            assertTrue(node.existsByEmail("johndoe@example.org"));
+            assertTrue(node.existsByUsername("johndoe"));
+            assertEquals(1, node.count());
+        }
+        assertEquals(1, stores.stream().mapToLong(UserRepository::count).sum());
+
+        nodes.get(1).updateCreditCardNumber("johndoe@example.org", 1234567812345678L);
+        assertEquals(1234567812345678L, nodes.get(2).findByEmail("johndoe@example.org").getCreditCardNumber());
+        assertThrows(IllegalStateException.class, () -> nodes.get(2).updateCreditCardNumber("nobody@example.org", null), "User not found");
+    }
+
+    @Test
+    public void testInsert_UsernameUniqueAcrossShards() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES);
+        String first = "johndoe@example.org";
+        String other = null;
+        for (int i = 0; other == null; i++) {
+            String candidate = "john" + i + "@example.org";
+            if (!ring.nodeFor(candidate).equals(ring.nodeFor(first))) other = candidate;
+        }
+        String otherEmail = other;
+
+        nodes.get(0).insert(user("johndoe", first));
+        assertEquals(DuplicateUserException.Key.USERNAME,
+            assertThrows(DuplicateUserException.class, () -> nodes.get(1).insert(user("johndoe", otherEmail))).getKey());
+        assertNull(nodes.get(2).findByEmail(otherEmail));
+
+        // A failed insert releases the username it reserved
+        assertEquals(DuplicateUserException.Key.EMAIL,
+            assertThrows(DuplicateUserException.class, () -> nodes.get(1).insert(user("jane_doe", first))).getKey());
+        assertFalse(nodes.get(2).existsByUsername("jane_doe"));
+        nodes.get(2).insert(user("jane_doe", otherEmail));
+        assertTrue(nodes.get(0).existsByUsername("jane_doe"));
+    }
+
+    @Test
+    public void testFindPage_WalksAllShards() {
+        for (int i = 0; i < 100; i++) {
+            nodes.get(i % 3).insert(new User(1L, "user_" + i, "Password1", "user" + i + "@example.org", LocalDate.of(2000, 1, 1),
+                i % 2 == 0 ? 1234567812345678L : null));
+        }
+
+        Set<String> seen = new HashSet<>();
+        Long cursor = 0L;
+        while (cursor != null) {
+            UserPage page = nodes.get(1).findPage(cursor, 7, Optional.of(true));
+            for (User user : page.getUsers()) {
+                assertTrue(seen.add(user.getUsername()));
+                assertNotNull(user.getCreditCardNumber());
+            }
+            cursor = page.getNextCursor();
+        }
+        assertEquals(50, seen.size());
+        assertEquals(50, nodes.get(0).count(Optional.of(false)));
+        assertEquals(100, nodes.get(2).findAll().size());
+        assertEquals(100, nodes.get(2).findAll().stream().map(User::getEmail).distinct().count());
+    }
+
+    @Test
+    public void testInsert_ConcurrentRegistrationsThroughDifferentNodes() throws Exception {
+        int writers = 12;
+        int contendedUsernames = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger wins = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int writer = 0; writer < writers; writer++) {
+            final int w = writer;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < contendedUsernames; i++) {
+                    try {
+                        nodes.get(w % 3).insert(user("shared_" + i, "writer" + w + ".user" + i + "@example.org"));
+                        wins.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        // lost the race
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(contendedUsernames, wins.get());
+        assertEquals(contendedUsernames, nodes.get(0).count());
+    }
+
+    @Test
+    public void testRestoreReservations_AfterRestart() {
+        for (int i = 0; i < 20; i++) {
+            nodes.get(i % 3).insert(user("user_" + i, "user" + i + "@example.org"));
+        }
+
+        // Restarted nodes keep their stored users but lose the in-memory reservations
+        nodes = startNodes();
+        assertEquals(20, nodes.get(0).count());
+        for (ShardedUserRepository node : nodes) {
+            node.restoreReservations();
+        }
+        for (int i = 0; i < 20; i++) {
+            assertTrue(nodes.get(0).existsByUsername("user_" + i));
+        }
+        assertThrows(IllegalStateException.class, () -> nodes.get(1).insert(user("user_3", "someone@example.org")));
+    }
+
+    private List<ShardedUserRepository> startNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES);
+        LocalShardTransport transport = new LocalShardTransport();
+        List<LocalShard> shards = new ArrayList<>();
+        for (int i = 0; i < NODES.size(); i++) {
+            LocalShard shard = new LocalShard(stores.get(i));
+            transport.register(NODES.get(i), shard);
+            shards.add(shard);
+        }
+        List<ShardedUserRepository> started = new ArrayList<>();
+        for (int i = 0; i < NODES.size(); i++) {
+            started.add(new ShardedUserRepository(NODES.get(i), shards.get(i), ring, transport));
+        }
+        return started;
+    }
+
+    private static User user(String username, String email) {
+        return new User(1L, username, "Password1", email, LocalDate.of(2000, 1, 1), null);
+    }
+}
@@ -0,0 +1,89 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserCache;
+import com.shozab.streaming.streaming_service.registration.UserService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class UserCacheTest {
+
+    private static final LocalDate ADULT = LocalDate.now().minusYears(30);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PasswordEncoder plainTextEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(rawPassword.toString());
+        }
+    };
+    private InMemoryUserRepository userRepository;
+    private UserService userService;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository = spy(new InMemoryUserRepository());
+        PasswordHasher passwordHasher = new PasswordHasher(plainTextEncoder, 1, 16, 1, meterRegistry);
+        userService = new UserService(userRepository, passwordHasher, new UserCache(2, Duration.ofMinutes(10), meterRegistry));
+        userService.registerUser(new User(1L, "johndoe", "Password1", "johndoe@example.org", ADULT, 1234567812345678L));
+    }
+
+    @Test
+    public void testFindUserByEmail_ReadsThroughOnce() {
+        User first = userService.findUserByEmail("johndoe@example.org");
+        User second = userService.findUserByEmail("johndoe@example.org");
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findByEmail("johndoe@example.org");
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "users").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    public void testFindUserByEmail_UnknownUserIsNotCached() {
+        assertNull(userService.findUserByEmail("janedoe@example.org"));
+        userService.registerUser(new User(2L, "janedoe", "Password1", "janedoe@example.org", ADULT, null));
+
+        assertEquals("janedoe", userService.findUserByEmail("janedoe@example.org").getUsername());
+    }
+
+    @Test
+    public void testUpdateCreditCardNumber_InvalidatesSnapshot() {
+        userService.findUserByEmail("johndoe@example.org");
+        userService.updateCreditCardNumber("johndoe@example.org", 8765432187654321L);
+
+        assertEquals(8765432187654321L, userService.findUserByEmail("johndoe@example.org").getCreditCardNumber());
+    }
+
+    @Test
+    public void testCache_EvictsBeyondMaximumSize() {
+        UserCache cache = new UserCache(2, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        for (long id = 0; id < 10; id++) {
+            User user = new User(id, "user" + id, "Password1", "user" + id + "@example.org", ADULT, null);
+            cache.get(user.getEmail(), email -> user);
+        }
+
+        assertEquals(2, cache.size());
+    }
+}
@@ -16,6 +16,7 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shozab.streaming.streaming_service.registration.*;
@@ -28,6 +29,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.mockito.Mockito.*; 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
 @SpringBootTest
@@ -247,4 +250,117 @@ public class UserControllerTest {
             .andExpect(status().is(400))
             .andExpect(content().string("[]"));
     }
+
+    @Test
+    public void testGetUsers_Paginated() throws Exception {
+        registerViaApi(new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2003, 1, 1), 1234567812345678L));
+        registerViaApi(new User(2L, "janedoe", "Password1", "janedoe@example.org", LocalDate.of(2003, 1, 1), null));
+        registerViaApi(new User(3L, "jimdoe", "Password1", "jimdoe@example.org", LocalDate.of(2003, 1, 1), 1234567812345679L));
+
+        String cursor = mockMvc.perform(get("/users?limit=2"))
+            .andExpect(status().is(200))
+            .andExpect(jsonPath("$.size()").value(2))
+            .andExpect(jsonPath("$[0].username").value("johndoe"))
+            .andExpect(jsonPath("$[1].username").value("janedoe"))
+            .andExpect(header().exists(UserController.NEXT_CURSOR_HEADER))
+            .andReturn().getResponse().getHeader(UserController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/users?limit=2&after=" + cursor))
+            .andExpect(status().is(200))
+            .andExpect(jsonPath("$.size()").value(1))
+            .andExpect(jsonPath("$[0].username").value("jimdoe"))
+            .andExpect(header().doesNotExist(UserController.NEXT_CURSOR_HEADER));
+
+        mockMvc.perform(get("/users?limit=5&hasCreditCard=yes"))
+            .andExpect(status().is(200))
+            .andExpect(jsonPath("$.size()").value(2))
+            .andExpect(jsonPath("$[?(@.username == 'janedoe')]").doesNotExist());
+    }
+
+    @Test
+    public void testGetUsers_InvalidPageParameters() throws Exception {
+        mockMvc.perform(get("/users?limit=0"))
+            .andExpect(status().is(400));
+        mockMvc.perform(get("/users?limit=" + (UserController.MAX_PAGE_SIZE + 1)))
+            .andExpect(status().is(400));
+        mockMvc.perform(get("/users?after=-1"))
+            .andExpect(status().is(400));
+    }
+
+    @Test
+    public void testGetUsers_Ndjson() throws Exception {
+        registerViaApi(new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2003, 1, 1), 1234567812345678L));
+        registerViaApi(new User(2L, "janedoe", "Password1", "janedoe@example.org", LocalDate.of(2003, 1, 1), null));
+
+        MvcResult result = mockMvc.perform(get("/users").accept("application/x-ndjson"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().is(200))
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        for (String line : lines) {
+            User user = oMapper.readValue(line, User.class);
+            assertTrue(user.getUsername().equals("johndoe") || user.getUsername().equals("janedoe"));
+        }
+    }
+
+    @Test
+    public void testCountUsers() throws Exception {
+        registerViaApi(new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2003, 1, 1), 1234567812345678L));
+        registerViaApi(new User(2L, "janedoe", "Password1", "janedoe@example.org", LocalDate.of(2003, 1, 1), null));
+
+        mockMvc.perform(get("/users/count"))
+            .andExpect(status().is(200))
+            .andExpect(content().string("2"));
+        mockMvc.perform(get("/users/count?hasCreditCard=yes"))
+            .andExpect(status().is(200))
+            .andExpect(content().string("1"));
+        mockMvc.perform(get("/users/count?hasCreditCard=no"))
+            .andExpect(status().is(200))
+            .andExpect(content().string("1"));
+        mockMvc.perform(get("/users/count?hasCreditCard=maybe"))
+            .andExpect(status().is(400));
+    }
+
+    @Test
+    public void testRegisterUsers_Bulk() throws Exception {
+        String body = oMapper.writeValueAsString(new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2003, 1, 1), 1234567812345678L)) + "\n"
+            + oMapper.writeValueAsString(new User(2L, "johndoe", "Password1", "janedoe@example.org", LocalDate.of(2003, 1, 1), null)) + "\n"
+            + oMapper.writeValueAsString(new User(3L, "jimdoe", "Password1", "jimdoe.example.org", LocalDate.of(2003, 1, 1), null)) + "\n"
+            + "{\"username\": ";
+
+        MvcResult result = mockMvc.perform(post("/users/register/bulk")
+                .contentType("application/x-ndjson")
+                .content(body))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().is(200))
+            .andExpect(content().contentType("application/x-ndjson"))
+            .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertEquals(4, lines.length);
+        int[] expectedStatuses = {201, 409, 400, 400};
+        for (int i = 0; i < lines.length; i++) {
+            var line = oMapper.readTree(lines[i]);
+            assertEquals(i, line.get("index").asInt());
+            assertEquals(expectedStatuses[i], line.get("status").asInt());
+        }
+        assertEquals("User registered successfully", oMapper.readTree(lines[0]).get("message").asText());
+        mockMvc.perform(get("/users/count"))
+            .andExpect(content().string("1"));
+    }
+
+    private void registerViaApi(User user) throws Exception {
+        mockMvc.perform(post("/users/register")
+            .contentType("application/json")
+            .content(oMapper.writeValueAsString(user)))
+            .andExpect(status().isCreated());
+    }
 }
@@ -0,0 +1,83 @@
+package com.shozab.streaming.streaming_service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserValidator;
+import com.shozab.streaming.streaming_service.registration.ValidationResult;
+
+public class UserValidatorTest {
+
+    private static final String EMAIL_PATTERN = "^[a-zA-Z0-9%+._-]+@[a-zA-Z0-9][a-zA-Z0-9.-]*\\.[a-zA-Z]{2,}$";
+
+    @Test
+    public void testValidate_ReportsAllFieldErrors() {
+        User user = new User(1L, "john doe", "password", "johndoe@example", LocalDate.of(2221, 1, 1), 12345678L);
+
+        ValidationResult result = UserValidator.validate(user);
+
+        assertFalse(result.isValid());
+        assertEquals(List.of("username", "password", "email", "dateOfBirth", "creditCardNumber"), List.copyOf(result.getFieldErrors().keySet()));
+        assertEquals("Invalid username, Invalid password, Invalid email, Invalid date of birth, Invalid credit card number", result.getMessage());
+    }
+
+    @Test
+    public void testValidate_ValidUser() {
+        User user = new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2000, 1, 1), 1234567812345678L);
+
+        assertTrue(UserValidator.validate(user).isValid());
+    }
+
+    @Test
+    public void testValidate_SentinelCreditCardNumberIsInvalid() {
+        User user = new User(1L, "johndoe", "Password1", "johndoe@example.org", LocalDate.of(2000, 1, 1), Long.MIN_VALUE);
+
+        assertTrue(user.hasCreditCard());
+        assertEquals(List.of("creditCardNumber"), List.copyOf(UserValidator.validate(user).getFieldErrors().keySet()));
+    }
+
+    @Test
+    public void testEmailScanner_MatchesOriginalPattern() {
+        List<String> emails = List.of(
+            "john.doe@example.com", "jane_doe123@example.co.uk", "a+b%@example.com", "email@subdomain.example.com",
+            "valid-email@domain123.org", "x@y.zz", "a@b-.cd", "a@1.co", "a.@b.cd", ".a@b.cd", "a..b@c.de",
+            "", "user.com", "user@", "@domain.com", "user@domain@domain.com", "user@domain..com", "user@doma,in.com",
+            "user@domain_com.com", "user@.example.com", "user@com", "user@domain.c", "user@domain.c$om",
+            "user@domain$com", "user@domain.co1", "user@domain.com.", "user@-domain.com", "üser@domain.com",
+            "user@domain.com\n", "user@d.c.om", "user@domain.-com");
+
+        for (String email : emails) {
+            boolean expected = email.matches(EMAIL_PATTERN) && !email.contains("..");
+            assertEquals(expected, UserValidator.isEmailValid(email), email);
+        }
+    }
+
+    @Test
+    public void testUsernameAndPasswordScanners_MatchOriginalPatterns() {
+        for (String username : List.of("johndoe", "jo", "john_doe-1", "john doe", "john%.doe$", "jöhn", "abc")) {
+            boolean expected = username.length() >= 3 && username.matches("^[a-zA-Z0-9_-]*$");
+            assertEquals(expected, UserValidator.isUsernameValid(username), username);
+        }
+        for (String password : List.of("Password1", "password1", "PASSWORD", "Pass1", "Password@123!", "12345678A", "Pass\nword1")) {
+            boolean expected = password.length() >= 8 && password.matches(".*[A-Z].*") && password.matches(".*[0-9].*");
+            assertEquals(expected, UserValidator.isPasswordValid(password), password);
+        }
+    }
+
+    @Test
+    public void testCreditCardNumber_DigitRange() {
+        assertTrue(UserValidator.isCreditCardNumberValid(null));
+        assertTrue(UserValidator.isCreditCardNumberValid(1000000000000000L));
+        assertTrue(UserValidator.isCreditCardNumberValid(9999999999999999L));
+        assertFalse(UserValidator.isCreditCardNumberValid(999999999999999L));
+        assertFalse(UserValidator.isCreditCardNumberValid(10000000000000000L));
+        assertFalse(UserValidator.isCreditCardNumberValid(-123456789012345L));
+    }
+}
@@ -14,12 +14,24 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 
+import com.shozab.streaming.streaming_service.registration.DuplicateUserException;
+import com.shozab.streaming.streaming_service.registration.InMemoryUserRepository;
+import com.shozab.streaming.streaming_service.registration.PasswordHasher;
 import com.shozab.streaming.streaming_service.registration.User;
+import com.shozab.streaming.streaming_service.registration.UserCache;
 import com.shozab.streaming.streaming_service.registration.UserService;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import jakarta.validation.ValidationException;
 
 @SpringBootTest
@@ -264,4 +276,63 @@ public class UsersServiceTest {
         User foundUserNull = userService.findUserByEmail("janedoe@example.org");
         assertEquals(null, foundUserNull);
     }
+
+    @Test
+    public void testRegisterUser_Metrics() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserService userService = new UserService(new InMemoryUserRepository(), new PasswordHasher(), new UserCache(), meterRegistry);
+
+        userService.registerUser(new User(1L, "johndoe", "Password1", "johndoe@example.com", LocalDate.of(2000, 1, 1), null));
+        assertThrows(IllegalArgumentException.class, () -> userService.registerUser(new User(2L, "jd", "password", "janedoe@example.com", LocalDate.of(2000, 1, 1), null)));
+        assertThrows(IllegalStateException.class, () -> userService.registerUser(new User(3L, "johndoe", "Password1", "jim@example.com", LocalDate.of(2000, 1, 1), null)));
+        userService.findUserByEmail("johndoe@example.com");
+
+        assertEquals(3, meterRegistry.get("registration.validation").tag("step", "email").timer().count());
+        assertEquals(1, meterRegistry.get("registration.password.encode").timer().count());
+        assertEquals(2, meterRegistry.get("registration.uniqueness").tag("key", "username").timer().count());
+        assertEquals(1, meterRegistry.get("registration.rejected").tag("reason", "invalid_username").counter().count());
+        assertEquals(1, meterRegistry.get("registration.rejected").tag("reason", "invalid_password").counter().count());
+        assertEquals(1, meterRegistry.get("registration.rejected").tag("reason", "username_taken").counter().count());
+        assertEquals(1, meterRegistry.get("users.lookup").timer().count());
+        assertEquals(1, meterRegistry.get("users.store.size").gauge().value());
+    }
+
+    @Test
+    public void testRegisterUser_ConcurrentDuplicateCountedByKey() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        InMemoryUserRepository userRepository = new InMemoryUserRepository();
+        UserService userService = new UserService(userRepository, new PasswordHasher(), new UserCache(), meterRegistry);
+        // Registered behind the service's back, as by a concurrent registration that won the race
+        userRepository.insert(new User(1L, "johndoe", "Password1", "johndoe@example.com", LocalDate.of(2000, 1, 1), null));
+
+        DuplicateUserException e = assertThrows(DuplicateUserException.class, () -> userService.registerUser(new User(2L, "jim_doe", "Password1", "johndoe@example.com", LocalDate.of(2000, 1, 1), null)));
+        assertEquals(DuplicateUserException.Key.EMAIL, e.getKey());
+        assertEquals("Email already exists", e.getMessage());
+        assertEquals(1, meterRegistry.get("registration.rejected").tag("reason", "email_taken").counter().count());
+        assertEquals(0, meterRegistry.get("registration.rejected").tag("reason", "username_taken").counter().count());
+    }
+
+    @Test
+    public void testRegisterUser_BloomFilterSkipsStoreForNewKeys() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        InMemoryUserRepository userRepository = spy(new InMemoryUserRepository());
+        userRepository.insert(new User(1L, "existing", "Password1", "existing@example.com", LocalDate.of(2000, 1, 1), null));
+        UserService userService = new UserService(userRepository, new PasswordHasher(), new UserCache(), meterRegistry);
+
+        userService.registerUser(new User(2L, "johndoe", "Password1", "johndoe@example.com", LocalDate.of(2000, 1, 1), null));
+        verify(userRepository, never()).existsByUsername(anyString());
+        verify(userRepository, never()).existsByEmail(anyString());
+
+        // Keys loaded on startup and keys registered since are both confirmed against the store
+        assertThrows(IllegalStateException.class, () -> userService.registerUser(new User(3L, "existing", "Password1", "jim@example.com", LocalDate.of(2000, 1, 1), null)), "Username already exists");
+        assertThrows(IllegalStateException.class, () -> userService.registerUser(new User(4L, "jim_doe", "Password1", "johndoe@example.com", LocalDate.of(2000, 1, 1), null)), "Email already exists");
+        verify(userRepository).existsByUsername("existing");
+        verify(userRepository).existsByEmail("johndoe@example.com");
+
+        assertEquals(2, meterRegistry.get("registration.bloom.checks").tag("key", "username").tag("result", "absent").counter().count());
+        assertEquals(1, meterRegistry.get("registration.bloom.checks").tag("key", "username").tag("result", "present").counter().count());
+        assertEquals(1, meterRegistry.get("registration.bloom.checks").tag("key", "email").tag("result", "present").counter().count());
+        assertEquals(0, meterRegistry.get("registration.bloom.false.positives").tag("key", "email").counter().count());
+        assertTrue(meterRegistry.get("registration.bloom.fpp").tag("key", "email").gauge().value() < 0.01);
+    }
 }